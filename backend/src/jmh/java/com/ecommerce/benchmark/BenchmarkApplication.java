@@ -0,0 +1,39 @@
+package com.ecommerce.benchmark;
+
+import com.ecommerce.cache.ProductCache;
+import com.ecommerce.catalog.CatalogExporter;
+import com.ecommerce.catalog.CatalogImporter;
+import com.ecommerce.config.StartupConfig;
+import com.ecommerce.controller.ProductController;
+import com.ecommerce.search.CatalogIndexer;
+import com.ecommerce.search.ProductCatalog;
+import com.ecommerce.search.ProductSearchIndex;
+import com.ecommerce.search.ProductSuggester;
+import com.ecommerce.service.ProductService;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.autoconfigure.security.oauth2.client.servlet.OAuth2ClientAutoConfiguration;
+import org.springframework.boot.autoconfigure.security.servlet.SecurityAutoConfiguration;
+import org.springframework.boot.autoconfigure.security.servlet.SecurityFilterAutoConfiguration;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+/**
+ * Just the catalog slice of the application (JPA on H2, cache, in-memory
+ * indexes, service and controller) so benchmarks measure the query path
+ * without security, OAuth or Stripe. Only {@link StartupBenchmark} starts the
+ * web server.
+ */
+@SpringBootConfiguration
+@EnableAutoConfiguration(exclude = {
+    SecurityAutoConfiguration.class,
+    SecurityFilterAutoConfiguration.class,
+    OAuth2ClientAutoConfiguration.class
+})
+@EntityScan("com.ecommerce.model")
+@EnableJpaRepositories("com.ecommerce.repository")
+@Import({ProductCache.class, ProductService.class, ProductController.class, CatalogIndexer.class, ProductCatalog.class,
+        ProductSearchIndex.class, ProductSuggester.class, CatalogImporter.class, CatalogExporter.class, StartupConfig.class})
+class BenchmarkApplication {
+}
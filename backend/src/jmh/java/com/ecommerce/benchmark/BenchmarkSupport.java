@@ -0,0 +1,39 @@
+package com.ecommerce.benchmark;
+
+import com.ecommerce.cache.TokenRevocations;
+import com.ecommerce.service.JwtService;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+import java.time.Duration;
+
+final class BenchmarkSupport {
+    static final String SECRET = "mysecretkey123456";
+
+    private BenchmarkSupport() {}
+
+    // Builds the service the way Spring would, without starting a context
+    static JwtService jwtService() {
+        JwtService jwtService = new JwtService();
+        setField(jwtService, "SECRET_KEY", SECRET);
+        jwtService.init();
+        return jwtService;
+    }
+
+    // Local-only, sized as configured by default
+    static TokenRevocations tokenRevocations() {
+        TokenRevocations tokenRevocations = new TokenRevocations();
+        setField(tokenRevocations, "accessTtl", Duration.ofMinutes(15));
+        setField(tokenRevocations, "expectedPerWindow", 100_000L);
+        setField(tokenRevocations, "falsePositiveRate", 1e-6);
+        setField(tokenRevocations, "shared", false);
+        tokenRevocations.init();
+        return tokenRevocations;
+    }
+
+    static void setField(Object target, String name, Object value) {
+        Field field = ReflectionUtils.findField(target.getClass(), name);
+        ReflectionUtils.makeAccessible(field);
+        ReflectionUtils.setField(field, target, value);
+    }
+}
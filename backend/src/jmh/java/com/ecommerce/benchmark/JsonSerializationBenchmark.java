@@ -0,0 +1,67 @@
+package com.ecommerce.benchmark;
+
+import com.ecommerce.model.Order;
+import com.ecommerce.model.Product;
+import com.ecommerce.model.User;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializing list responses with an ObjectMapper configured the way Spring
+ * Boot configures the one behind the REST controllers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class JsonSerializationBenchmark {
+    @Param({"100", "10000"})
+    public int listSize;
+
+    private ObjectWriter writer;
+    private List<Product> products;
+    private List<Order> orders;
+
+    @Setup
+    public void setUp() {
+        writer = Jackson2ObjectMapperBuilder.json().build().writer();
+        User user = new User();
+        user.setId(1L);
+        user.setUsername("bench-user");
+        user.setPassword("$2a$10$abcdefghijklmnopqrstuuFAKEHASHFORBENCHMARKONLY000000");
+        user.setEmail("bench@example.com");
+        products = new ArrayList<>(listSize);
+        orders = new ArrayList<>(listSize);
+        for (int i = 0; i < listSize; i++) {
+            products.add(new Product((long) i, "Item " + i, "Benchmark product " + i, BigDecimal.valueOf(1999 + i, 2), i % 100,
+                    "https://shop.vamshimaya.com/img/img_" + (i % 30 + 1) + ".jpg"));
+            Order order = new Order();
+            order.setId((long) i);
+            order.setUser(user);
+            order.setTotalAmount(BigDecimal.valueOf(4999 + i, 2));
+            order.setOrderDate(LocalDateTime.of(2024, 1, 1, 0, 0).plusMinutes(i));
+            order.setStatus("PAID");
+            orders.add(order);
+        }
+    }
+
+    @Benchmark
+    public byte[] productList() throws JsonProcessingException {
+        return writer.writeValueAsBytes(products);
+    }
+
+    @Benchmark
+    public byte[] orderList() throws JsonProcessingException {
+        return writer.writeValueAsBytes(orders);
+    }
+}
@@ -0,0 +1,62 @@
+package com.ecommerce.benchmark;
+
+import com.ecommerce.service.JwtClaims;
+import com.ecommerce.service.JwtService;
+import io.jsonwebtoken.Claims;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token issuing, plus token checks as the auth filter performs them: the old
+ * path parsed and re-verified the token once per accessor, the new one
+ * verifies once and serves repeat tokens from the verified-token cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(Threads.MAX)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class JwtServiceBenchmark {
+    private JwtService jwtService;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtService = BenchmarkSupport.jwtService();
+        token = jwtService.generateToken("bench-user", "USER");
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return jwtService.generateToken("bench-user", "USER");
+    }
+
+    @Benchmark
+    public void perAccessorParse(Blackhole bh) {
+        // extractUsername, extractRole, then validateToken (username + expiry)
+        bh.consume(jwtService.extractClaim(token, Claims::getSubject));
+        bh.consume(jwtService.extractClaim(token, claims -> claims.get("role", String.class)));
+        bh.consume(jwtService.extractClaim(token, Claims::getSubject));
+        bh.consume(jwtService.extractClaim(token, Claims::getExpiration));
+    }
+
+    @Benchmark
+    public void singleParse(Blackhole bh) {
+        Claims claims = jwtService.extractClaim(token, c -> c);
+        bh.consume(claims.getSubject());
+        bh.consume(claims.get("role", String.class));
+        bh.consume(claims.getExpiration());
+    }
+
+    @Benchmark
+    public void verifyCached(Blackhole bh) {
+        JwtClaims claims = jwtService.verify(token);
+        bh.consume(claims.getSubject());
+        bh.consume(claims.getRole());
+        bh.consume(claims.isExpired());
+    }
+}
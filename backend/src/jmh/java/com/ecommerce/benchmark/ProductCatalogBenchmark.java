@@ -0,0 +1,129 @@
+package com.ecommerce.benchmark;
+
+import com.ecommerce.cache.ProductCache;
+import com.ecommerce.controller.ProductController;
+import com.ecommerce.search.CatalogIndexer;
+import com.ecommerce.search.ProductCatalog;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * GET /api/products as the controller serves it, body included, against an H2
+ * catalog of {@code catalogSize} rows: filtered by price and sorted by name, or
+ * by name substring and sorted by price. Requests are answered from the
+ * in-memory catalog snapshot once it has loaded. {@code notModified} is the
+ * same price query revalidated with a current ETag.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ProductCatalogBenchmark {
+    private static final BigDecimal MIN_PRICE = new BigDecimal("40.00");
+    private static final BigDecimal MAX_PRICE = new BigDecimal("40.50");
+
+    @Param({"1000", "100000", "1000000"})
+    public int catalogSize;
+
+    private ConfigurableApplicationContext context;
+    private ProductController productController;
+    private ProductCatalog productCatalog;
+    private ObjectMapper objectMapper;
+    private String filterAndSortETag;
+
+    @Setup(Level.Trial)
+    public void setUp() throws InterruptedException {
+        context = new SpringApplicationBuilder(BenchmarkApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:catalog;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+                        "catalog.cache.l2.enabled=false",
+                        "logging.level.root=WARN")
+                .run();
+        productController = context.getBean(ProductController.class);
+        productCatalog = context.getBean(ProductCatalog.class);
+        objectMapper = context.getBean(ObjectMapper.class);
+        CatalogIndexer catalogIndexer = context.getBean(CatalogIndexer.class);
+        // The startup pass over the (empty) table runs in the background; a reindex before it ends is dropped
+        while (!catalogIndexer.isReady()) {
+            Thread.sleep(10);
+        }
+        load(context.getBean(JdbcTemplate.class), catalogSize);
+        // Rows were inserted behind the catalog's back; reload it the way a bulk import does
+        context.getBean(ProductCache.class).evict(null);
+        catalogIndexer.reindexAll();
+        while (productCatalog.size() < catalogSize) {
+            Thread.sleep(100);
+        }
+        filterAndSortETag = productController.getFilteredProducts(null, MIN_PRICE, MAX_PRICE, "name", "asc", request(null))
+                .getHeaders().getETag();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void filterAndSort() throws IOException {
+        write(productController.getFilteredProducts(null, MIN_PRICE, MAX_PRICE, "name", "asc", request(null)));
+    }
+
+    @Benchmark
+    public ResponseEntity<List<?>> notModified() {
+        return productController.getFilteredProducts(null, MIN_PRICE, MAX_PRICE, "name", "asc", request(filterAndSortETag));
+    }
+
+    @Benchmark
+    public void nameSearch() throws IOException {
+        write(productController.getFilteredProducts("item 12", null, null, "price", "desc", request(null)));
+    }
+
+    private static ServletWebRequest request(String ifNoneMatch) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/products");
+        if (ifNoneMatch != null) {
+            request.addHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        }
+        return new ServletWebRequest(request, new MockHttpServletResponse());
+    }
+
+    // What the message converter does with the body
+    private void write(ResponseEntity<List<?>> response) throws IOException {
+        objectMapper.writeValue(OutputStream.nullOutputStream(), response.getBody());
+    }
+
+    // Prices spread over 0.01..100.00 so the price window selects ~0.5% of the catalog
+    private static void load(JdbcTemplate jdbcTemplate, int size) {
+        String sql = "insert into products (name, description, price, stock, image_url) values (?, ?, ?, ?, ?)";
+        int batchSize = 5_000;
+        List<Object[]> batch = new ArrayList<>(batchSize);
+        for (int i = 0; i < size; i++) {
+            batch.add(new Object[] {"Item " + i, "Benchmark product " + i, BigDecimal.valueOf(1 + (i * 7919L) % 10_000, 2), i % 100, null});
+            if (batch.size() == batchSize) {
+                jdbcTemplate.batchUpdate(sql, batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            jdbcTemplate.batchUpdate(sql, batch);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.ecommerce.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to first request: from starting the catalog slice of the application
+ * (Flyway migration of an empty H2 database, JPA, Tomcat) until a GET
+ * /api/products over HTTP has been answered. Every measurement is the first
+ * start in a fresh JVM, so class loading and interpretation count as they do
+ * for a new pod. Add {@code -jvmArgsAppend -XX:SharedArchiveFile=...} to the
+ * JMH arguments to measure with a class data sharing archive.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(10)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+public class StartupBenchmark {
+    @Param({"true", "false"})
+    public boolean lazyInitialization;
+
+    private ConfigurableApplicationContext context;
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int timeToFirstRequest() throws IOException {
+        context = new SpringApplicationBuilder(BenchmarkApplication.class)
+                .web(WebApplicationType.SERVLET)
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:startup;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+                        "spring.main.lazy-initialization=" + lazyInitialization,
+                        "server.port=0",
+                        "catalog.cache.l2.enabled=false",
+                        "logging.level.root=WARN")
+                .run();
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + "/api/products").openConnection();
+        try (InputStream body = connection.getInputStream()) {
+            body.transferTo(OutputStream.nullOutputStream());
+        }
+        return connection.getResponseCode();
+    }
+}
@@ -3,6 +3,7 @@ package com.ecommerce;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import com.ecommerce.model.Product;
 import com.ecommerce.repository.ProductRepository;
@@ -15,7 +16,9 @@ public class EcommerceApplication {
         SpringApplication.run(EcommerceApplication.class, args);
     }
 
+    // Demo catalog for an empty database; off by default so production starts without touching the products table
     @Bean
+    @ConditionalOnProperty(name = "catalog.sample-data", havingValue = "true")
     public CommandLineRunner loadSampleProducts(ProductRepository productRepository) {
         return args -> {
             if (productRepository.count() == 0) {
@@ -0,0 +1,264 @@
+package com.ecommerce.cache;
+
+import com.ecommerce.datasource.ReadYourWrites;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Two-tier read-through cache for catalog reads: an in-process Caffeine L1 in
+ * front of Redis (L2), in front of MySQL.
+ *
+ * Single products are cached under their id and evicted precisely on save.
+ * Query results (lists) can contain any product, so their Redis keys carry the
+ * catalog version and a save simply moves every node to a new version. Other
+ * nodes learn about saves through the {@link #CHANNEL} pub/sub channel, which
+ * also carries stock changes from checkouts for the in-memory catalog.
+ */
+@Component
+public class ProductCache implements MessageListener {
+    public static final String CHANNEL = "catalog:invalidate";
+    private static final String VERSION_KEY = "catalog:version";
+    private static final String STOCK_PREFIX = "stock:";
+    private static final Logger logger = LoggerFactory.getLogger(ProductCache.class);
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private ReadYourWrites readYourWrites;
+
+    @Value("${catalog.cache.l1.max-size:10000}")
+    private long l1MaxSize;
+    @Value("${catalog.cache.l1.ttl:60s}")
+    private Duration l1Ttl;
+    @Value("${catalog.cache.l2.ttl:10m}")
+    private Duration l2Ttl;
+    @Value("${catalog.cache.l2.enabled:true}")
+    private boolean l2Enabled;
+
+    private final AtomicLong version = new AtomicLong();
+    private final List<Consumer<Long>> invalidationListeners = new CopyOnWriteArrayList<>();
+    private final List<Consumer<Set<Long>>> stockListeners = new CopyOnWriteArrayList<>();
+    private Cache<String, Object> products;
+    private Cache<String, Object> queries;
+
+    @PostConstruct
+    public void init() {
+        products = Caffeine.newBuilder().maximumSize(l1MaxSize).expireAfterWrite(l1Ttl).build();
+        queries = Caffeine.newBuilder().maximumSize(l1MaxSize).expireAfterWrite(l1Ttl).build();
+        if (l2Enabled) {
+            try {
+                String shared = redisTemplate.opsForValue().get(VERSION_KEY);
+                if (shared != null) {
+                    version.set(Long.parseLong(shared));
+                }
+            } catch (DataAccessException e) {
+                logger.warn("Redis unavailable, catalog cache starts L1-only: {}", e.getMessage());
+            }
+        }
+    }
+
+    public <T> T getProduct(Long id, JavaType type, Supplier<T> loader) {
+        String key = "product:" + id;
+        return get(products, key, key, type, loader);
+    }
+
+    public <T> T getQuery(String query, JavaType type, Supplier<T> loader) {
+        return get(queries, query, "v" + version.get() + ":" + query, type, loader);
+    }
+
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Registers a callback for product ids invalidated through the pub/sub channel,
+     * for derived in-memory state that can't simply be dropped. Messages from this
+     * node's own saves are delivered too. A null id means the whole catalog changed
+     * (bulk import).
+     */
+    public void addInvalidationListener(Consumer<Long> listener) {
+        invalidationListeners.add(listener);
+    }
+
+    // Registers a callback for products whose stock moved through checkouts, on this node or another
+    public void addStockListener(Consumer<Set<Long>> listener) {
+        stockListeners.add(listener);
+    }
+
+    /**
+     * Announces that checkouts moved the stock of these products, once the current
+     * transaction commits. Unlike {@link #evict} this leaves the version and cached
+     * entries alone, so stock shown from the cache may lag for a TTL; it only tells
+     * each node's stock listeners which rows to re-read.
+     */
+    public void stockChanged(Set<Long> productIds) {
+        if (productIds.isEmpty()) {
+            return;
+        }
+        afterCommit(() -> {
+            if (l2Enabled) {
+                try {
+                    // Echoes back to this node's listeners too
+                    redisTemplate.convertAndSend(CHANNEL, STOCK_PREFIX + productIds.stream()
+                            .map(String::valueOf).collect(Collectors.joining(",")));
+                    return;
+                } catch (DataAccessException e) {
+                    logger.warn("Could not publish stock change: {}", e.getMessage());
+                }
+            }
+            stockListeners.forEach(listener -> listener.accept(productIds));
+        });
+    }
+
+    /**
+     * Called after a product write commits. Drops the product's own entry, retires
+     * every cached query and tells the other nodes to do the same.
+     */
+    public void evict(Long productId) {
+        long next = version.incrementAndGet();
+        if (l2Enabled) {
+            try {
+                next = redisTemplate.opsForValue().increment(VERSION_KEY);
+                if (productId != null) {
+                    redisTemplate.delete(redisKey("product:" + productId));
+                }
+                redisTemplate.convertAndSend(CHANNEL, next + ":" + (productId != null ? productId : ""));
+            } catch (DataAccessException e) {
+                logger.warn("Could not publish catalog invalidation: {}", e.getMessage());
+            }
+        }
+        apply(next, productId);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        if (body.startsWith(STOCK_PREFIX)) {
+            onStockMessage(body.substring(STOCK_PREFIX.length()));
+            return;
+        }
+        String[] parts = body.split(":", 2);
+        try {
+            Long productId = parts.length > 1 && !parts[1].isEmpty() ? Long.valueOf(parts[1]) : null;
+            apply(Long.parseLong(parts[0]), productId);
+            invalidationListeners.forEach(listener -> listener.accept(productId));
+        } catch (NumberFormatException e) {
+            logger.warn("Ignoring malformed catalog invalidation message");
+        }
+    }
+
+    private void onStockMessage(String ids) {
+        try {
+            Set<Long> productIds = new LinkedHashSet<>();
+            for (String id : ids.split(",")) {
+                productIds.add(Long.valueOf(id));
+            }
+            stockListeners.forEach(listener -> listener.accept(productIds));
+        } catch (NumberFormatException e) {
+            logger.warn("Ignoring malformed stock change message");
+        }
+    }
+
+    // A rolled-back checkout moved no stock, and listeners must read the committed rows
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    // Also where each node, this one or another, learns of a catalog write
+    private void apply(long newVersion, Long productId) {
+        readYourWrites.markCatalogWritten();
+        version.accumulateAndGet(newVersion, Math::max);
+        if (productId != null) {
+            products.invalidate("product:" + productId);
+        } else {
+            products.invalidateAll();
+        }
+        queries.invalidateAll();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T get(Cache<String, Object> l1, String l1Key, String l2Key, JavaType type, Supplier<T> loader) {
+        Object local = l1.getIfPresent(l1Key);
+        if (local != null) {
+            return (T) local;
+        }
+        long before = version.get();
+        T value = readL2(l2Key, type);
+        if (value == null) {
+            value = loader.get();
+            if (value != null && version.get() == before) {
+                writeL2(l2Key, value);
+            }
+        }
+        // A save that raced with the load may have made the value stale; serve it once but don't keep it
+        if (value != null && version.get() == before) {
+            l1.put(l1Key, value);
+        }
+        return value;
+    }
+
+    private <T> T readL2(String key, JavaType type) {
+        if (!l2Enabled) {
+            return null;
+        }
+        try {
+            String json = redisTemplate.opsForValue().get(redisKey(key));
+            return json != null ? objectMapper.readValue(json, type) : null;
+        } catch (DataAccessException | JsonProcessingException e) {
+            logger.debug("Catalog L2 read failed for {}: {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeL2(String key, Object value) {
+        if (!l2Enabled) {
+            return;
+        }
+        try {
+            redisTemplate.opsForValue().set(redisKey(key), objectMapper.writeValueAsString(value), l2Ttl);
+        } catch (DataAccessException | JsonProcessingException e) {
+            logger.debug("Catalog L2 write failed for {}: {}", key, e.getMessage());
+        }
+    }
+
+    private static String redisKey(String key) {
+        return "catalog:" + key;
+    }
+}
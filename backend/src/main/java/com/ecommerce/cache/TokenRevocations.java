@@ -0,0 +1,251 @@
+package com.ecommerce.cache;
+
+import com.ecommerce.service.JwtClaims;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Revoked access tokens, checked on every authenticated request without I/O.
+ *
+ * Individual tokens (logout) go into a Bloom filter of their jti. Access tokens
+ * live at most one access TTL, so the filter is kept in two generations that
+ * rotate every TTL: an entry is dropped only once every token it could match has
+ * expired, and memory stays fixed. A false positive rejects a valid token, which
+ * costs the client one refresh. Per-user revocations (role changes) are exact:
+ * tokens issued before the user's not-before time are rejected.
+ *
+ * Entries are written to Redis and broadcast on {@link #CHANNEL}; a starting
+ * node loads the ones still in force.
+ */
+@Component
+public class TokenRevocations implements MessageListener {
+    public static final String CHANNEL = "auth:revocations";
+    private static final String REVOKED_KEY = "auth:revoked";
+    private static final String NOT_BEFORE_KEY = "auth:not-before";
+    private static final Logger logger = LoggerFactory.getLogger(TokenRevocations.class);
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Value("${security.jwt.access-ttl:15m}")
+    private Duration accessTtl;
+    @Value("${security.revocation.expected-per-window:100000}")
+    private long expectedPerWindow;
+    @Value("${security.revocation.false-positive-rate:1e-6}")
+    private double falsePositiveRate;
+    @Value("${security.revocation.shared:${catalog.cache.l2.enabled:true}}")
+    private boolean shared;
+
+    private int bits;
+    private int hashes;
+    private volatile Generations generations;
+    private final Map<String, Long> notBefore = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        // Standard sizing: m = -n ln p / (ln 2)^2 bits and k = m/n ln 2 hash functions
+        double m = -expectedPerWindow * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+        bits = (int) Math.min(Integer.MAX_VALUE - 63L, Math.max(64L, (long) Math.ceil(m)));
+        hashes = (int) Math.max(1, Math.round(bits / (double) expectedPerWindow * Math.log(2)));
+        generations = new Generations(System.currentTimeMillis(), newFilter(), newFilter());
+        if (shared) {
+            load();
+        }
+    }
+
+    /**
+     * Revokes one access token until its expiry.
+     */
+    public void revoke(String jti, long expiresAtMillis) {
+        long now = System.currentTimeMillis();
+        if (jti == null || expiresAtMillis <= now) {
+            return;
+        }
+        add(jti);
+        if (shared) {
+            try {
+                redisTemplate.opsForZSet().add(REVOKED_KEY, jti, expiresAtMillis);
+                redisTemplate.opsForZSet().removeRangeByScore(REVOKED_KEY, Double.NEGATIVE_INFINITY, now);
+                redisTemplate.convertAndSend(CHANNEL, "j:" + expiresAtMillis + ":" + jti);
+            } catch (DataAccessException e) {
+                logger.warn("Redis unavailable, token revocation is local to this node: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Revokes every access token the user currently holds, e.g. after a role change.
+     * iat has second precision, so the cut-off is the start of the next second: a
+     * token issued earlier in this second is rejected, and so is one issued later
+     * in it, which costs that client one more refresh.
+     */
+    public void revokeUser(String username) {
+        long since = (System.currentTimeMillis() / 1000 + 1) * 1000;
+        notBefore.merge(username, since, Math::max);
+        if (shared) {
+            try {
+                redisTemplate.opsForHash().put(NOT_BEFORE_KEY, username, Long.toString(since));
+                redisTemplate.convertAndSend(CHANNEL, "u:" + since + ":" + username);
+            } catch (DataAccessException e) {
+                logger.warn("Redis unavailable, revocation for {} is local to this node: {}", username, e.getMessage());
+            }
+        }
+    }
+
+    public boolean isRevoked(JwtClaims claims) {
+        Long since = notBefore.get(claims.getSubject());
+        if (since != null && claims.getIssuedAt().getTime() < since) {
+            return true;
+        }
+        Generations current = current();
+        long h1 = fnv1a(claims.getId());
+        long h2 = mix(h1) | 1;
+        return contains(current.current, h1, h2) || contains(current.previous, h1, h2);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        String[] parts = body.split(":", 3);
+        if (parts.length != 3) {
+            return;
+        }
+        try {
+            long time = Long.parseLong(parts[1]);
+            if (parts[0].equals("j")) {
+                if (time > System.currentTimeMillis()) {
+                    add(parts[2]);
+                }
+            } else if (parts[0].equals("u")) {
+                notBefore.merge(parts[2], time, Math::max);
+            }
+        } catch (NumberFormatException e) {
+            logger.warn("Ignoring malformed revocation message {}", body);
+        }
+    }
+
+    private void load() {
+        long now = System.currentTimeMillis();
+        try {
+            Set<ZSetOperations.TypedTuple<String>> revoked = redisTemplate.opsForZSet()
+                    .rangeByScoreWithScores(REVOKED_KEY, now, Double.POSITIVE_INFINITY);
+            if (revoked != null) {
+                revoked.forEach(entry -> add(entry.getValue()));
+            }
+            long cutoff = now - accessTtl.toMillis();
+            Map<Object, Object> users = redisTemplate.opsForHash().entries(NOT_BEFORE_KEY);
+            for (Map.Entry<Object, Object> entry : users.entrySet()) {
+                long since = Long.parseLong((String) entry.getValue());
+                if (since > cutoff) {
+                    notBefore.put((String) entry.getKey(), since);
+                } else {
+                    // Every token issued before it has expired
+                    redisTemplate.opsForHash().delete(NOT_BEFORE_KEY, entry.getKey());
+                }
+            }
+            logger.info("Loaded {} revoked tokens and {} user revocations", revoked != null ? revoked.size() : 0, notBefore.size());
+        } catch (DataAccessException e) {
+            logger.warn("Redis unavailable, token revocations start empty: {}", e.getMessage());
+        }
+    }
+
+    private void add(String jti) {
+        long h1 = fnv1a(jti);
+        long h2 = mix(h1) | 1;
+        AtomicLongArray filter = current().current;
+        for (int i = 0; i < hashes; i++) {
+            int bit = index(h1, h2, i);
+            long mask = 1L << bit;
+            int word = bit >>> 6;
+            long value;
+            do {
+                value = filter.get(word);
+            } while ((value & mask) == 0 && !filter.compareAndSet(word, value, value | mask));
+        }
+    }
+
+    private boolean contains(AtomicLongArray filter, long h1, long h2) {
+        for (int i = 0; i < hashes; i++) {
+            int bit = index(h1, h2, i);
+            if ((filter.get(bit >>> 6) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Rotates lazily: the first caller after a window ends starts the next one
+    private Generations current() {
+        Generations current = generations;
+        long now = System.currentTimeMillis();
+        if (now - current.startedAt < accessTtl.toMillis()) {
+            return current;
+        }
+        synchronized (this) {
+            current = generations;
+            long window = accessTtl.toMillis();
+            if (now - current.startedAt >= window) {
+                // After two idle windows even the previous generation has nothing in force
+                AtomicLongArray previous = now - current.startedAt >= 2 * window ? newFilter() : current.current;
+                current = new Generations(now, newFilter(), previous);
+                generations = current;
+                long cutoff = now - window;
+                notBefore.values().removeIf(since -> since <= cutoff);
+            }
+            return current;
+        }
+    }
+
+    private AtomicLongArray newFilter() {
+        return new AtomicLongArray((bits + 63) / 64);
+    }
+
+    // Kirsch-Mitzenmacher: k indexes from two hashes
+    private int index(long h1, long h2, int i) {
+        return (int) Long.remainderUnsigned(h1 + i * h2, bits);
+    }
+
+    private static long fnv1a(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    // splitmix64 finalizer, so the second hash is independent of the first
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private static final class Generations {
+        private final long startedAt;
+        private final AtomicLongArray current;
+        private final AtomicLongArray previous;
+
+        private Generations(long startedAt, AtomicLongArray current, AtomicLongArray previous) {
+            this.startedAt = startedAt;
+            this.current = current;
+            this.previous = previous;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.ecommerce.cart;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Writes carts that have gone untouched for carts.abandon-after to
+ * saved_cart_items, in batches, and takes them off the touched set. A cart
+ * changed again is written again once it goes quiet; an emptied cart deletes
+ * its rows. Redis stays the only source for cart reads.
+ *
+ * Each run holds {@link #LOCK_KEY} in Redis, so one node at a time writes; the
+ * lock expires after carts.write-behind-lock-ttl should a node die mid-run.
+ */
+@Component
+public class AbandonedCartWriter {
+    private static final Logger logger = LoggerFactory.getLogger(AbandonedCartWriter.class);
+    private static final String UPSERT = "insert into saved_cart_items (username, product_id, quantity, updated_at) values (?, ?, ?, ?) "
+            + "on duplicate key update quantity = values(quantity), updated_at = values(updated_at)";
+    static final String LOCK_KEY = "cart:write-behind:lock";
+    // KEYS: lock; ARGV: token. Releases the lock only if this run still holds it.
+    private static final RedisScript<Long> UNLOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end\n"
+            + "return 0\n",
+            Long.class);
+    // KEYS: touched; ARGV: username and score pairs. Removes only users not touched again since they were read.
+    private static final RedisScript<Long> DONE_SCRIPT = new DefaultRedisScript<>(
+            "local removed = 0\n"
+            + "for i = 1, #ARGV, 2 do\n"
+            + "  if tonumber(redis.call('ZSCORE', KEYS[1], ARGV[i])) == tonumber(ARGV[i + 1]) then\n"
+            + "    removed = removed + redis.call('ZREM', KEYS[1], ARGV[i])\n"
+            + "  end\n"
+            + "end\n"
+            + "return removed\n",
+            Long.class);
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${carts.abandon-after:30m}")
+    private Duration abandonAfter;
+    @Value("${carts.ttl:30d}")
+    private Duration ttl;
+    @Value("${carts.write-behind-batch-size:500}")
+    private int batchSize;
+    @Value("${carts.write-behind-lock-ttl:10m}")
+    private Duration lockTtl;
+
+    @Scheduled(fixedDelayString = "${carts.write-behind-interval-ms:60000}", initialDelayString = "${carts.write-behind-interval-ms:60000}")
+    public void writeAbandoned() {
+        String token = UUID.randomUUID().toString();
+        try {
+            if (!Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(LOCK_KEY, token, lockTtl))) {
+                logger.debug("Another node is writing abandoned carts");
+                return;
+            }
+        } catch (DataAccessException e) {
+            logger.warn("Writing abandoned carts skipped, Redis unavailable: {}", e.getMessage());
+            return;
+        }
+        try {
+            writeLocked();
+        } finally {
+            try {
+                redisTemplate.execute(UNLOCK_SCRIPT, Collections.singletonList(LOCK_KEY), token);
+            } catch (DataAccessException e) {
+                logger.warn("Releasing the write-behind lock failed, it expires in {}: {}", lockTtl, e.getMessage());
+            }
+        }
+    }
+
+    private void writeLocked() {
+        long cutoff = System.currentTimeMillis() - abandonAfter.toMillis();
+        int written = 0;
+        try {
+            Set<ZSetOperations.TypedTuple<String>> batch;
+            do {
+                batch = redisTemplate.opsForZSet().rangeByScoreWithScores(CartService.TOUCHED_KEY, Double.NEGATIVE_INFINITY, cutoff, 0, batchSize);
+                if (batch == null || batch.isEmpty()) {
+                    break;
+                }
+                write(new ArrayList<>(batch));
+                written += batch.size();
+            } while (batch.size() == batchSize);
+            // Their Redis copies have expired by now
+            jdbcTemplate.update("delete from saved_cart_items where updated_at < ?", Timestamp.valueOf(LocalDateTime.now().minus(ttl)));
+        } catch (DataAccessException e) {
+            logger.warn("Writing abandoned carts failed after {}, retrying next time: {}", written, e.getMessage());
+            return;
+        }
+        if (written > 0) {
+            logger.info("Wrote {} abandoned carts", written);
+        }
+    }
+
+    private void write(List<ZSetOperations.TypedTuple<String>> batch) {
+        // One round trip for all the carts in the batch
+        List<Object> carts = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection strings = (StringRedisConnection) connection;
+            for (ZSetOperations.TypedTuple<String> user : batch) {
+                strings.hGetAll(CartService.KEY_PREFIX + user.getValue());
+            }
+            return null;
+        });
+        List<Object[]> deletes = new ArrayList<>(batch.size());
+        List<Object[]> rows = new ArrayList<>();
+        List<String> done = new ArrayList<>(batch.size() * 2);
+        for (int i = 0; i < batch.size(); i++) {
+            ZSetOperations.TypedTuple<String> user = batch.get(i);
+            Timestamp updatedAt = new Timestamp(user.getScore().longValue());
+            @SuppressWarnings("unchecked")
+            Map<String, String> lines = carts.get(i) != null ? (Map<String, String>) carts.get(i) : Collections.emptyMap();
+            deletes.add(new Object[] {user.getValue()});
+            lines.forEach((productId, quantity) ->
+                    rows.add(new Object[] {user.getValue(), Long.valueOf(productId), Integer.valueOf(quantity), updatedAt}));
+            done.add(user.getValue());
+            done.add(Long.toString(user.getScore().longValue()));
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate("delete from saved_cart_items where username = ?", deletes);
+            jdbcTemplate.batchUpdate(UPSERT, rows);
+        });
+        redisTemplate.execute(DONE_SCRIPT, Collections.singletonList(CartService.TOUCHED_KEY), done.toArray());
+    }
+}
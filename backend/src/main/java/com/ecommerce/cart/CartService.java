@@ -0,0 +1,181 @@
+package com.ecommerce.cart;
+
+import com.ecommerce.dto.CartLine;
+import com.ecommerce.dto.CartView;
+import com.ecommerce.dto.ItemQuantity;
+import com.ecommerce.dto.ProductView;
+import com.ecommerce.model.Order;
+import com.ecommerce.search.ProductCatalog;
+import com.ecommerce.service.OrderService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shopping carts, one Redis hash per user (product id to quantity), so adding,
+ * changing or removing a line is a single O(1) command. Lines are priced from
+ * the in-memory catalog; reading a cart never touches MySQL.
+ *
+ * Every change also scores the user in {@link #TOUCHED_KEY} with the time of the
+ * change, which is how {@link AbandonedCartWriter} finds carts gone quiet.
+ */
+@Service
+public class CartService {
+    private static final Logger logger = LoggerFactory.getLogger(CartService.class);
+    static final String KEY_PREFIX = "cart:";
+    static final String TOUCHED_KEY = "cart:touched";
+    // KEYS: cart, touched; ARGV: mode (add/set), product id, quantity, max quantity, max lines, now (ms), ttl (ms), username.
+    // Returns the line's new quantity, -1 if it would exceed max quantity, -2 if the cart has no room for another line.
+    private static final RedisScript<Long> UPDATE_SCRIPT = new DefaultRedisScript<>(
+            "local current = tonumber(redis.call('HGET', KEYS[1], ARGV[2])) or 0\n"
+            + "local quantity = tonumber(ARGV[3])\n"
+            + "if ARGV[1] == 'add' then quantity = current + quantity end\n"
+            + "if quantity > tonumber(ARGV[4]) then return -1 end\n"
+            + "if current == 0 and quantity > 0 and redis.call('HLEN', KEYS[1]) >= tonumber(ARGV[5]) then return -2 end\n"
+            + "if quantity > 0 then\n"
+            + "  redis.call('HSET', KEYS[1], ARGV[2], tostring(quantity))\n"
+            + "  redis.call('PEXPIRE', KEYS[1], ARGV[7])\n"
+            + "else\n"
+            + "  redis.call('HDEL', KEYS[1], ARGV[2])\n"
+            + "end\n"
+            + "redis.call('ZADD', KEYS[2], ARGV[6], ARGV[8])\n"
+            + "return quantity\n",
+            Long.class);
+    // KEYS: cart, touched; ARGV: now (ms), username, then product id and quantity pairs.
+    // Drops the given lines, but only where the quantity is still the one given: lines changed meanwhile stay.
+    // With no pairs it empties the cart.
+    private static final RedisScript<Long> REMOVE_SCRIPT = new DefaultRedisScript<>(
+            "if #ARGV == 2 then redis.call('DEL', KEYS[1]) end\n"
+            + "for i = 3, #ARGV, 2 do\n"
+            + "  if redis.call('HGET', KEYS[1], ARGV[i]) == ARGV[i + 1] then redis.call('HDEL', KEYS[1], ARGV[i]) end\n"
+            + "end\n"
+            + "redis.call('ZADD', KEYS[2], ARGV[1], ARGV[2])\n"
+            + "return 0\n",
+            Long.class);
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+    @Autowired
+    private ProductCatalog productCatalog;
+    @Autowired
+    private OrderService orderService;
+
+    @Value("${carts.max-lines:100}")
+    private int maxLines;
+    @Value("${carts.max-quantity:99}")
+    private int maxQuantity;
+    @Value("${carts.ttl:30d}")
+    private Duration ttl;
+
+    public CartView get(String username) {
+        Map<Object, Object> entries = redisTemplate.opsForHash().entries(KEY_PREFIX + username);
+        List<CartLine> lines = new ArrayList<>(entries.size());
+        if (!entries.isEmpty()) {
+            requireCatalog();
+        }
+        for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+            int quantity = Integer.parseInt((String) entry.getValue());
+            // Products removed from the catalog drop out of the cart's view and total
+            productCatalog.get(Long.valueOf((String) entry.getKey()))
+                    .ifPresent(product -> lines.add(new CartLine(product, quantity)));
+        }
+        lines.sort(Comparator.comparing(CartLine::getProductId));
+        return new CartView(lines);
+    }
+
+    public CartView add(String username, Long productId, Integer quantity) {
+        if (quantity == null || quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be positive");
+        }
+        update(username, "add", productId, quantity);
+        return get(username);
+    }
+
+    // Sets the line's quantity; zero removes it
+    public CartView setQuantity(String username, Long productId, Integer quantity) {
+        if (quantity == null || quantity < 0) {
+            throw new IllegalArgumentException("Quantity must not be negative");
+        }
+        update(username, "set", productId, quantity);
+        return get(username);
+    }
+
+    public CartView remove(String username, Long productId) {
+        update(username, "set", productId, 0);
+        return get(username);
+    }
+
+    public void clear(String username) {
+        redisTemplate.execute(REMOVE_SCRIPT, Arrays.asList(KEY_PREFIX + username, TOUCHED_KEY),
+                Long.toString(System.currentTimeMillis()), username);
+    }
+
+    /**
+     * Places an order for the cart as it is (priced and stock-checked by the
+     * regular checkout) and takes the ordered lines out of the cart. If Redis
+     * fails after the order is placed, the order still stands and the lines stay.
+     */
+    public Order checkout(String username) {
+        Map<Object, Object> entries = redisTemplate.opsForHash().entries(KEY_PREFIX + username);
+        if (entries.isEmpty()) {
+            throw new IllegalArgumentException("Cart is empty");
+        }
+        List<ItemQuantity> items = new ArrayList<>(entries.size());
+        List<String> args = new ArrayList<>(2 + entries.size() * 2);
+        args.add(Long.toString(System.currentTimeMillis()));
+        args.add(username);
+        for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+            items.add(new ItemQuantity(Long.valueOf((String) entry.getKey()), Integer.valueOf((String) entry.getValue())));
+            args.add((String) entry.getKey());
+            args.add((String) entry.getValue());
+        }
+        Order order = orderService.checkout(username, items);
+        // The order is committed: failing now would have the client retry and order the same cart twice
+        try {
+            redisTemplate.execute(REMOVE_SCRIPT, Arrays.asList(KEY_PREFIX + username, TOUCHED_KEY), args.toArray());
+        } catch (DataAccessException e) {
+            logger.warn("Order {} placed but the cart of {} was not emptied: {}", order.getId(), username, e.getMessage());
+        }
+        return order;
+    }
+
+    private void update(String username, String mode, Long productId, int quantity) {
+        if (productId == null) {
+            throw new IllegalArgumentException("productId is required");
+        }
+        if (quantity > 0) {
+            requireCatalog();
+            if (!productCatalog.get(productId).isPresent()) {
+                throw new IllegalArgumentException("Unknown product " + productId);
+            }
+        }
+        Long result = redisTemplate.execute(UPDATE_SCRIPT, Arrays.asList(KEY_PREFIX + username, TOUCHED_KEY),
+                mode, productId.toString(), Integer.toString(quantity), Integer.toString(maxQuantity),
+                Integer.toString(maxLines), Long.toString(System.currentTimeMillis()), Long.toString(ttl.toMillis()), username);
+        if (result != null && result == -1) {
+            throw new IllegalArgumentException("At most " + maxQuantity + " of a product per cart");
+        }
+        if (result != null && result == -2) {
+            throw new IllegalArgumentException("At most " + maxLines + " products per cart");
+        }
+    }
+
+    private void requireCatalog() {
+        if (!productCatalog.isReady()) {
+            throw new IllegalStateException("Catalog is still loading");
+        }
+    }
+}
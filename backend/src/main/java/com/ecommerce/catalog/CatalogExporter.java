@@ -0,0 +1,60 @@
+package com.ecommerce.catalog;
+
+import com.ecommerce.dto.ProductView;
+import com.ecommerce.service.ProductService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes the whole catalog as CSV or NDJSON straight from a database cursor, in
+ * the same columns {@link CatalogImporter} reads, so an export can be edited and
+ * imported back.
+ */
+@Service
+public class CatalogExporter {
+    @Autowired
+    private ProductService productService;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    public void export(OutputStream out, CatalogFormat format) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        try {
+            if (format == CatalogFormat.CSV) {
+                CsvWriter csv = new CsvWriter(writer);
+                csv.writeRecord((Object[]) ProductRecord.COLUMNS);
+                productService.forEachProduct("id", "asc", product -> {
+                    try {
+                        csv.writeRecord(product.getId(), product.getName(), product.getDescription(),
+                                product.getPrice().toPlainString(), product.getStock(), product.getImageUrl());
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } else {
+                ObjectWriter json = objectMapper.writerFor(ProductView.class);
+                productService.forEachProduct("id", "asc", product -> {
+                    try {
+                        writer.write(json.writeValueAsString(product));
+                        writer.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.flush();
+    }
+}
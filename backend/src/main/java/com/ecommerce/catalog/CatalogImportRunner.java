@@ -0,0 +1,57 @@
+package com.ecommerce.catalog;
+
+import com.ecommerce.dto.ImportReport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Command-line import for scheduled syncs:
+ * {@code java -jar app.jar --catalog.import.file=/data/products.csv}. Runs the
+ * same pipeline as {@code POST /api/products/import}, then exits with status 0
+ * when every row was processed and 1 when the import stopped early
+ * (set catalog.import.exit=false to keep the application running instead).
+ */
+@Component
+@ConditionalOnProperty("catalog.import.file")
+public class CatalogImportRunner implements CommandLineRunner {
+    private static final Logger logger = LoggerFactory.getLogger(CatalogImportRunner.class);
+
+    @Autowired
+    private CatalogImporter catalogImporter;
+    @Autowired
+    private ConfigurableApplicationContext context;
+
+    @Value("${catalog.import.file}")
+    private String file;
+    // csv or ndjson; taken from the file extension when empty
+    @Value("${catalog.import.format:}")
+    private String format;
+    @Value("${catalog.import.exit:true}")
+    private boolean exit;
+
+    @Override
+    public void run(String... args) throws Exception {
+        Path path = Paths.get(file);
+        CatalogFormat catalogFormat = format.isEmpty() ? CatalogFormat.forFileName(path.getFileName().toString()) : CatalogFormat.of(format);
+        ImportReport report;
+        try (InputStream in = Files.newInputStream(path)) {
+            report = catalogImporter.importProducts(in, catalogFormat);
+        }
+        report.getErrors().forEach(error -> logger.warn("Rejected {}", error));
+        if (exit) {
+            System.exit(SpringApplication.exit(context, () -> report.isCompleted() ? 0 : 1));
+        }
+    }
+}
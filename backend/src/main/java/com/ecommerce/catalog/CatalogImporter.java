@@ -0,0 +1,328 @@
+package com.ecommerce.catalog;
+
+import com.ecommerce.cache.ProductCache;
+import com.ecommerce.dto.ImportReport;
+import com.ecommerce.search.CatalogIndexer;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bulk product import from CSV or NDJSON of any size. The caller's thread parses
+ * and validates the input incrementally and hands fixed-size batches to a single
+ * writer thread through a small bounded queue: when the database falls behind
+ * the parser blocks, so memory stays at a few batches however large the file is.
+ *
+ * Each batch is one JDBC batch (a multi-row statement with rewriteBatchedStatements)
+ * committed on its own, so an import that stops early keeps the rows written so
+ * far and can simply be re-run: rows with an id are upserts.
+ */
+@Service
+public class CatalogImporter {
+    private static final Logger logger = LoggerFactory.getLogger(CatalogImporter.class);
+    private static final String UPSERT = "insert into products (id, name, description, price, stock, image_url) values (?, ?, ?, ?, ?, ?) "
+            + "on duplicate key update name = values(name), description = values(description), price = values(price), "
+            + "stock = values(stock), image_url = values(image_url)";
+    private static final String INSERT = "insert into products (name, description, price, stock, image_url) values (?, ?, ?, ?, ?)";
+    private static final List<ProductRecord> END_OF_INPUT = new ArrayList<>();
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private ProductCache productCache;
+    @Autowired
+    private CatalogIndexer catalogIndexer;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${catalog.import.batch-size:1000}")
+    private int batchSize;
+    @Value("${catalog.import.queued-batches:4}")
+    private int queuedBatches;
+    @Value("${catalog.import.max-reported-errors:100}")
+    private int maxReportedErrors;
+    @Value("${catalog.import.progress-interval:10s}")
+    private Duration progressInterval;
+
+    // One import at a time: they would only compete for the same rows and connections
+    private final ReentrantLock running = new ReentrantLock();
+    private ExecutorService writer;
+    private Counter rowsWritten;
+    private Counter rowsRejected;
+
+    @PostConstruct
+    public void init() {
+        writer = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "catalog-import-writer"));
+        rowsWritten = Counter.builder("catalog.import.rows").tag("outcome", "written").register(meterRegistry);
+        rowsRejected = Counter.builder("catalog.import.rows").tag("outcome", "rejected").register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writer.shutdownNow();
+    }
+
+    /**
+     * Imports every valid row of {@code in} and reports what happened. Invalid rows
+     * are counted and skipped; I/O or database failures stop the import and are
+     * reported with completed=false.
+     *
+     * @throws ImportInProgressException if another import is running
+     * @throws IllegalArgumentException if a CSV header lacks a required column
+     */
+    public ImportReport importProducts(InputStream in, CatalogFormat format) {
+        if (!running.tryLock()) {
+            throw new ImportInProgressException("Another catalog import is running");
+        }
+        try {
+            Job job = new Job();
+            job.writing = writer.submit(() -> {
+                write(job);
+                return null;
+            });
+            String failure = null;
+            try {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 64 * 1024);
+                skipByteOrderMark(reader);
+                if (format == CatalogFormat.CSV) {
+                    readCsv(reader, job);
+                } else {
+                    readNdjson(reader, job);
+                }
+                job.flush();
+                job.enqueue(END_OF_INPUT);
+                job.writing.get();
+            } catch (IOException e) {
+                failure = "Could not read input: " + e.getMessage();
+            } catch (ExecutionException e) {
+                failure = "Could not write products: " + e.getCause().getMessage();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failure = "Import interrupted";
+            } catch (CsvReader.CsvFormatException e) {
+                failure = "Malformed CSV at " + e.getMessage();
+            } finally {
+                job.writing.cancel(true);
+            }
+            ImportReport report = job.report(failure);
+            if (report.getRowsWritten() > 0) {
+                productCache.evict(null);
+                catalogIndexer.reindexAll();
+            }
+            logger.info("Catalog import {}: {} rows read, {} written, {} rejected in {} ms{}",
+                    report.isCompleted() ? "finished" : "stopped", report.getRowsRead(), report.getRowsWritten(),
+                    report.getRowsRejected(), report.getElapsedMillis(), failure != null ? " (" + failure + ")" : "");
+            return report;
+        } finally {
+            running.unlock();
+        }
+    }
+
+    private void readCsv(BufferedReader reader, Job job) throws IOException, ExecutionException, InterruptedException {
+        CsvReader csv = new CsvReader(reader);
+        List<String> header = csv.next();
+        if (header == null) {
+            return;
+        }
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            columns.put(header.get(i).trim().toLowerCase(Locale.ROOT).replace("_", ""), i);
+        }
+        for (String required : new String[] {"name", "description", "price", "stock"}) {
+            if (!columns.containsKey(required)) {
+                throw new IllegalArgumentException("CSV header is missing the " + required + " column");
+            }
+        }
+        List<String> fields;
+        while ((fields = csv.next()) != null) {
+            ProductRecord record = new ProductRecord();
+            try {
+                record.setId(parseLong(field(fields, columns, "id")));
+                record.setName(field(fields, columns, "name"));
+                record.setDescription(field(fields, columns, "description"));
+                String price = field(fields, columns, "price");
+                record.setPrice(price == null || price.trim().isEmpty() ? null : new BigDecimal(price.trim()));
+                String stock = field(fields, columns, "stock");
+                record.setStock(stock == null || stock.trim().isEmpty() ? null : Integer.valueOf(stock.trim()));
+                String imageUrl = field(fields, columns, "imageurl");
+                record.setImageUrl(imageUrl == null || imageUrl.isEmpty() ? null : imageUrl);
+            } catch (NumberFormatException e) {
+                job.skip(csv.getRecordLine(), "id, price and stock must be numbers");
+                continue;
+            }
+            job.accept(record, csv.getRecordLine());
+        }
+    }
+
+    private void readNdjson(BufferedReader reader, Job job) throws IOException, ExecutionException, InterruptedException {
+        ObjectReader json = objectMapper.readerFor(ProductRecord.class);
+        String line;
+        long lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            ProductRecord record;
+            try {
+                record = json.readValue(line);
+            } catch (JsonProcessingException e) {
+                job.skip(lineNumber, "invalid JSON: " + e.getOriginalMessage());
+                continue;
+            }
+            job.accept(record, lineNumber);
+        }
+    }
+
+    private void write(Job job) throws InterruptedException {
+        List<Object[]> upserts = new ArrayList<>(batchSize);
+        List<Object[]> inserts = new ArrayList<>(batchSize);
+        while (true) {
+            List<ProductRecord> batch = job.queue.take();
+            if (batch == END_OF_INPUT) {
+                return;
+            }
+            for (ProductRecord record : batch) {
+                if (record.getId() != null) {
+                    upserts.add(new Object[] {record.getId(), record.getName(), record.getDescription(),
+                            record.getPrice(), record.getStock(), record.getImageUrl()});
+                } else {
+                    inserts.add(new Object[] {record.getName(), record.getDescription(),
+                            record.getPrice(), record.getStock(), record.getImageUrl()});
+                }
+            }
+            if (!upserts.isEmpty()) {
+                jdbcTemplate.batchUpdate(UPSERT, upserts);
+                upserts.clear();
+            }
+            if (!inserts.isEmpty()) {
+                jdbcTemplate.batchUpdate(INSERT, inserts);
+                inserts.clear();
+            }
+            job.written(batch.size());
+        }
+    }
+
+    private static String field(List<String> fields, Map<String, Integer> columns, String column) {
+        Integer index = columns.get(column);
+        return index != null && index < fields.size() ? fields.get(index) : null;
+    }
+
+    private static Long parseLong(String value) {
+        return value == null || value.trim().isEmpty() ? null : Long.valueOf(value.trim());
+    }
+
+    // Spreadsheet and ERP exports often start with a UTF-8 BOM, which would otherwise end up in the first column name
+    private static void skipByteOrderMark(BufferedReader reader) throws IOException {
+        reader.mark(1);
+        if (reader.read() != '\uFEFF') {
+            reader.reset();
+        }
+    }
+
+    private final class Job {
+        private final long started = System.nanoTime();
+        private final BlockingQueue<List<ProductRecord>> queue = new ArrayBlockingQueue<>(queuedBatches);
+        private final AtomicLong written = new AtomicLong();
+        private final List<String> errors = new ArrayList<>();
+        private List<ProductRecord> batch = new ArrayList<>(batchSize);
+        private long read;
+        private long rejected;
+        private long lastProgress = started;
+        private Future<?> writing;
+
+        void accept(ProductRecord record, long line) throws ExecutionException, InterruptedException {
+            read++;
+            String error = record.validate();
+            if (error != null) {
+                reject(line, error);
+                return;
+            }
+            batch.add(record);
+            if (batch.size() >= batchSize) {
+                flush();
+            }
+        }
+
+        // A row that could not even be parsed
+        void skip(long line, String reason) {
+            read++;
+            reject(line, reason);
+        }
+
+        private void reject(long line, String reason) {
+            rejected++;
+            rowsRejected.increment();
+            if (errors.size() < maxReportedErrors) {
+                errors.add("line " + line + ": " + reason);
+            }
+        }
+
+        void flush() throws ExecutionException, InterruptedException {
+            if (!batch.isEmpty()) {
+                enqueue(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+
+        // Blocks while the queue is full (backpressure), but gives up as soon as the writer has failed
+        void enqueue(List<ProductRecord> records) throws ExecutionException, InterruptedException {
+            while (!queue.offer(records, 1, TimeUnit.SECONDS)) {
+                if (writing.isDone()) {
+                    writing.get();
+                    throw new IllegalStateException("Catalog import writer stopped");
+                }
+            }
+        }
+
+        void written(int rows) {
+            long total = written.addAndGet(rows);
+            rowsWritten.increment(rows);
+            long now = System.nanoTime();
+            if (now - lastProgress >= progressInterval.toNanos()) {
+                long seconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(now - started));
+                logger.info("Catalog import in progress: {} rows written ({} rows/s)", total, total / seconds);
+                lastProgress = now;
+            }
+        }
+
+        ImportReport report(String failure) {
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+            return new ImportReport(failure == null, read, written.get(), rejected, elapsed, errors, failure);
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.ecommerce.catalog;
+
+// Another catalog import holds the importer; the caller should try again once it has finished
+public class ImportInProgressException extends RuntimeException {
+    public ImportInProgressException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,110 @@
+package com.ecommerce.catalog;
+
+import com.fasterxml.jackson.annotation.JsonAlias;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.math.BigDecimal;
+
+/**
+ * One product row of an import file. Rows with an id update (or create) that
+ * product; rows without one are inserted with a generated id.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+class ProductRecord {
+    static final String[] COLUMNS = {"id", "name", "description", "price", "stock", "imageUrl"};
+    private static final int MAX_TEXT = 255;
+
+    private Long id;
+    private String name;
+    private String description;
+    private BigDecimal price;
+    private Integer stock;
+    @JsonAlias("image_url")
+    private String imageUrl;
+
+    /**
+     * Returns why the row can't be stored, or null when it's valid. Mirrors the
+     * products table: required columns, varchar(255) text, decimal(19,2) price.
+     */
+    String validate() {
+        if (id != null && id <= 0) {
+            return "id must be positive";
+        }
+        if (name == null || name.trim().isEmpty()) {
+            return "name is required";
+        }
+        if (name.length() > MAX_TEXT) {
+            return "name is longer than " + MAX_TEXT + " characters";
+        }
+        if (description == null) {
+            return "description is required";
+        }
+        if (description.length() > MAX_TEXT) {
+            return "description is longer than " + MAX_TEXT + " characters";
+        }
+        if (price == null) {
+            return "price is required";
+        }
+        if (price.signum() < 0 || price.stripTrailingZeros().scale() > 2 || price.precision() - price.scale() > 17) {
+            return "price must be a non-negative amount with at most 2 decimals";
+        }
+        if (stock == null) {
+            return "stock is required";
+        }
+        if (stock < 0) {
+            return "stock must not be negative";
+        }
+        if (imageUrl != null && imageUrl.length() > MAX_TEXT) {
+            return "imageUrl is longer than " + MAX_TEXT + " characters";
+        }
+        return null;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
+    public BigDecimal getPrice() {
+        return price;
+    }
+
+    public void setPrice(BigDecimal price) {
+        this.price = price;
+    }
+
+    public Integer getStock() {
+        return stock;
+    }
+
+    public void setStock(Integer stock) {
+        this.stock = stock;
+    }
+
+    public String getImageUrl() {
+        return imageUrl;
+    }
+
+    public void setImageUrl(String imageUrl) {
+        this.imageUrl = imageUrl;
+    }
+}
@@ -1,8 +1,11 @@
 package com.ecommerce.config;
 
 import com.ecommerce.service.JwtService;
+import com.ecommerce.service.RefreshTokenService;
 import com.ecommerce.service.UserService;
 import com.ecommerce.model.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.oauth2.core.user.OAuth2User;
@@ -19,25 +22,27 @@ import javax.servlet.http.HttpServletResponse;
 
 @Component
 public class CustomOAuth2SuccessHandler implements AuthenticationSuccessHandler {
+    private static final Logger logger = LoggerFactory.getLogger(CustomOAuth2SuccessHandler.class);
 
     private final JwtService jwtService;
     private final UserService userService;
+    private final RefreshTokenService refreshTokenService;
 
     @Autowired
-    public CustomOAuth2SuccessHandler(JwtService jwtService, UserService userService) {
+    public CustomOAuth2SuccessHandler(JwtService jwtService, UserService userService, RefreshTokenService refreshTokenService) {
         this.jwtService = jwtService;
         this.userService = userService;
+        this.refreshTokenService = refreshTokenService;
     }
 
     @Override
     public void onAuthenticationSuccess(HttpServletRequest request, HttpServletResponse response, Authentication authentication) throws IOException, ServletException {
-        System.out.println("onAuthenticationSuccess called!");
         OAuth2User oAuth2User = (OAuth2User) authentication.getPrincipal();
         String email = oAuth2User.getAttribute("email");
         String name = oAuth2User.getAttribute("name");
         String username = email;
         // Try to find user by username (email)
-        Optional<User> userOpt = userService.findByUsername(username);
+        Optional<User> userOpt = userService.findForAuthentication(username);
         User user;
         if (userOpt.isPresent()) {
             user = userOpt.get();
@@ -50,8 +55,10 @@ public class CustomOAuth2SuccessHandler implements AuthenticationSuccessHandler
             user.setRole("USER");
             userService.save(user);
         }
-        System.out.println("OAuth2 login success for: " + email);
+        logger.info("OAuth2 login success for user {}", user.getId());
         String jwt = jwtService.generateToken(user.getUsername(), user.getRole());
-        response.sendRedirect("https://shop.vamshimaya.com/products?jwt=" + jwt);
+        // The long-lived refresh token goes in the fragment, which browsers never send to a server or in a Referer
+        String refreshToken = refreshTokenService.issue(user.getUsername());
+        response.sendRedirect("https://shop.vamshimaya.com/products?jwt=" + jwt + "#refreshToken=" + refreshToken);
     }
 }
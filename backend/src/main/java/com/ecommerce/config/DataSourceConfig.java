@@ -0,0 +1,106 @@
+package com.ecommerce.config;
+
+import com.ecommerce.datasource.ReadYourWrites;
+import com.ecommerce.datasource.ReplicaRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read replicas, when datasource.replicas.urls is set. The primary pool is
+ * built from spring.datasource.* as Boot would; each replica gets its own
+ * smaller pool with the same credentials and driver properties. Repositories,
+ * JdbcTemplate and the transaction manager all see the routing data source.
+ */
+@Configuration
+@ConditionalOnProperty("datasource.replicas.urls")
+public class DataSourceConfig {
+    private static final Logger logger = LoggerFactory.getLogger(DataSourceConfig.class);
+
+    @Value("${datasource.replicas.urls}")
+    private List<String> replicaUrls;
+    @Value("${datasource.replicas.pool-size:10}")
+    private int replicaPoolSize;
+    @Value("${datasource.replicas.connection-timeout:1s}")
+    private Duration replicaConnectionTimeout;
+    @Value("${datasource.replicas.max-lag:5s}")
+    private Duration maxLag;
+    @Value("${datasource.replicas.lag-query:show replica status}")
+    private String lagQuery;
+
+    private final List<HikariDataSource> replicas = new ArrayList<>();
+    private ReplicaRoutingDataSource routingDataSource;
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    // Lazy: metrics and Redis (behind ReadYourWrites) themselves depend on the data source
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource primaryDataSource, @Lazy ReadYourWrites readYourWrites, ObjectProvider<MeterRegistry> meterRegistry) {
+        // A replica pool starts on its first connection, after the first check, by when the registry exists. The
+        // tracker keeps the registry itself, so closing the pool at shutdown doesn't go back to the bean factory
+        MetricsTrackerFactory metrics = (poolName, poolStats) ->
+                new MicrometerMetricsTrackerFactory(meterRegistry.getObject()).create(poolName, poolStats);
+        List<DataSource> targets = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        for (String url : replicaUrls) {
+            HikariDataSource replica = new HikariDataSource();
+            replica.setPoolName("replica-" + (replicas.size() + 1));
+            replica.setJdbcUrl(url.trim());
+            replica.setUsername(primaryDataSource.getUsername());
+            replica.setPassword(primaryDataSource.getPassword());
+            replica.setDriverClassName(primaryDataSource.getDriverClassName());
+            replica.setDataSourceProperties(primaryDataSource.getDataSourceProperties());
+            replica.setMaximumPoolSize(replicaPoolSize);
+            // Short, so a saturated or dead replica costs a read this long before it falls back to the primary
+            replica.setConnectionTimeout(replicaConnectionTimeout.toMillis());
+            replica.setReadOnly(true);
+            replica.setMetricsTrackerFactory(metrics);
+            replicas.add(replica);
+            targets.add(replica);
+            names.add(replica.getPoolName());
+        }
+        routingDataSource = new ReplicaRoutingDataSource(primaryDataSource, targets, names, readYourWrites, maxLag, lagQuery);
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+
+    @Scheduled(fixedDelayString = "${datasource.replicas.check-interval-ms:5000}")
+    public void checkReplicas() {
+        routingDataSource.checkReplicas();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (HikariDataSource replica : replicas) {
+            try {
+                replica.close();
+            } catch (RuntimeException e) {
+                logger.warn("Closing {} failed: {}", replica.getPoolName(), e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.ecommerce.config;
+
+import org.apache.coyote.ProtocolHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ConcurrentTaskExecutor;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * execution.mode selects how blocking work is scheduled:
+ * <ul>
+ *   <li>platform: requests and Stripe calls run on Tomcat's worker pool (the old behaviour)</li>
+ *   <li>async: Stripe calls move to a bounded pool and the request thread is released while they run</li>
+ *   <li>virtual: Tomcat and Stripe calls run on virtual threads (Java 21+, otherwise async)</li>
+ * </ul>
+ * In every mode JDBC stays bounded by the Hikari pool and Stripe by its bulkhead;
+ * virtual threads only stop idle waits from pinning platform threads.
+ *
+ * Streamed response bodies are written on their own executor rather than Boot's
+ * shared task pool, and get execution.streaming.timeout instead of the
+ * 30-second async request timeout.
+ */
+@Configuration
+public class ExecutionConfig implements WebMvcConfigurer {
+    // A Duration a handler may set on its request to give its streamed body a different timeout
+    public static final String STREAMING_TIMEOUT_ATTRIBUTE = ExecutionConfig.class.getName() + ".streamingTimeout";
+    private static final Logger logger = LoggerFactory.getLogger(ExecutionConfig.class);
+
+    @Value("${execution.mode:platform}")
+    private String executionMode;
+    @Value("${execution.streaming.max-concurrent:50}")
+    private int streamingMaxConcurrent;
+    @Value("${execution.streaming.timeout:10m}")
+    private Duration streamingTimeout;
+
+    private ExecutorService streamingExecutor;
+
+    @Bean
+    @ConditionalOnProperty(name = "execution.mode", havingValue = VirtualThreads.MODE_VIRTUAL)
+    public TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadRequestExecutor() {
+        Optional<ExecutorService> executor = VirtualThreads.newPerTaskExecutor();
+        if (!executor.isPresent()) {
+            logger.warn("execution.mode=virtual needs Java 21+ (running {}); Tomcat keeps its platform thread pool",
+                    System.getProperty("java.version"));
+            return protocolHandler -> { };
+        }
+        logger.info("Tomcat requests run on virtual threads");
+        return protocolHandler -> protocolHandler.setExecutor(executor.get());
+    }
+
+    // Controllers return Callables only as StreamingResponseBody, so the interceptor sees nothing else;
+    // DeferredResult and CompletableFuture responses keep spring.mvc.async.request-timeout
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        streamingExecutor = createStreamingExecutor();
+        configurer.setTaskExecutor(new ConcurrentTaskExecutor(streamingExecutor));
+        configurer.registerCallableInterceptors(new CallableProcessingInterceptor() {
+            @Override
+            public <T> void beforeConcurrentHandling(NativeWebRequest request, Callable<T> task) {
+                if (request instanceof AsyncWebRequest) {
+                    Object timeout = request.getAttribute(STREAMING_TIMEOUT_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+                    ((AsyncWebRequest) request).setTimeout((timeout instanceof Duration ? (Duration) timeout : streamingTimeout).toMillis());
+                }
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (streamingExecutor != null) {
+            streamingExecutor.shutdown();
+        }
+    }
+
+    private ExecutorService createStreamingExecutor() {
+        if (VirtualThreads.MODE_VIRTUAL.equals(executionMode)) {
+            Optional<ExecutorService> virtual = VirtualThreads.newPerTaskExecutor();
+            if (virtual.isPresent()) {
+                return virtual.get();
+            }
+        }
+        // No queue: with every thread busy the request thread writes the body itself, as before streaming moved off it
+        AtomicInteger threadNumber = new AtomicInteger();
+        return new ThreadPoolExecutor(streamingMaxConcurrent, streamingMaxConcurrent, 60L, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "response-stream-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+}
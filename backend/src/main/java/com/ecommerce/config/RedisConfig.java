@@ -0,0 +1,27 @@
+package com.ecommerce.config;
+
+import com.ecommerce.cache.ProductCache;
+import com.ecommerce.cache.TokenRevocations;
+import com.ecommerce.datasource.ReadYourWrites;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+@Configuration
+@ConditionalOnProperty(name = "catalog.cache.l2.enabled", havingValue = "true", matchIfMissing = true)
+public class RedisConfig {
+
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory, ProductCache productCache,
+                                                                       TokenRevocations tokenRevocations, ReadYourWrites readYourWrites) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(productCache, new ChannelTopic(ProductCache.CHANNEL));
+        container.addMessageListener(tokenRevocations, new ChannelTopic(TokenRevocations.CHANNEL));
+        container.addMessageListener(readYourWrites, new ChannelTopic(ReadYourWrites.CHANNEL));
+        return container;
+    }
+}
@@ -1,10 +1,13 @@
 package com.ecommerce.config;
 
+import com.ecommerce.cache.TokenRevocations;
+import com.ecommerce.service.JwtClaims;
 import com.ecommerce.service.JwtService;
-import com.ecommerce.repository.UserRepository;
+import io.jsonwebtoken.JwtException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
@@ -12,6 +15,8 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.HttpStatusEntryPoint;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.web.filter.OncePerRequestFilter;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
@@ -25,14 +30,13 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.util.Optional;
 
 @Configuration
 public class SecurityConfig {
     @Autowired
     private JwtService jwtService;
     @Autowired
-    private UserRepository userRepository;
+    private TokenRevocations tokenRevocations;
     @Autowired
     private CustomOAuth2SuccessHandler customOAuth2SuccessHandler;
 
@@ -45,18 +49,29 @@ public class SecurityConfig {
             .authorizeRequests()
             .antMatchers("/", "/index.html").permitAll()
             .antMatchers("/api/auth/**").permitAll()
+            // Stripe cannot send a JWT; the webhook authenticates by its signature instead
+            .antMatchers(org.springframework.http.HttpMethod.POST, "/api/payments/webhook").permitAll()
             .antMatchers("/oauth2/**").permitAll()
+            // Load balancer probes and the Prometheus scraper don't carry a JWT
+            .antMatchers(org.springframework.http.HttpMethod.GET, "/actuator/health/**", "/actuator/prometheus").permitAll()
+            .antMatchers(org.springframework.http.HttpMethod.POST, "/img/**").hasAuthority("ADMIN")
             .antMatchers("/img/**", "/css/**", "/js/**", "/static/**").permitAll()
+            .antMatchers("/api/reports/**").hasAuthority("ADMIN")
+            .antMatchers(org.springframework.http.HttpMethod.GET, "/api/products/export").hasAuthority("ADMIN")
             .antMatchers(org.springframework.http.HttpMethod.GET, "/api/products/**").permitAll()
             .antMatchers(org.springframework.http.HttpMethod.POST, "/api/products/**").hasAuthority("ADMIN")
             .antMatchers(org.springframework.http.HttpMethod.PUT, "/api/products/**").hasAuthority("ADMIN")
             .antMatchers(org.springframework.http.HttpMethod.DELETE, "/api/products/**").hasAuthority("ADMIN")
             .anyRequest().authenticated()
             .and()
+            .exceptionHandling()
+            // API clients get a 401 (and refresh their token) instead of a redirect to the OAuth login page
+            .defaultAuthenticationEntryPointFor(new HttpStatusEntryPoint(HttpStatus.UNAUTHORIZED), new AntPathRequestMatcher("/api/**"))
+            .and()
             .oauth2Login()
             .successHandler(customOAuth2SuccessHandler)
             .and()
-            .addFilterBefore(new JwtAuthFilter(jwtService, userRepository), UsernamePasswordAuthenticationFilter.class);
+            .addFilterBefore(new JwtAuthFilter(jwtService, tokenRevocations), UsernamePasswordAuthenticationFilter.class);
         return http.build();
     }
 
@@ -72,32 +87,24 @@ public class SecurityConfig {
         return source;
     }
 
+    /**
+     * Authorizes from the access token alone: the signature is verified once per token
+     * and the role comes from its claims, so requests never touch the database. Role
+     * changes and logouts take effect through {@link TokenRevocations}.
+     */
     public static class JwtAuthFilter extends OncePerRequestFilter {
         private final JwtService jwtService;
-        private final UserRepository userRepository;
-        public JwtAuthFilter(JwtService jwtService, UserRepository userRepository) {
+        private final TokenRevocations tokenRevocations;
+        public JwtAuthFilter(JwtService jwtService, TokenRevocations tokenRevocations) {
             this.jwtService = jwtService;
-            this.userRepository = userRepository;
+            this.tokenRevocations = tokenRevocations;
         }
         @Override
         protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
             String authHeader = request.getHeader("Authorization");
-            String token = null;
-            String username = null;
-            String role = null;
-            if (authHeader != null && authHeader.startsWith("Bearer ")) {
-                token = authHeader.substring(7);
-                username = jwtService.extractUsername(token);
-                role = jwtService.extractRole(token);
-            }
-            if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                Optional<com.ecommerce.model.User> userOpt = userRepository.findByUsername(username);
-                if (userOpt.isPresent() && jwtService.validateToken(token, username)) {
-                    UserDetails userDetails = org.springframework.security.core.userdetails.User
-                        .withUsername(username)
-                        .password(userOpt.get().getPassword())
-                        .authorities(role != null ? role : "USER")
-                        .build();
+            if (authHeader != null && authHeader.startsWith("Bearer ") && SecurityContextHolder.getContext().getAuthentication() == null) {
+                UserDetails userDetails = resolvePrincipal(authHeader.substring(7));
+                if (userDetails != null) {
                     UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
                         userDetails, null, userDetails.getAuthorities());
                     SecurityContextHolder.getContext().setAuthentication(authToken);
@@ -105,5 +112,24 @@ public class SecurityConfig {
             }
             filterChain.doFilter(request, response);
         }
+
+        private UserDetails resolvePrincipal(String token) {
+            JwtClaims claims;
+            try {
+                claims = jwtService.verify(token);
+            } catch (JwtException | IllegalArgumentException e) {
+                return null;
+            }
+            // Tokens without a jti predate revocation support and cannot be revoked, so they are refused
+            if (claims.getSubject() == null || claims.getId() == null || tokenRevocations.isRevoked(claims)) {
+                return null;
+            }
+            String role = claims.getRole();
+            return org.springframework.security.core.userdetails.User
+                .withUsername(claims.getSubject())
+                .password("")
+                .authorities(role != null ? role : "USER")
+                .build();
+        }
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,60 @@
+package com.ecommerce.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+
+/**
+ * With spring.main.lazy-initialization, controllers, services and repositories
+ * are created on first use instead of before the server starts. Beans that do
+ * work nobody asks them for (scheduled jobs, event and Redis listeners) stay
+ * eager, or they would never start.
+ *
+ * startup.training-run exits as soon as the context has refreshed, before any
+ * startup job touches the database; the Docker build uses it to record which
+ * classes go into the class data sharing archive.
+ */
+@Configuration
+public class StartupConfig {
+    private static final Logger logger = LoggerFactory.getLogger(StartupConfig.class);
+
+    @Value("${startup.training-run:false}")
+    private boolean trainingRun;
+
+    @Bean
+    public static LazyInitializationExcludeFilter backgroundWorkIsEager() {
+        return (beanName, beanDefinition, beanType) -> MessageListener.class.isAssignableFrom(beanType)
+                || hasAnnotatedMethod(beanType, Scheduled.class)
+                || hasAnnotatedMethod(beanType, EventListener.class);
+    }
+
+    @EventListener(ApplicationStartedEvent.class)
+    public void exitAfterTrainingRun(ApplicationStartedEvent event) {
+        if (trainingRun) {
+            logger.info("Training run finished, exiting");
+            System.exit(SpringApplication.exit(event.getApplicationContext()));
+        }
+    }
+
+    private static boolean hasAnnotatedMethod(Class<?> type, Class<? extends Annotation> annotation) {
+        for (Method method : ReflectionUtils.getAllDeclaredMethods(type)) {
+            if (AnnotatedElementUtils.hasAnnotation(method, annotation)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
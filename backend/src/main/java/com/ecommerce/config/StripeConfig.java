@@ -1,19 +1,33 @@
 package com.ecommerce.config;
 
 import com.stripe.Stripe;
+import com.stripe.net.ApiResource;
+import com.stripe.net.LiveStripeResponseGetter;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 
 import javax.annotation.PostConstruct;
+import java.time.Duration;
 
 @Configuration
 public class StripeConfig {
     
     @Value("${stripe.secret.key}")
     private String secretKey;
-    
+
+    // Point at a local fake (e.g. stripe-mock on http://localhost:12111) in tests
+    @Value("${stripe.api-base:}")
+    private String apiBase;
+
+    @Value("${stripe.timeout.connect:2s}")
+    private Duration connectTimeout;
+
     @PostConstruct
     public void initStripe() {
         Stripe.apiKey = secretKey;
+        if (!apiBase.isEmpty()) {
+            Stripe.overrideApiBase(apiBase);
+        }
+        ApiResource.setStripeResponseGetter(new LiveStripeResponseGetter(new StripeHttpClient(connectTimeout)));
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,60 @@
+package com.ecommerce.config;
+
+import com.stripe.exception.ApiConnectionException;
+import com.stripe.net.HttpClient;
+import com.stripe.net.HttpHeaders;
+import com.stripe.net.StripeRequest;
+import com.stripe.net.StripeResponse;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+
+/**
+ * Sends Stripe's requests through a {@link java.net.http.HttpClient} of our own,
+ * so keep-alive connections are pooled per client rather than by
+ * HttpURLConnection's JVM-wide cache, which keeps only 5 idle connections per
+ * host: with more concurrent Stripe calls the rest would pay a fresh TLS
+ * handshake each time. Idle connections are kept for as many calls as ran at once.
+ */
+class StripeHttpClient extends HttpClient {
+    private final java.net.http.HttpClient client;
+
+    StripeHttpClient(Duration connectTimeout) {
+        client = java.net.http.HttpClient.newBuilder()
+                .version(java.net.http.HttpClient.Version.HTTP_1_1)
+                .connectTimeout(connectTimeout)
+                .build();
+    }
+
+    @Override
+    public StripeResponse request(StripeRequest request) throws ApiConnectionException {
+        HttpRequest.Builder builder;
+        try {
+            builder = HttpRequest.newBuilder(request.url().toURI());
+        } catch (URISyntaxException e) {
+            throw new ApiConnectionException("Invalid Stripe URL " + request.url(), e);
+        }
+        builder.timeout(Duration.ofMillis(request.options().getReadTimeout()))
+                .header("User-Agent", buildUserAgentString())
+                .header("X-Stripe-Client-User-Agent", buildXStripeClientUserAgentString());
+        request.headers().map().forEach((name, values) -> builder.header(name, String.join(",", values)));
+        if (request.content() != null) {
+            builder.header("Content-Type", request.content().contentType());
+            builder.method(request.method().name(), HttpRequest.BodyPublishers.ofByteArray(request.content().byteArrayContent()));
+        } else {
+            builder.method(request.method().name(), HttpRequest.BodyPublishers.noBody());
+        }
+        try {
+            HttpResponse<String> response = client.send(builder.build(), HttpResponse.BodyHandlers.ofString());
+            return new StripeResponse(response.statusCode(), HttpHeaders.of(response.headers().map()), response.body());
+        } catch (IOException e) {
+            throw new ApiConnectionException("IOException during API request to Stripe: " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ApiConnectionException("Interrupted during API request to Stripe", e);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.ecommerce.config;
+
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Virtual threads are only available from Java 21, while the project still
+ * compiles for Java 11. The executor is looked up reflectively so the same
+ * build runs everywhere and switches on when the runtime supports it.
+ */
+public final class VirtualThreads {
+    public static final String MODE_PLATFORM = "platform";
+    public static final String MODE_ASYNC = "async";
+    public static final String MODE_VIRTUAL = "virtual";
+
+    private VirtualThreads() {
+    }
+
+    public static Optional<ExecutorService> newPerTaskExecutor() {
+        try {
+            return Optional.of((ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null));
+        } catch (ReflectiveOperationException e) {
+            return Optional.empty();
+        }
+    }
+}
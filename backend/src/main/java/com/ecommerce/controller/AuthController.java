@@ -1,16 +1,27 @@
 package com.ecommerce.controller;
 
+import com.ecommerce.cache.TokenRevocations;
 import com.ecommerce.model.User;
 import com.ecommerce.repository.UserRepository;
+import com.ecommerce.service.JwtClaims;
 import com.ecommerce.service.JwtService;
+import com.ecommerce.service.LoginRateLimiter;
+import com.ecommerce.service.PasswordHasher;
+import com.ecommerce.service.RefreshTokenService;
+import com.ecommerce.service.UserService;
+import io.jsonwebtoken.JwtException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletRequest;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api/auth")
@@ -18,31 +29,136 @@ public class AuthController {
     @Autowired
     private UserRepository userRepository;
     @Autowired
+    private UserService userService;
+    @Autowired
     private JwtService jwtService;
-    private BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
+    @Autowired
+    private PasswordHasher passwordHasher;
+    @Autowired
+    private LoginRateLimiter loginRateLimiter;
+    @Autowired
+    private RefreshTokenService refreshTokenService;
+    @Autowired
+    private TokenRevocations tokenRevocations;
 
+    // Hashing runs on PasswordHasher's pool; the request thread is released meanwhile
     @PostMapping("/register")
-    public ResponseEntity<?> register(@RequestBody User user) {
-        if (userRepository.findByUsername(user.getUsername()).isPresent()) {
-            return ResponseEntity.badRequest().body("Username already exists");
+    public CompletableFuture<ResponseEntity<?>> register(@RequestBody User user, HttpServletRequest request) {
+        long waitMillis = loginRateLimiter.tryAcquire(request.getRemoteAddr(), null);
+        if (waitMillis > 0) {
+            return CompletableFuture.completedFuture(tooManyAttempts(waitMillis));
+        }
+        if (user.getUsername() == null || user.getPassword() == null) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body("Username and password are required"));
         }
-        user.setPassword(passwordEncoder.encode(user.getPassword()));
-        if (user.getRole() == null || user.getRole().isEmpty()) {
-            user.setRole("USER");
+        if (userRepository.findByUsername(user.getUsername()).isPresent()) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body("Username already exists"));
         }
-        userRepository.save(user);
-        return ResponseEntity.ok("User registered successfully");
+        return passwordHasher.encode(user.getPassword())
+                .<ResponseEntity<?>>thenApply(hash -> {
+                    user.setPassword(hash);
+                    if (user.getRole() == null || user.getRole().isEmpty()) {
+                        user.setRole("USER");
+                    }
+                    userService.save(user);
+                    return ResponseEntity.ok("User registered successfully");
+                })
+                .exceptionally(AuthController::authError);
     }
 
     @PostMapping("/login")
-    public ResponseEntity<?> login(@RequestBody Map<String, String> loginData) {
-        Optional<User> userOpt = userRepository.findByUsername(loginData.get("username"));
-        if (userOpt.isPresent() && passwordEncoder.matches(loginData.get("password"), userOpt.get().getPassword())) {
-            String token = jwtService.generateToken(userOpt.get().getUsername(), userOpt.get().getRole());
-            Map<String, String> response = new HashMap<>();
-            response.put("token", token);
-            return ResponseEntity.ok(response);
-        }
-        return ResponseEntity.status(401).body("Invalid credentials");
+    public CompletableFuture<ResponseEntity<?>> login(@RequestBody Map<String, String> loginData, HttpServletRequest request) {
+        String username = loginData.get("username");
+        String password = loginData.get("password");
+        if (username == null || password == null) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body("Username and password are required"));
+        }
+        long waitMillis = loginRateLimiter.tryAcquire(request.getRemoteAddr(), username);
+        if (waitMillis > 0) {
+            return CompletableFuture.completedFuture(tooManyAttempts(waitMillis));
+        }
+        Optional<User> userOpt = userService.findForAuthentication(username);
+        return passwordHasher.verify(password, userOpt.map(User::getPassword).orElse(null))
+                .<ResponseEntity<?>>thenApply(verification -> {
+                    if (!verification.isMatched()) {
+                        return ResponseEntity.status(401).body("Invalid credentials");
+                    }
+                    User user = userOpt.get();
+                    if (verification.getRehashed() != null) {
+                        // The configured bcrypt cost changed since this hash was made; same password,
+                        // so this goes straight to the repository and leaves the user's other sessions alone
+                        user.setPassword(verification.getRehashed());
+                        userRepository.save(user);
+                    }
+                    return ResponseEntity.ok(tokens(user, refreshTokenService.issue(user.getUsername())));
+                })
+                .exceptionally(AuthController::authError);
+    }
+
+    /**
+     * Exchanges a refresh token for a new access token and a new refresh token.
+     * The role is read again here, so a role change reaches the client on its next refresh.
+     */
+    @PostMapping("/refresh")
+    public ResponseEntity<?> refresh(@RequestBody Map<String, String> body) {
+        String refreshToken = body.get("refreshToken");
+        if (refreshToken == null) {
+            return ResponseEntity.badRequest().body("refreshToken is required");
+        }
+        Optional<RefreshTokenService.Rotation> rotation = refreshTokenService.rotate(refreshToken);
+        if (!rotation.isPresent()) {
+            return ResponseEntity.status(401).body("Invalid refresh token");
+        }
+        Optional<User> userOpt = userService.findForAuthentication(rotation.get().getUsername());
+        if (!userOpt.isPresent()) {
+            refreshTokenService.revokeAll(rotation.get().getUsername());
+            return ResponseEntity.status(401).body("Invalid refresh token");
+        }
+        return ResponseEntity.ok(tokens(userOpt.get(), rotation.get().getRefreshToken()));
+    }
+
+    // Ends the session: the refresh token's family and, when sent along, the current access token
+    @PostMapping("/logout")
+    public ResponseEntity<?> logout(@RequestBody(required = false) Map<String, String> body,
+                                    @RequestHeader(value = "Authorization", required = false) String authorization) {
+        if (body != null && body.get("refreshToken") != null) {
+            refreshTokenService.revoke(body.get("refreshToken"));
+        }
+        if (authorization != null && authorization.startsWith("Bearer ")) {
+            try {
+                JwtClaims claims = jwtService.verify(authorization.substring(7));
+                tokenRevocations.revoke(claims.getId(), claims.getExpiration().getTime());
+            } catch (JwtException | IllegalArgumentException e) {
+                // Already invalid, nothing to revoke
+            }
+        }
+        return ResponseEntity.noContent().build();
+    }
+
+    private Map<String, Object> tokens(User user, String refreshToken) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("token", jwtService.generateToken(user.getUsername(), user.getRole()));
+        response.put("refreshToken", refreshToken);
+        response.put("tokenType", "Bearer");
+        response.put("expiresIn", jwtService.getAccessTtl().getSeconds());
+        return response;
+    }
+
+    private static ResponseEntity<?> tooManyAttempts(long waitMillis) {
+        long seconds = Math.max(1, (waitMillis + 999) / 1000);
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header("Retry-After", Long.toString(seconds))
+                .body("Too many attempts, try again later");
+    }
+
+    private static ResponseEntity<?> authError(Throwable failure) {
+        Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+        if (cause instanceof RejectedExecutionException) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header("Retry-After", "1").body("Authentication is busy, try again shortly");
+        }
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        throw new IllegalStateException(cause);
     }
-} 
\ No newline at end of file
+}
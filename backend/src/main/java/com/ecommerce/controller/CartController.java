@@ -0,0 +1,75 @@
+package com.ecommerce.controller;
+
+import com.ecommerce.cart.CartService;
+import com.ecommerce.dto.ItemQuantity;
+import com.ecommerce.service.InsufficientStockException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.security.Principal;
+import java.util.function.Supplier;
+
+// The signed-in user's cart; 503 while Redis is unreachable or the catalog is still loading
+@RestController
+@RequestMapping("/api/cart")
+public class CartController {
+    private static final Logger logger = LoggerFactory.getLogger(CartController.class);
+
+    @Autowired
+    private CartService cartService;
+
+    @GetMapping
+    public ResponseEntity<?> getCart(Principal principal) {
+        return respond(() -> cartService.get(principal.getName()));
+    }
+
+    @PostMapping("/items")
+    public ResponseEntity<?> addItem(@RequestBody ItemQuantity item, Principal principal) {
+        return respond(() -> cartService.add(principal.getName(), item.getProductId(), item.getQuantity()));
+    }
+
+    @PutMapping("/items/{productId}")
+    public ResponseEntity<?> setQuantity(@PathVariable Long productId, @RequestBody ItemQuantity item, Principal principal) {
+        return respond(() -> cartService.setQuantity(principal.getName(), productId, item.getQuantity()));
+    }
+
+    @DeleteMapping("/items/{productId}")
+    public ResponseEntity<?> removeItem(@PathVariable Long productId, Principal principal) {
+        return respond(() -> cartService.remove(principal.getName(), productId));
+    }
+
+    @DeleteMapping
+    public ResponseEntity<?> clear(Principal principal) {
+        return respond(() -> {
+            cartService.clear(principal.getName());
+            return cartService.get(principal.getName());
+        });
+    }
+
+    @PostMapping("/checkout")
+    public ResponseEntity<?> checkout(Principal principal) {
+        try {
+            return respond(() -> cartService.checkout(principal.getName()));
+        } catch (InsufficientStockException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        }
+    }
+
+    private static ResponseEntity<?> respond(Supplier<?> action) {
+        try {
+            return ResponseEntity.ok(action.get());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage());
+        } catch (DataAccessException e) {
+            logger.warn("Cart store unavailable: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Cart is unavailable, try again shortly");
+        }
+    }
+}
@@ -1,21 +1,56 @@
 package com.ecommerce.controller;
 
+import com.ecommerce.dto.CheckoutRequest;
+import com.ecommerce.dto.CursorPage;
 import com.ecommerce.model.Order;
+import com.ecommerce.service.InsufficientStockException;
 import com.ecommerce.service.OrderService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import java.util.List;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import java.security.Principal;
 
 @RestController
 @RequestMapping("/api/orders")
 public class OrderController {
     @Autowired
     private OrderService orderService;
+    @Autowired
+    private ObjectMapper objectMapper;
 
     @GetMapping
-    public ResponseEntity<List<Order>> getAllOrders() {
-        return ResponseEntity.ok(orderService.findAll());
+    public ResponseEntity<StreamingResponseBody> getAllOrders() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(StreamingJson.array(objectMapper, orderService::forEachOrder));
+    }
+
+    @GetMapping("/scroll")
+    public ResponseEntity<?> scrollOrders(
+        @RequestParam(required = false) String cursor,
+        @RequestParam(required = false, defaultValue = "20") int size
+    ) {
+        try {
+            CursorPage<Order> page = orderService.scroll(cursor, size);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @PostMapping("/checkout")
+    public ResponseEntity<?> checkout(@RequestBody CheckoutRequest request, Principal principal) {
+        try {
+            return ResponseEntity.ok(orderService.checkout(principal.getName(), request.getItems()));
+        } catch (InsufficientStockException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
     }
 
     @PostMapping
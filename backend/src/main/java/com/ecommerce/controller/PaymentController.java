@@ -1,17 +1,25 @@
 package com.ecommerce.controller;
 
+import com.ecommerce.model.Order;
+import com.ecommerce.service.OrderService;
+import com.ecommerce.service.PaymentGatewayBusyException;
 import com.ecommerce.service.StripeService;
+import com.ecommerce.service.WebhookInboxService;
 import com.stripe.exception.StripeException;
 import com.stripe.model.Event;
-import com.stripe.model.PaymentIntent;
 import com.stripe.model.StripeObject;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.security.Principal;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @RestController
 @RequestMapping("/api/payments")
@@ -20,50 +28,90 @@ public class PaymentController {
 
     @Autowired
     private StripeService stripeService;
+    @Autowired
+    private WebhookInboxService webhookInboxService;
+    @Autowired
+    private OrderService orderService;
 
     @Value("${stripe.webhook.secret}")
     private String webhookSecret;
 
+    // The order lookup runs here; the Stripe call may complete on another thread (see execution.mode)
     @PostMapping("/create-payment-intent")
-    public ResponseEntity<Map<String, String>> createPaymentIntent(@RequestBody Map<String, Object> payload) {
+    public CompletableFuture<ResponseEntity<Map<String, String>>> createPaymentIntent(@RequestBody Map<String, Object> payload, Principal principal,
+                                                                                      @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
         try {
-            Long amount = Long.parseLong(payload.get("amount").toString());
             String currency = (String) payload.get("currency");
+            Map<String, String> metadata = new HashMap<>();
+            Long amount;
+            if (payload.get("orderId") != null) {
+                // Pay for a checked-out order: amount comes from the order, not the client
+                Optional<Order> order = orderService.findById(Long.parseLong(payload.get("orderId").toString()))
+                        .filter(o -> principal != null && o.getUser().getUsername().equals(principal.getName()));
+                if (!order.isPresent()) {
+                    Map<String, String> errorData = new HashMap<>();
+                    errorData.put("error", "Unknown order");
+                    return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(errorData));
+                }
+                amount = order.get().getTotalAmount().movePointRight(2).longValueExact();
+                metadata.put(StripeService.ORDER_METADATA_KEY, order.get().getId().toString());
+                metadata.put(StripeService.RESERVATION_METADATA_KEY, order.get().getReservationReference());
+                if (idempotencyKey == null) {
+                    // An order is paid once, so double-submits without a header still collapse
+                    idempotencyKey = "order-" + order.get().getId() + "-" + amount;
+                }
+            } else {
+                // No order, so no stock is attached: only the order path carries a reservation
+                amount = Long.parseLong(payload.get("amount").toString());
+            }
             
-            PaymentIntent paymentIntent = stripeService.createPaymentIntent(amount, currency);
-            
-            Map<String, String> responseData = new HashMap<>();
-            responseData.put("clientSecret", paymentIntent.getClientSecret());
-            
-            return ResponseEntity.ok(responseData);
-        } catch (StripeException e) {
-            Map<String, String> errorData = new HashMap<>();
-            errorData.put("error", e.getMessage());
+            // Keys are scoped per caller so two users can't collide on (or replay) each other's intents
+            String scopedKey = idempotencyKey == null ? null
+                    : (principal != null ? principal.getName() : "anonymous") + ":" + idempotencyKey;
+            return stripeService.createPaymentIntentAsync(amount, currency, metadata, scopedKey)
+                    .thenApply(paymentIntent -> {
+                        Map<String, String> responseData = new HashMap<>();
+                        responseData.put("clientSecret", paymentIntent.getClientSecret());
+                        return ResponseEntity.ok(responseData);
+                    })
+                    .exceptionally(PaymentController::paymentError);
+        } catch (RuntimeException e) {
+            return CompletableFuture.completedFuture(paymentError(e));
+        }
+    }
+
+    private static ResponseEntity<Map<String, String>> paymentError(Throwable failure) {
+        Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+        Map<String, String> errorData = new HashMap<>();
+        errorData.put("error", cause.getMessage());
+        if (cause instanceof IllegalArgumentException) {
+            return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(errorData);
+        }
+        if (cause instanceof PaymentGatewayBusyException) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header("Retry-After", "1").body(errorData);
+        }
+        if (cause instanceof StripeException) {
             return ResponseEntity.badRequest().body(errorData);
         }
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        throw new IllegalStateException(cause);
     }
 
     @PostMapping("/webhook")
     public ResponseEntity<String> handleWebhook(@RequestBody String payload, @RequestHeader("Stripe-Signature") String sigHeader) {
         try {
             Event event = stripeService.constructEvent(payload, sigHeader, webhookSecret);
-            
-            // Handle the event
-            switch (event.getType()) {
-                case "payment_intent.succeeded":
-                    PaymentIntent paymentIntent = (PaymentIntent) event.getData().getObject();
-                    stripeService.handlePaymentIntentSucceeded(paymentIntent);
-                    break;
-                case "payment_intent.payment_failed":
-                    PaymentIntent failedPaymentIntent = (PaymentIntent) event.getData().getObject();
-                    stripeService.handlePaymentIntentFailed(failedPaymentIntent);
-                    break;
-                default:
-                    // Unexpected event type
-                    return ResponseEntity.badRequest().body("Unexpected event type: " + event.getType());
+
+            // Ack right away; WebhookInboxService processes the stored event off the request thread
+            if (!WebhookInboxService.isHandled(event.getType())) {
+                return ResponseEntity.ok("Ignored event type: " + event.getType());
             }
-            
-            return ResponseEntity.ok("Webhook processed successfully");
+            if (!webhookInboxService.accept(event, payload)) {
+                return ResponseEntity.ok("Duplicate event ignored");
+            }
+            return ResponseEntity.ok("Webhook accepted");
         } catch (Exception e) {
             return ResponseEntity.badRequest().body("Webhook Error: " + e.getMessage());
         }
@@ -1,78 +1,220 @@
 package com.ecommerce.controller;
 
+import com.ecommerce.catalog.CatalogExporter;
+import com.ecommerce.catalog.CatalogFormat;
+import com.ecommerce.catalog.CatalogImporter;
+import com.ecommerce.config.ExecutionConfig;
+import com.ecommerce.catalog.ImportInProgressException;
+import com.ecommerce.dto.CursorPage;
+import com.ecommerce.dto.ImportReport;
+import com.ecommerce.dto.ProductSuggestion;
+import com.ecommerce.dto.ProductView;
 import com.ecommerce.model.Product;
 import com.ecommerce.service.ProductService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import java.io.InputStream;
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Comparator;
 
+/**
+ * Catalog reads carry a weak ETag from {@link ProductService#catalogETag}; a
+ * request whose If-None-Match still matches gets a 304 before any query runs
+ * or anything is serialized. Responses say no-cache so the SPA and CDN keep
+ * them but revalidate on every use.
+ */
 @RestController
 @RequestMapping("/api/products")
 public class ProductController {
     @Autowired
     private ProductService productService;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private CatalogImporter catalogImporter;
+    @Autowired
+    private CatalogExporter catalogExporter;
 
+    @Value("${catalog.export.timeout:2h}")
+    private Duration exportTimeout;
+
+    // Served from the in-memory catalog snapshot; until it has loaded at startup, from a database cursor. The whole
+    // catalog is streamed, so it never sits in memory as one response
+    @GetMapping(params = {"!name", "!minPrice", "!maxPrice"})
+    public ResponseEntity<StreamingResponseBody> getAllProducts(
+        @RequestParam(required = false, defaultValue = "id") String sortBy,
+        @RequestParam(required = false, defaultValue = "asc") String order,
+        WebRequest request
+    ) {
+        String etag = productService.catalogETag("list", null, null, null, sortBy, order);
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        StreamingResponseBody body = productService.isCatalogReady()
+                ? StreamingJson.<ProductView>array(objectMapper,
+                        consumer -> productService.forEachCatalogProduct(null, null, null, sortBy, order, consumer))
+                : StreamingJson.<ProductView>array(objectMapper, consumer -> productService.forEachProduct(sortBy, order, consumer));
+        return revalidated(etag).contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    // Filtered lists are written on the request thread, without an async dispatch. From the catalog snapshot,
+    // or the query cache until it has loaded
     @GetMapping
-    public ResponseEntity<List<Product>> getAllProducts(
+    public ResponseEntity<List<?>> getFilteredProducts(
         @RequestParam(required = false) String name,
         @RequestParam(required = false) BigDecimal minPrice,
         @RequestParam(required = false) BigDecimal maxPrice,
         @RequestParam(required = false, defaultValue = "id") String sortBy,
-        @RequestParam(required = false, defaultValue = "asc") String order
+        @RequestParam(required = false, defaultValue = "asc") String order,
+        WebRequest request
     ) {
-        List<Product> products = productService.findAll(); // Start with all products
+        String etag = productService.catalogETag("list", name, minPrice, maxPrice, sortBy, order);
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        if (!productService.isCatalogReady()) {
+            return revalidated(etag).body(productService.search(name, minPrice, maxPrice, sortBy, order));
+        }
+        List<ProductView> products = new ArrayList<>();
+        productService.forEachCatalogProduct(name, minPrice, maxPrice, sortBy, order, products::add);
+        return revalidated(etag).body(products);
+    }
 
-        // Filter by name
-        if (name != null && !name.isEmpty()) {
-            products = products.stream()
-                .filter(p -> p.getName().toLowerCase().contains(name.toLowerCase()))
-                .collect(java.util.stream.Collectors.toList());
+    @GetMapping("/page")
+    public ResponseEntity<Page<Product>> getProductPage(
+        @RequestParam(required = false) String name,
+        @RequestParam(required = false) BigDecimal minPrice,
+        @RequestParam(required = false) BigDecimal maxPrice,
+        @RequestParam(required = false, defaultValue = "id") String sortBy,
+        @RequestParam(required = false, defaultValue = "asc") String order,
+        @RequestParam(required = false, defaultValue = "0") int page,
+        @RequestParam(required = false, defaultValue = "20") int size,
+        WebRequest request
+    ) {
+        String etag = productService.catalogETag("page", name, minPrice, maxPrice, sortBy, order, page, size);
+        if (request.checkNotModified(etag)) {
+            return null;
         }
-        // Filter by min price
-        if (minPrice != null) {
-            products = products.stream()
-                .filter(p -> p.getPrice().compareTo(minPrice) >= 0)
-                .collect(java.util.stream.Collectors.toList());
+        return revalidated(etag).body(productService.searchPage(name, minPrice, maxPrice, sortBy, order, page, size));
+    }
+
+    @GetMapping("/scroll")
+    public ResponseEntity<?> scrollProducts(
+        @RequestParam(required = false) String name,
+        @RequestParam(required = false) BigDecimal minPrice,
+        @RequestParam(required = false) BigDecimal maxPrice,
+        @RequestParam(required = false, defaultValue = "id") String sortBy,
+        @RequestParam(required = false, defaultValue = "asc") String order,
+        @RequestParam(required = false) String cursor,
+        @RequestParam(required = false, defaultValue = "20") int size,
+        WebRequest request
+    ) {
+        String etag = productService.catalogETag("scroll", name, minPrice, maxPrice, sortBy, order, cursor, size);
+        if (request.checkNotModified(etag)) {
+            return null;
         }
-        // Filter by max price
-        if (maxPrice != null) {
-            products = products.stream()
-                .filter(p -> p.getPrice().compareTo(maxPrice) <= 0)
-                .collect(java.util.stream.Collectors.toList());
+        try {
+            CursorPage<Product> page = productService.scroll(name, minPrice, maxPrice, sortBy, order, cursor, size);
+            return revalidated(etag).body(page);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
         }
-        // Sort
-        if (sortBy != null && !sortBy.isEmpty()) {
-            Comparator<Product> comparator;
-            switch (sortBy) {
-                case "price":
-                    comparator = Comparator.comparing(Product::getPrice);
-                    break;
-                case "name":
-                    comparator = Comparator.comparing(Product::getName, String.CASE_INSENSITIVE_ORDER);
-                    break;
-                default:
-                    comparator = Comparator.comparing(Product::getId);
-                    break;
-            }
-            if ("desc".equalsIgnoreCase(order)) {
-                comparator = comparator.reversed();
-            }
-            products = products.stream().sorted(comparator).collect(java.util.stream.Collectors.toList());
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<?> searchProducts(
+        @RequestParam String q,
+        @RequestParam(required = false) BigDecimal minPrice,
+        @RequestParam(required = false) BigDecimal maxPrice,
+        @RequestParam(required = false, defaultValue = "20") int size,
+        WebRequest request
+    ) {
+        if (q.trim().isEmpty()) {
+            return ResponseEntity.badRequest().body("Query must not be empty");
+        }
+        String etag = productService.catalogETag("search", q, minPrice, maxPrice, size);
+        if (request.checkNotModified(etag)) {
+            return null;
         }
+        return revalidated(etag).body(productService.searchText(q, minPrice, maxPrice, size));
+    }
 
-        // Debug logging
-        System.out.println("minPrice=" + minPrice + ", maxPrice=" + maxPrice);
-        System.out.println("Products before filtering: " + productService.findAll().size());
-        System.out.println("Products after filtering: " + products.size());
+    @GetMapping("/suggest")
+    public ResponseEntity<List<ProductSuggestion>> suggestProducts(
+        @RequestParam String q,
+        @RequestParam(required = false, defaultValue = "8") int limit,
+        WebRequest request
+    ) {
+        String etag = productService.catalogETag("suggest", q, limit);
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        return revalidated(etag).body(productService.suggest(q, limit));
+    }
 
-        return ResponseEntity.ok(products);
+    // The ETag is taken before the body is read, so the body is never older than the snapshot the ETag describes
+    @GetMapping("/{id}")
+    public ResponseEntity<ProductView> getProduct(@PathVariable Long id, WebRequest request) {
+        String etag = productService.catalogETag("product", id);
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        return productService.findView(id)
+                .map(product -> revalidated(etag).body(product))
+                .orElse(ResponseEntity.notFound().build());
     }
 
     @PostMapping
     public ResponseEntity<Product> createProduct(@RequestBody Product product) {
         return ResponseEntity.ok(productService.save(product));
     }
-} 
\ No newline at end of file
+
+    // Bulk upsert from a text/csv or application/x-ndjson body, read as it arrives
+    @PostMapping(path = "/import", consumes = {"text/csv", "application/x-ndjson"})
+    public ResponseEntity<?> importProducts(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType, InputStream body) {
+        try {
+            ImportReport report = catalogImporter.importProducts(body, CatalogFormat.forMediaType(MediaType.parseMediaType(contentType)));
+            return report.isCompleted() ? ResponseEntity.ok(report) : ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(report);
+        } catch (ImportInProgressException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    // Millions of rows can take far longer than a list, so the export gets its own async timeout
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportProducts(@RequestParam(required = false, defaultValue = "csv") String format,
+                                                                WebRequest request) {
+        CatalogFormat catalogFormat;
+        try {
+            catalogFormat = CatalogFormat.of(format);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        request.setAttribute(ExecutionConfig.STREAMING_TIMEOUT_ATTRIBUTE, exportTimeout, RequestAttributes.SCOPE_REQUEST);
+        ContentDisposition disposition = ContentDisposition.attachment().filename("products." + catalogFormat.getExtension()).build();
+        return ResponseEntity.ok()
+                .contentType(catalogFormat.getMediaType())
+                .header(HttpHeaders.CONTENT_DISPOSITION, disposition.toString())
+                .body(out -> catalogExporter.export(out, catalogFormat));
+    }
+
+    private static ResponseEntity.BodyBuilder revalidated(String etag) {
+        return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache());
+    }
+}
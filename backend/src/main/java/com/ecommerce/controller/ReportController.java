@@ -0,0 +1,83 @@
+package com.ecommerce.controller;
+
+import com.ecommerce.report.ReportService;
+import com.ecommerce.report.RollupRecorder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.function.BiFunction;
+
+// Admin dashboard reports; dates are order dates (payment dates for /conversion), both ends inclusive
+@RestController
+@RequestMapping("/api/reports")
+public class ReportController {
+    private static final int DEFAULT_DAYS = 30;
+
+    @Autowired
+    private ReportService reportService;
+    @Autowired
+    private RollupRecorder rollupRecorder;
+
+    @GetMapping("/revenue")
+    public ResponseEntity<?> revenueByDay(
+        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to
+    ) {
+        return report(from, to, reportService::revenueByDay);
+    }
+
+    @GetMapping("/orders/status")
+    public ResponseEntity<?> ordersByStatus(
+        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to
+    ) {
+        return report(from, to, reportService::ordersByStatus);
+    }
+
+    @GetMapping("/revenue/users")
+    public ResponseEntity<?> topUsers(
+        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+        @RequestParam(required = false, defaultValue = "10") int limit
+    ) {
+        return report(from, to, (start, end) -> reportService.topUsers(start, end, limit));
+    }
+
+    @GetMapping("/products/top")
+    public ResponseEntity<?> topProducts(
+        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+        @RequestParam(required = false, defaultValue = "10") int limit
+    ) {
+        return report(from, to, (start, end) -> reportService.topProducts(start, end, limit));
+    }
+
+    @GetMapping("/conversion")
+    public ResponseEntity<?> conversion(
+        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to
+    ) {
+        return report(from, to, reportService::conversion);
+    }
+
+    // Recomputes the order rollups from the orders table, e.g. after editing orders directly in the database
+    @PostMapping("/rebuild")
+    public ResponseEntity<?> rebuild() {
+        rollupRecorder.rebuild();
+        return ResponseEntity.noContent().build();
+    }
+
+    // Defaults to the last 30 days up to today
+    private static ResponseEntity<?> report(LocalDate from, LocalDate to, BiFunction<LocalDate, LocalDate, ?> query) {
+        LocalDate end = to != null ? to : LocalDate.now();
+        LocalDate start = from != null ? from : end.minusDays(DEFAULT_DAYS - 1);
+        try {
+            return ResponseEntity.ok(query.apply(start, end));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+}
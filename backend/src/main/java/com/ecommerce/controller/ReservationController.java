@@ -0,0 +1,46 @@
+package com.ecommerce.controller;
+
+import com.ecommerce.dto.ReservationRequest;
+import com.ecommerce.service.InsufficientStockException;
+import com.ecommerce.service.StockReservationService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.security.Principal;
+import java.util.HashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/reservations")
+public class ReservationController {
+    @Autowired
+    private StockReservationService reservationService;
+
+    @PostMapping
+    public ResponseEntity<?> reserve(@RequestBody ReservationRequest request, Principal principal) {
+        try {
+            String reference = reservationService.reserve(principal.getName(), request.getItems());
+            Map<String, Object> response = new HashMap<>();
+            response.put("reference", reference);
+            response.put("expiresAt", reservationService.expiresAt(reference, principal.getName()));
+            return ResponseEntity.ok(response);
+        } catch (InsufficientStockException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @DeleteMapping("/{reference}")
+    public ResponseEntity<?> release(@PathVariable String reference, Principal principal) {
+        // Someone else's reservation looks the same as one that does not exist
+        if (!reservationService.isHeldBy(reference, principal.getName())) {
+            return ResponseEntity.notFound().build();
+        }
+        Map<String, Integer> response = new HashMap<>();
+        response.put("released", reservationService.release(reference, principal.getName()));
+        return ResponseEntity.ok(response);
+    }
+}
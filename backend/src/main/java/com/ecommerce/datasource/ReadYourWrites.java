@@ -0,0 +1,90 @@
+package com.ecommerce.datasource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Users who have just written an order or their account, whose reads stay on
+ * the primary for datasource.replicas.sticky-window so they see their own
+ * write whatever the replica lag. Marks are broadcast on {@link #CHANNEL},
+ * since the user's next request may land on another node.
+ *
+ * The catalog has its own mark, set on every node as it applies a catalog
+ * invalidation, so reads that refill the shared product cache after a save
+ * don't cache what a lagging replica still has.
+ */
+@Component
+public class ReadYourWrites implements MessageListener {
+    public static final String CHANNEL = "datasource:written";
+    private static final Logger logger = LoggerFactory.getLogger(ReadYourWrites.class);
+    private static final int CLEANUP_THRESHOLD = 10_000;
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Value("${datasource.replicas.urls:}")
+    private String replicaUrls;
+    @Value("${datasource.replicas.sticky-window:10s}")
+    private Duration window;
+    @Value("${catalog.cache.l2.enabled:true}")
+    private boolean shared;
+
+    private final Map<String, Long> stickyUntil = new ConcurrentHashMap<>();
+    private volatile long catalogStickyUntil;
+
+    public void markWritten(String username) {
+        if (replicaUrls.isEmpty() || username == null) {
+            return;
+        }
+        mark(username);
+        if (shared) {
+            try {
+                redisTemplate.convertAndSend(CHANNEL, username);
+            } catch (DataAccessException e) {
+                logger.warn("Redis unavailable, read-your-writes for {} is local to this node: {}", username, e.getMessage());
+            }
+        }
+    }
+
+    public boolean isSticky(String username) {
+        Long until = stickyUntil.get(username);
+        return until != null && until > System.currentTimeMillis();
+    }
+
+    public void markCatalogWritten() {
+        if (!replicaUrls.isEmpty()) {
+            catalogStickyUntil = System.currentTimeMillis() + window.toMillis();
+        }
+    }
+
+    public boolean isCatalogSticky() {
+        return catalogStickyUntil > System.currentTimeMillis();
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        if (!replicaUrls.isEmpty()) {
+            mark(new String(message.getBody(), StandardCharsets.UTF_8));
+        }
+    }
+
+    private void mark(String username) {
+        long now = System.currentTimeMillis();
+        stickyUntil.put(username, now + window.toMillis());
+        if (stickyUntil.size() > CLEANUP_THRESHOLD) {
+            stickyUntil.values().removeIf(until -> until <= now);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.ecommerce.datasource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends read-only transactions declared by the services to a healthy replica,
+ * round-robin, and everything else to the primary. A replica is healthy while
+ * its last check connected and found it at most max-lag behind; with none
+ * healthy, a replica refusing a connection, or a user inside their
+ * {@link ReadYourWrites} window, reads go to the primary too.
+ *
+ * Needs a LazyConnectionDataSourceProxy in front: the transaction manager asks
+ * for a connection before the read-only flag is published, and the proxy defers
+ * the real request until the first statement.
+ */
+public class ReplicaRoutingDataSource extends AbstractDataSource {
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+    private static final int CHECK_TIMEOUT_SECONDS = 2;
+    // Spring Data wraps each repository read made outside a transaction in its own read-only one
+    private static final String REPOSITORY_TRANSACTION_PREFIX = "org.springframework.data.";
+
+    private final DataSource primary;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final ReadYourWrites readYourWrites;
+    private final long maxLagSeconds;
+    private final String lagQuery;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas, List<String> names,
+                                    ReadYourWrites readYourWrites, Duration maxLag, String lagQuery) {
+        this.primary = primary;
+        for (int i = 0; i < replicas.size(); i++) {
+            this.replicas.add(new Replica(names.get(i), replicas.get(i)));
+        }
+        this.readYourWrites = readYourWrites;
+        this.maxLagSeconds = maxLag.getSeconds();
+        this.lagQuery = lagQuery.trim();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Replica replica = chooseReplica();
+        if (replica != null) {
+            try {
+                return replica.dataSource.getConnection();
+            } catch (SQLException e) {
+                markHealthy(replica, false, e.getMessage());
+            }
+        }
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return primary.getConnection(username, password);
+    }
+
+    /**
+     * Connects to every replica and reads its lag with datasource.replicas.lag-query
+     * (MySQL's SHOW REPLICA STATUS by default, or any query whose first column is
+     * the lag in seconds; empty only tests the connection).
+     */
+    public void checkReplicas() {
+        for (Replica replica : replicas) {
+            boolean healthy;
+            String reason;
+            try (Connection connection = replica.dataSource.getConnection(); Statement statement = connection.createStatement()) {
+                if (lagQuery.isEmpty()) {
+                    healthy = connection.isValid(CHECK_TIMEOUT_SECONDS);
+                    reason = "connection invalid";
+                } else {
+                    statement.setQueryTimeout(CHECK_TIMEOUT_SECONDS);
+                    Long lag = lagSeconds(statement);
+                    healthy = lag != null && lag <= maxLagSeconds;
+                    reason = lag != null ? lag + "s behind" : "replication not running";
+                }
+            } catch (SQLException e) {
+                healthy = false;
+                reason = e.getMessage();
+            }
+            markHealthy(replica, healthy, reason);
+        }
+    }
+
+    private Replica chooseReplica() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return null;
+        }
+        String name = TransactionSynchronizationManager.getCurrentTransactionName();
+        if (name != null && name.startsWith(REPOSITORY_TRANSACTION_PREFIX)) {
+            return null;
+        }
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && readYourWrites.isSticky(authentication.getName())) {
+            return null;
+        }
+        int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+        for (int k = 0; k < replicas.size(); k++) {
+            Replica replica = replicas.get((start + k) % replicas.size());
+            if (replica.healthy) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    private Long lagSeconds(Statement statement) throws SQLException {
+        try (ResultSet rs = statement.executeQuery(lagQuery)) {
+            if (!rs.next()) {
+                return null;
+            }
+            ResultSetMetaData meta = rs.getMetaData();
+            int column = 1;
+            for (int i = 1; i <= meta.getColumnCount(); i++) {
+                String label = meta.getColumnLabel(i);
+                if (label.equalsIgnoreCase("Seconds_Behind_Source") || label.equalsIgnoreCase("Seconds_Behind_Master")) {
+                    column = i;
+                }
+            }
+            long lag = rs.getLong(column);
+            return rs.wasNull() ? null : lag;
+        }
+    }
+
+    private void markHealthy(Replica replica, boolean healthy, String reason) {
+        if (replica.healthy && !healthy) {
+            logger.warn("Replica {} taken out of rotation: {}", replica.name, reason);
+        } else if (!replica.healthy && healthy) {
+            logger.info("Replica {} back in rotation", replica.name);
+        }
+        replica.healthy = healthy;
+    }
+
+    private static final class Replica {
+        private final String name;
+        private final DataSource dataSource;
+        // Out of rotation until the first check passes
+        private volatile boolean healthy;
+
+        private Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.ecommerce.dto;
+
+import java.math.BigDecimal;
+
+// One cart line priced from the in-memory catalog
+public class CartLine {
+    private final Long productId;
+    private final String name;
+    private final BigDecimal unitPrice;
+    private final int quantity;
+    private final Integer stock;
+    private final String imageUrl;
+
+    public CartLine(ProductView product, int quantity) {
+        this.productId = product.getId();
+        this.name = product.getName();
+        this.unitPrice = product.getPrice();
+        this.quantity = quantity;
+        this.stock = product.getStock();
+        this.imageUrl = product.getImageUrl();
+    }
+
+    public Long getProductId() {
+        return productId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public BigDecimal getUnitPrice() {
+        return unitPrice;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public Integer getStock() {
+        return stock;
+    }
+
+    public String getImageUrl() {
+        return imageUrl;
+    }
+
+    public BigDecimal getLineTotal() {
+        return unitPrice.multiply(BigDecimal.valueOf(quantity));
+    }
+}
@@ -0,0 +1,35 @@
+package com.ecommerce.dto;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+// A cart as the client sees it; totals use current catalog prices, checkout charges whatever they are then
+public class CartView {
+    private final List<CartLine> items;
+    private final BigDecimal total;
+    private final int itemCount;
+
+    public CartView(List<CartLine> items) {
+        this.items = items;
+        BigDecimal sum = BigDecimal.ZERO;
+        int count = 0;
+        for (CartLine line : items) {
+            sum = sum.add(line.getLineTotal());
+            count += line.getQuantity();
+        }
+        this.total = sum;
+        this.itemCount = count;
+    }
+
+    public List<CartLine> getItems() {
+        return items;
+    }
+
+    public BigDecimal getTotal() {
+        return total;
+    }
+
+    public int getItemCount() {
+        return itemCount;
+    }
+}
@@ -0,0 +1,14 @@
+package com.ecommerce.dto;
+
+import java.util.List;
+
+public class CheckoutRequest {
+    private List<ItemQuantity> items;
+
+    public List<ItemQuantity> getItems() {
+        return items;
+    }
+    public void setItems(List<ItemQuantity> items) {
+        this.items = items;
+    }
+}
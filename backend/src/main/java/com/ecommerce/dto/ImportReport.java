@@ -0,0 +1,54 @@
+package com.ecommerce.dto;
+
+import java.util.List;
+
+public class ImportReport {
+    private final boolean completed;
+    private final long rowsRead;
+    private final long rowsWritten;
+    private final long rowsRejected;
+    private final long elapsedMillis;
+    private final List<String> errors;
+    private final String failure;
+
+    public ImportReport(boolean completed, long rowsRead, long rowsWritten, long rowsRejected,
+                        long elapsedMillis, List<String> errors, String failure) {
+        this.completed = completed;
+        this.rowsRead = rowsRead;
+        this.rowsWritten = rowsWritten;
+        this.rowsRejected = rowsRejected;
+        this.elapsedMillis = elapsedMillis;
+        this.errors = errors;
+        this.failure = failure;
+    }
+
+    // False when the import stopped early; rowsWritten were committed and stay in place
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    public long getRowsRead() {
+        return rowsRead;
+    }
+
+    public long getRowsWritten() {
+        return rowsWritten;
+    }
+
+    public long getRowsRejected() {
+        return rowsRejected;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    // The first rejected rows, as "line N: reason"
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    public String getFailure() {
+        return failure;
+    }
+}
@@ -0,0 +1,48 @@
+package com.ecommerce.dto;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class ItemQuantity {
+    private Long productId;
+    private Integer quantity;
+
+    public ItemQuantity() {}
+
+    public ItemQuantity(Long productId, Integer quantity) {
+        this.productId = productId;
+        this.quantity = quantity;
+    }
+
+    /**
+     * Validates the lines and folds repeated products together, keyed in ascending
+     * product id order (the order stock rows are locked in).
+     */
+    public static Map<Long, Integer> merge(List<ItemQuantity> items) {
+        if (items == null || items.isEmpty()) {
+            throw new IllegalArgumentException("At least one item is required");
+        }
+        Map<Long, Integer> lines = new TreeMap<>();
+        for (ItemQuantity item : items) {
+            if (item.getProductId() == null || item.getQuantity() == null || item.getQuantity() <= 0) {
+                throw new IllegalArgumentException("Each item needs a productId and a positive quantity");
+            }
+            lines.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+        }
+        return lines;
+    }
+
+    public Long getProductId() {
+        return productId;
+    }
+    public void setProductId(Long productId) {
+        this.productId = productId;
+    }
+    public Integer getQuantity() {
+        return quantity;
+    }
+    public void setQuantity(Integer quantity) {
+        this.quantity = quantity;
+    }
+}
@@ -0,0 +1,42 @@
+package com.ecommerce.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.math.BigDecimal;
+
+public class OrderItemView {
+    private final Long orderId;
+    private final Long productId;
+    private final String productName;
+    private final BigDecimal unitPrice;
+    private final Integer quantity;
+
+    public OrderItemView(Long orderId, Long productId, String productName, BigDecimal unitPrice, Integer quantity) {
+        this.orderId = orderId;
+        this.productId = productId;
+        this.productName = productName;
+        this.unitPrice = unitPrice;
+        this.quantity = quantity;
+    }
+
+    @JsonIgnore
+    public Long getOrderId() {
+        return orderId;
+    }
+
+    public Long getProductId() {
+        return productId;
+    }
+
+    public String getProductName() {
+        return productName;
+    }
+
+    public BigDecimal getUnitPrice() {
+        return unitPrice;
+    }
+
+    public Integer getQuantity() {
+        return quantity;
+    }
+}
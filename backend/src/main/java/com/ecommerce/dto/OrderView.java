@@ -0,0 +1,48 @@
+package com.ecommerce.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+// Order as listed to clients: the owner's username instead of the whole User row
+public class OrderView {
+    private final Long id;
+    private final LocalDateTime orderDate;
+    private final String status;
+    private final BigDecimal totalAmount;
+    private final String username;
+    private final List<OrderItemView> items = new ArrayList<>();
+
+    public OrderView(Long id, LocalDateTime orderDate, String status, BigDecimal totalAmount, String username) {
+        this.id = id;
+        this.orderDate = orderDate;
+        this.status = status;
+        this.totalAmount = totalAmount;
+        this.username = username;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public LocalDateTime getOrderDate() {
+        return orderDate;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public BigDecimal getTotalAmount() {
+        return totalAmount;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public List<OrderItemView> getItems() {
+        return items;
+    }
+}
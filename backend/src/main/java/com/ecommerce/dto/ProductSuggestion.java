@@ -0,0 +1,19 @@
+package com.ecommerce.dto;
+
+public class ProductSuggestion {
+    private final Long id;
+    private final String name;
+
+    public ProductSuggestion(Long id, String name) {
+        this.id = id;
+        this.name = name;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+}
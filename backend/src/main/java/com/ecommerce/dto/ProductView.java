@@ -0,0 +1,46 @@
+package com.ecommerce.dto;
+
+import java.math.BigDecimal;
+
+// Read-only product row for list responses; built straight from a JPQL projection, no managed entity
+public class ProductView {
+    private final Long id;
+    private final String name;
+    private final String description;
+    private final BigDecimal price;
+    private final Integer stock;
+    private final String imageUrl;
+
+    public ProductView(Long id, String name, String description, BigDecimal price, Integer stock, String imageUrl) {
+        this.id = id;
+        this.name = name;
+        this.description = description;
+        this.price = price;
+        this.stock = stock;
+        this.imageUrl = imageUrl;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public BigDecimal getPrice() {
+        return price;
+    }
+
+    public Integer getStock() {
+        return stock;
+    }
+
+    public String getImageUrl() {
+        return imageUrl;
+    }
+}
@@ -0,0 +1,41 @@
+package com.ecommerce.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.math.BigDecimal;
+
+// One row of a report: what was counted (a day, status, username or product id), how many and how much
+public class ReportBucket {
+    private final String key;
+    private final long count;
+    private final BigDecimal amount;
+    private String label;
+
+    public ReportBucket(String key, Long count, BigDecimal amount) {
+        this.key = key;
+        this.count = count != null ? count : 0L;
+        this.amount = amount != null ? amount : BigDecimal.ZERO;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    // Display name where the key is an id, e.g. the product name
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public String getLabel() {
+        return label;
+    }
+
+    public void setLabel(String label) {
+        this.label = label;
+    }
+}
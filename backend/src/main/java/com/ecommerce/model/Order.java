@@ -1,13 +1,17 @@
 package com.ecommerce.model;
 
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
 import javax.persistence.*;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 
 @Data
 @Entity
-@Table(name = "orders")
+@Table(name = "orders", indexes = @Index(name = "idx_orders_order_date", columnList = "orderDate, id"))
 public class Order {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -26,5 +30,20 @@ public class Order {
     @Column(nullable = false)
     private String status;
 
+    // Stock held for this order until payment settles; see StockReservationService
+    @Column(length = 64)
+    private String reservationReference;
+
+    // Lazy; loaded for a whole page of orders at once via hibernate.default_batch_fetch_size
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    @OneToMany(mappedBy = "order", cascade = CascadeType.ALL, orphanRemoval = true)
+    private List<OrderItem> items = new ArrayList<>();
+
+    public void addItem(OrderItem item) {
+        item.setOrder(this);
+        items.add(item);
+    }
+
     // Additional fields can be added as needed
 } 
\ No newline at end of file
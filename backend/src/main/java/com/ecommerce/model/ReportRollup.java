@@ -0,0 +1,36 @@
+package com.ecommerce.model;
+
+import lombok.Data;
+import javax.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * One pre-aggregated reporting bucket: a count and an amount for a series on a
+ * day, split by one dimension (order status, username, product id, payment event).
+ * Maintained incrementally by {@link com.ecommerce.report.RollupRecorder}.
+ */
+@Data
+@Entity
+@Table(name = "report_rollups", indexes = @Index(name = "idx_report_rollups_bucket",
+        columnList = "series, bucketDate, dimension", unique = true))
+public class ReportRollup {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 32)
+    private String series;
+
+    @Column(nullable = false)
+    private LocalDate bucketDate;
+
+    @Column(nullable = false)
+    private String dimension;
+
+    @Column(nullable = false)
+    private long eventCount;
+
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal amount;
+}
@@ -0,0 +1,31 @@
+package com.ecommerce.model;
+
+import lombok.Data;
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+// A line of a cart left untouched in Redis, written behind for follow-up and analysis; carts are never read from here
+@Data
+@Entity
+@Table(name = "saved_cart_items", indexes = {
+    @Index(name = "idx_saved_cart_items_username_product", columnList = "username, productId", unique = true),
+    @Index(name = "idx_saved_cart_items_updated_at", columnList = "updatedAt")
+})
+public class SavedCartItem {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String username;
+
+    @Column(nullable = false)
+    private Long productId;
+
+    @Column(nullable = false)
+    private Integer quantity;
+
+    // When the cart was last changed, not when it was written here
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,44 @@
+package com.ecommerce.model;
+
+import lombok.Data;
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+@Data
+@Entity
+@Table(name = "stock_reservations", indexes = {
+    @Index(name = "idx_stock_reservations_reference", columnList = "reference"),
+    @Index(name = "idx_stock_reservations_status_expires", columnList = "status, expiresAt")
+})
+public class StockReservation {
+    public static final String PENDING = "PENDING";
+    public static final String CONFIRMED = "CONFIRMED";
+    public static final String RELEASED = "RELEASED";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Groups the lines of one checkout; handed to Stripe as PaymentIntent metadata
+    @Column(nullable = false, length = 64)
+    private String reference;
+
+    // Only this user may confirm or release it; null on rows reserved before owners were recorded
+    @Column
+    private String username;
+
+    @Column(nullable = false)
+    private Long productId;
+
+    @Column(nullable = false)
+    private Integer quantity;
+
+    @Column(nullable = false, length = 16)
+    private String status;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(nullable = false)
+    private LocalDateTime expiresAt;
+}
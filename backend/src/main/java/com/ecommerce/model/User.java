@@ -1,5 +1,7 @@
 package com.ecommerce.model;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
+
 import javax.persistence.*;
 
 @Entity
@@ -12,6 +14,8 @@ public class User {
     @Column(unique = true, nullable = false)
     private String username;
 
+    // Accepted on create, never written out (this is the bcrypt hash)
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
     @Column(nullable = false)
     private String password;
 
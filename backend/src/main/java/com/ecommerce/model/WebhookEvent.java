@@ -0,0 +1,65 @@
+package com.ecommerce.model;
+
+import lombok.Data;
+import org.springframework.data.domain.Persistable;
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Inbox row for a verified Stripe webhook delivery. The Stripe event id is the
+ * primary key, so a redelivered event can never be stored (or processed) twice.
+ */
+@Data
+@Entity
+@Table(name = "webhook_events", indexes = {
+    @Index(name = "idx_webhook_events_status_received", columnList = "status, receivedAt"),
+    @Index(name = "idx_webhook_events_payment_intent", columnList = "paymentIntentId")
+})
+public class WebhookEvent implements Persistable<String> {
+    public static final String PENDING = "PENDING";
+    public static final String PROCESSED = "PROCESSED";
+    public static final String FAILED = "FAILED";
+
+    @Id
+    @Column(length = 255)
+    private String id;
+
+    @Column(nullable = false)
+    private String type;
+
+    @Column(nullable = false)
+    private String paymentIntentId;
+
+    // longtext, as V5 creates it; a @Lob would expect a clob, which H2 does not report for longtext
+    @Column(nullable = false, columnDefinition = "longtext")
+    private String payload;
+
+    @Column(nullable = false, length = 16)
+    private String status;
+
+    @Column(nullable = false)
+    private Integer attempts = 0;
+
+    @Column(length = 1000)
+    private String lastError;
+
+    @Column(nullable = false)
+    private LocalDateTime receivedAt;
+
+    private LocalDateTime processedAt;
+
+    // Assigned ids would otherwise make save() merge (SELECT then UPDATE) instead of INSERT
+    @Transient
+    private boolean persisted;
+
+    @Override
+    public boolean isNew() {
+        return !persisted;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markPersisted() {
+        persisted = true;
+    }
+}
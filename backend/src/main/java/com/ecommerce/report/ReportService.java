@@ -0,0 +1,109 @@
+package com.ecommerce.report;
+
+import com.ecommerce.dto.ReportBucket;
+import com.ecommerce.model.Product;
+import com.ecommerce.model.ReportRollup;
+import com.ecommerce.repository.ProductRepository;
+import com.ecommerce.repository.ReportRollupRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Dashboard reports read from report_rollups, so each costs one index range per
+ * series: days x buckets, independent of how many orders there are. Figures lag
+ * live orders by up to reports.flush-interval-ms.
+ */
+@Service
+public class ReportService {
+    @Autowired
+    private ReportRollupRepository reportRollupRepository;
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Value("${reports.max-range-days:731}")
+    private int maxRangeDays;
+    @Value("${reports.max-limit:100}")
+    private int maxLimit;
+
+    // Paid orders per order day, with zero-filled gaps so charts get every day
+    public List<ReportBucket> revenueByDay(LocalDate from, LocalDate to) {
+        checkRange(from, to);
+        Map<LocalDate, ReportRollup> byDate = reportRollupRepository
+                .findBySeriesAndDimensionAndBucketDateBetweenOrderByBucketDate(RollupRecorder.ORDERS_BY_STATUS, RollupRecorder.PAID, from, to)
+                .stream().collect(Collectors.toMap(ReportRollup::getBucketDate, Function.identity()));
+        List<ReportBucket> days = new ArrayList<>();
+        for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+            ReportRollup rollup = byDate.get(date);
+            days.add(rollup != null
+                    ? new ReportBucket(date.toString(), rollup.getEventCount(), rollup.getAmount())
+                    : new ReportBucket(date.toString(), 0L, BigDecimal.ZERO));
+        }
+        return days;
+    }
+
+    public List<ReportBucket> ordersByStatus(LocalDate from, LocalDate to) {
+        checkRange(from, to);
+        return reportRollupRepository.sumByDimension(RollupRecorder.ORDERS_BY_STATUS, from, to, Pageable.unpaged());
+    }
+
+    public List<ReportBucket> topUsers(LocalDate from, LocalDate to, int limit) {
+        checkRange(from, to);
+        return reportRollupRepository.sumByDimension(RollupRecorder.PAID_BY_USER, from, to, PageRequest.of(0, clamp(limit)));
+    }
+
+    // Count is units sold; labelled with the product's current name
+    public List<ReportBucket> topProducts(LocalDate from, LocalDate to, int limit) {
+        checkRange(from, to);
+        List<ReportBucket> products = reportRollupRepository.sumByDimension(RollupRecorder.PAID_BY_PRODUCT, from, to, PageRequest.of(0, clamp(limit)));
+        List<Long> ids = products.stream().map(bucket -> Long.valueOf(bucket.getKey())).collect(Collectors.toList());
+        Map<Long, String> names = productRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Product::getId, Product::getName));
+        products.forEach(bucket -> bucket.setLabel(names.get(Long.valueOf(bucket.getKey()))));
+        return products;
+    }
+
+    // PaymentIntents created versus payments that succeeded or failed, by the day each happened
+    public Map<String, Object> conversion(LocalDate from, LocalDate to) {
+        checkRange(from, to);
+        Map<String, Long> events = reportRollupRepository.sumByDimension(RollupRecorder.PAYMENTS, from, to, Pageable.unpaged())
+                .stream().collect(Collectors.toMap(ReportBucket::getKey, ReportBucket::getCount));
+        long created = events.getOrDefault(RollupRecorder.INTENT_CREATED, 0L);
+        long succeeded = events.getOrDefault(RollupRecorder.PAYMENT_SUCCEEDED, 0L);
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("from", from.toString());
+        report.put("to", to.toString());
+        report.put("intentsCreated", created);
+        report.put("succeeded", succeeded);
+        report.put("failed", events.getOrDefault(RollupRecorder.PAYMENT_FAILED, 0L));
+        report.put("conversionRate", created > 0
+                ? BigDecimal.valueOf(succeeded).divide(BigDecimal.valueOf(created), 4, RoundingMode.HALF_UP) : null);
+        return report;
+    }
+
+    private void checkRange(LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("from must not be after to");
+        }
+        if (ChronoUnit.DAYS.between(from, to) >= maxRangeDays) {
+            throw new IllegalArgumentException("Range is limited to " + maxRangeDays + " days");
+        }
+    }
+
+    private int clamp(int limit) {
+        return limit <= 0 ? 10 : Math.min(limit, maxLimit);
+    }
+}
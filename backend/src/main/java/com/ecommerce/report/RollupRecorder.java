@@ -0,0 +1,321 @@
+package com.ecommerce.report;
+
+import com.ecommerce.dto.OrderItemView;
+import com.ecommerce.dto.OrderView;
+import com.ecommerce.model.Order;
+import com.ecommerce.model.OrderItem;
+import com.ecommerce.repository.OrderRepository;
+import com.ecommerce.repository.ReportRollupRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Keeps report_rollups in step with orders and payments. Every change is
+ * recorded as a delta in memory once its transaction commits, and deltas are
+ * flushed periodically as one batch of upserts that add to the stored buckets,
+ * so a busy day costs one row update per bucket per flush rather than per order.
+ *
+ * Deltas not yet flushed are lost if the process dies; {@link #rebuild()}
+ * recomputes the order series from the orders table. Rebuilds hold the
+ * report_rollups.rebuild row in job_locks, so nodes never run one at once.
+ */
+@Component
+public class RollupRecorder {
+    // Orders by order date and current status; moves between statuses as payments settle
+    public static final String ORDERS_BY_STATUS = "orders.status";
+    // Paid orders by order date, per username and per product id
+    public static final String PAID_BY_USER = "paid.user";
+    public static final String PAID_BY_PRODUCT = "paid.product";
+    // Payment events by the day they happened
+    public static final String PAYMENTS = "payments";
+    public static final String INTENT_CREATED = "intent_created";
+    public static final String PAYMENT_SUCCEEDED = "succeeded";
+    public static final String PAYMENT_FAILED = "failed";
+    static final String PAID = "PAID";
+
+    private static final Logger logger = LoggerFactory.getLogger(RollupRecorder.class);
+    private static final int FLUSH_BATCH_SIZE = 500;
+    private static final String REBUILD_LOCK = "report_rollups.rebuild";
+    private static final String UPSERT = "insert into report_rollups (series, bucket_date, dimension, event_count, amount) values (?, ?, ?, ?, ?) "
+            + "on duplicate key update event_count = event_count + values(event_count), amount = amount + values(amount)";
+    private static final String REBUILD_ORDERS_BY_STATUS = "insert into report_rollups (series, bucket_date, dimension, event_count, amount) "
+            + "select '" + ORDERS_BY_STATUS + "', cast(o.order_date as date), o.status, count(*), sum(o.total_amount) "
+            + "from orders o group by cast(o.order_date as date), o.status";
+    private static final String REBUILD_PAID_BY_USER = "insert into report_rollups (series, bucket_date, dimension, event_count, amount) "
+            + "select '" + PAID_BY_USER + "', cast(o.order_date as date), u.username, count(*), sum(o.total_amount) "
+            + "from orders o join users u on u.id = o.user_id where o.status = '" + PAID + "' "
+            + "group by cast(o.order_date as date), u.username";
+    private static final String REBUILD_PAID_BY_PRODUCT = "insert into report_rollups (series, bucket_date, dimension, event_count, amount) "
+            + "select '" + PAID_BY_PRODUCT + "', cast(o.order_date as date), i.product_id, sum(i.quantity), sum(i.unit_price * i.quantity) "
+            + "from order_items i join orders o on o.id = i.order_id where o.status = '" + PAID + "' "
+            + "group by cast(o.order_date as date), i.product_id";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private OrderRepository orderRepository;
+    @Autowired
+    private ReportRollupRepository reportRollupRepository;
+
+    @Value("${reports.backfill-on-startup:true}")
+    private boolean backfillOnStartup;
+
+    private final Map<Key, Delta> pending = new ConcurrentHashMap<>();
+
+    public void orderCreated(Order order) {
+        OrderView view = new OrderView(order.getId(), order.getOrderDate(), order.getStatus(), order.getTotalAmount(), order.getUser().getUsername());
+        for (OrderItem item : order.getItems()) {
+            view.getItems().add(new OrderItemView(order.getId(), item.getProductId(), item.getProductName(), item.getUnitPrice(), item.getQuantity()));
+        }
+        afterCommit(() -> apply(view, view.getStatus(), 1));
+    }
+
+    // For a transition made by an update query; reads the order as the current transaction sees it
+    public void statusChanged(Long orderId, String from, String to) {
+        snapshot(orderId, PAID.equals(from)).ifPresent(view -> afterCommit(() -> {
+            apply(view, from, -1);
+            apply(view, to, 1);
+        }));
+    }
+
+    // For arbitrary edits: the order as it was (null if new) and as it is now
+    public void orderChanged(OrderView before, OrderView after) {
+        afterCommit(() -> {
+            if (before != null) {
+                apply(before, before.getStatus(), -1);
+            }
+            if (after != null) {
+                apply(after, after.getStatus(), 1);
+            }
+        });
+    }
+
+    public void paymentEvent(String event) {
+        afterCommit(() -> add(new Key(PAYMENTS, LocalDate.now(), event), 1, BigDecimal.ZERO));
+    }
+
+    // Items are only loaded when the order is paid, the only status the product series counts
+    public Optional<OrderView> snapshot(Long orderId) {
+        return snapshot(orderId, false);
+    }
+
+    private Optional<OrderView> snapshot(Long orderId, boolean withItems) {
+        Optional<OrderView> view = orderRepository.findViewById(orderId);
+        view.filter(order -> withItems || PAID.equals(order.getStatus()))
+                .ifPresent(order -> order.getItems().addAll(orderRepository.findItemViews(Collections.singletonList(orderId))));
+        return view;
+    }
+
+    @Scheduled(fixedDelayString = "${reports.flush-interval-ms:10000}")
+    public synchronized void flush() {
+        List<Map.Entry<Key, Delta>> drained = new ArrayList<>(drain(key -> true).entrySet());
+        for (int from = 0; from < drained.size(); from += FLUSH_BATCH_SIZE) {
+            List<Map.Entry<Key, Delta>> batch = drained.subList(from, Math.min(from + FLUSH_BATCH_SIZE, drained.size()));
+            try {
+                upsert(batch);
+            } catch (DataIntegrityViolationException e) {
+                // The database rejects some row in it; write them one by one so only that row is lost
+                batch.forEach(this::upsertOrDrop);
+            } catch (DataAccessException e) {
+                List<Map.Entry<Key, Delta>> unwritten = drained.subList(from, drained.size());
+                logger.warn("Flushing {} report buckets failed, retrying next time: {}", unwritten.size(), e.getMessage());
+                unwritten.forEach(entry -> add(entry.getKey(), entry.getValue().count, entry.getValue().amount));
+                return;
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    /**
+     * Recomputes the order series from the orders table (payment events have no
+     * other record and are kept). Changes committed while it runs may be counted
+     * twice, so run it when checkouts are quiet.
+     */
+    public synchronized void rebuild() {
+        rebuild(false);
+    }
+
+    // First start with this table: fill it from the orders already there. Nodes starting together
+    // queue on the lock, and all but the first find the table filled
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        if (!backfillOnStartup || reportRollupRepository.count() > 0 || orderRepository.count() == 0) {
+            return;
+        }
+        try {
+            rebuild(true);
+        } catch (DataAccessException e) {
+            logger.warn("Backfilling report rollups failed, POST /api/reports/rebuild to retry: {}", e.getMessage());
+        }
+    }
+
+    private synchronized void rebuild(boolean onlyIfEmpty) {
+        flush();
+        Boolean rebuilt = transactionTemplate.execute(status -> {
+            // Held until commit
+            jdbcTemplate.queryForObject("select name from job_locks where name = ? for update", String.class, REBUILD_LOCK);
+            if (onlyIfEmpty && jdbcTemplate.queryForObject("select count(*) from report_rollups", Long.class) > 0) {
+                return false;
+            }
+            drain(key -> !key.series.equals(PAYMENTS));
+            jdbcTemplate.update("delete from report_rollups where series in (?, ?, ?)", ORDERS_BY_STATUS, PAID_BY_USER, PAID_BY_PRODUCT);
+            jdbcTemplate.update(REBUILD_ORDERS_BY_STATUS);
+            jdbcTemplate.update(REBUILD_PAID_BY_USER);
+            jdbcTemplate.update(REBUILD_PAID_BY_PRODUCT);
+            return true;
+        });
+        if (Boolean.TRUE.equals(rebuilt)) {
+            logger.info("Rebuilt order report rollups");
+        }
+    }
+
+    // One transaction per batch, so a failed batch adds nothing and can simply be retried
+    private void upsert(List<Map.Entry<Key, Delta>> entries) {
+        List<Object[]> rows = new ArrayList<>(entries.size());
+        for (Map.Entry<Key, Delta> entry : entries) {
+            Key key = entry.getKey();
+            rows.add(new Object[] {key.series, Date.valueOf(key.date), key.dimension, entry.getValue().count, entry.getValue().amount});
+        }
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(UPSERT, rows));
+    }
+
+    private void upsertOrDrop(Map.Entry<Key, Delta> entry) {
+        Key key = entry.getKey();
+        try {
+            upsert(Collections.singletonList(entry));
+        } catch (DataIntegrityViolationException e) {
+            // Retrying would fail the same way, and hold every later flush up with it
+            logger.error("Dropping report bucket {} {} {}: {}", key.series, key.date, key.dimension, e.getMessage());
+        } catch (DataAccessException e) {
+            logger.warn("Flushing report bucket {} {} {} failed, retrying next time: {}", key.series, key.date, key.dimension, e.getMessage());
+            add(key, entry.getValue().count, entry.getValue().amount);
+        }
+    }
+
+    private void apply(OrderView order, String status, int sign) {
+        LocalDate date = order.getOrderDate().toLocalDate();
+        BigDecimal total = order.getTotalAmount();
+        add(new Key(ORDERS_BY_STATUS, date, status), sign, signed(total, sign));
+        if (PAID.equals(status)) {
+            add(new Key(PAID_BY_USER, date, order.getUsername()), sign, signed(total, sign));
+            for (OrderItemView item : order.getItems()) {
+                BigDecimal lineTotal = item.getUnitPrice().multiply(BigDecimal.valueOf(item.getQuantity()));
+                add(new Key(PAID_BY_PRODUCT, date, item.getProductId().toString()), (long) sign * item.getQuantity(), signed(lineTotal, sign));
+            }
+        }
+    }
+
+    private void add(Key key, long count, BigDecimal amount) {
+        while (true) {
+            Delta delta = pending.computeIfAbsent(key, k -> new Delta());
+            synchronized (delta) {
+                // A retired delta was already taken by a flush; start a fresh one
+                if (!delta.retired) {
+                    delta.count += count;
+                    delta.amount = delta.amount.add(amount);
+                    return;
+                }
+            }
+        }
+    }
+
+    private Map<Key, Delta> drain(Predicate<Key> filter) {
+        Map<Key, Delta> drained = new HashMap<>();
+        for (Map.Entry<Key, Delta> entry : pending.entrySet()) {
+            if (!filter.test(entry.getKey())) {
+                continue;
+            }
+            Delta delta = entry.getValue();
+            synchronized (delta) {
+                delta.retired = true;
+            }
+            pending.remove(entry.getKey(), delta);
+            if (delta.count != 0 || delta.amount.signum() != 0) {
+                drained.put(entry.getKey(), delta);
+            }
+        }
+        return drained;
+    }
+
+    private static BigDecimal signed(BigDecimal amount, int sign) {
+        return sign < 0 ? amount.negate() : amount;
+    }
+
+    // Rolled-back transactions must not count, so deltas are recorded only after commit
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static final class Key {
+        private final String series;
+        private final LocalDate date;
+        private final String dimension;
+
+        private Key(String series, LocalDate date, String dimension) {
+            this.series = series;
+            this.date = date;
+            this.dimension = dimension;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return series.equals(other.series) && date.equals(other.date) && dimension.equals(other.dimension);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(series, date, dimension);
+        }
+    }
+
+    private static final class Delta {
+        private long count;
+        private BigDecimal amount = BigDecimal.ZERO;
+        private boolean retired;
+    }
+}
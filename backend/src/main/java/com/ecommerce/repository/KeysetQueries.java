@@ -0,0 +1,38 @@
+package com.ecommerce.repository;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import javax.persistence.EntityManager;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.JoinType;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.util.List;
+
+final class KeysetQueries {
+    private KeysetQueries() {}
+
+    /**
+     * Unlike findAll(spec, pageable) this issues no count query and never uses OFFSET.
+     * {@code fetchJoins} must be to-one associations; joining a collection would make
+     * the row limit cut through an entity's children.
+     */
+    static <T> List<T> fetch(EntityManager entityManager, Class<T> type, Specification<T> spec, Sort sort, int limit, String... fetchJoins) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<T> query = cb.createQuery(type);
+        Root<T> root = query.from(type);
+        for (String association : fetchJoins) {
+            root.fetch(association, JoinType.LEFT);
+        }
+        if (spec != null) {
+            Predicate predicate = spec.toPredicate(root, query, cb);
+            if (predicate != null) {
+                query.where(predicate);
+            }
+        }
+        query.select(root).orderBy(QueryUtils.toOrders(sort, root, cb));
+        return entityManager.createQuery(query).setMaxResults(limit).getResultList();
+    }
+}
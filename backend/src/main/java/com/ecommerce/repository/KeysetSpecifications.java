@@ -0,0 +1,28 @@
+package com.ecommerce.repository;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+
+public final class KeysetSpecifications {
+    private KeysetSpecifications() {}
+
+    /**
+     * Rows strictly after {@code (key, id)} in {@code (property, id)} order. The id
+     * tie-breaker keeps the ordering total, so rows inserted while a client is
+     * paging never shift or duplicate entries on later pages.
+     */
+    public static <T, K extends Comparable<? super K>> Specification<T> after(String property, Sort.Direction direction, K key, Long id) {
+        return (root, query, cb) -> {
+            Path<Long> idPath = root.get("id");
+            Predicate idBeyond = direction.isAscending() ? cb.greaterThan(idPath, id) : cb.lessThan(idPath, id);
+            if ("id".equals(property)) {
+                return idBeyond;
+            }
+            Path<K> keyPath = root.get(property);
+            Predicate keyBeyond = direction.isAscending() ? cb.greaterThan(keyPath, key) : cb.lessThan(keyPath, key);
+            return cb.or(keyBeyond, cb.and(cb.equal(keyPath, key), idBeyond));
+        };
+    }
+}
@@ -1,7 +1,43 @@
 package com.ecommerce.repository;
 
+import com.ecommerce.dto.OrderItemView;
+import com.ecommerce.dto.OrderView;
 import com.ecommerce.model.Order;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import javax.persistence.QueryHint;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
-public interface OrderRepository extends JpaRepository<Order, Long> {
-} 
\ No newline at end of file
+public interface OrderRepository extends JpaRepository<Order, Long>, JpaSpecificationExecutor<Order>, OrderRepositoryCustom {
+    // Join the user into the same query instead of one extra SELECT per order
+    @Override
+    @EntityGraph(attributePaths = "user")
+    List<Order> findAll();
+
+    @EntityGraph(attributePaths = {"user", "items"})
+    Optional<Order> findWithItemsById(Long id);
+
+    // Export path: DTO projections only, so nothing accumulates in the persistence context
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("select new com.ecommerce.dto.OrderView(o.id, o.orderDate, o.status, o.totalAmount, u.username) from Order o join o.user u order by o.id")
+    Stream<OrderView> streamAllViews();
+
+    @Query("select new com.ecommerce.dto.OrderView(o.id, o.orderDate, o.status, o.totalAmount, u.username) from Order o join o.user u where o.id = :id")
+    Optional<OrderView> findViewById(@Param("id") Long id);
+
+    @Query("select new com.ecommerce.dto.OrderItemView(i.order.id, i.productId, i.productName, i.unitPrice, i.quantity) from OrderItem i where i.order.id in :orderIds order by i.id")
+    List<OrderItemView> findItemViews(@Param("orderIds") Collection<Long> orderIds);
+
+    // Status only moves forward from an expected state, so replayed or reordered webhooks are no-ops
+    @Modifying
+    @Query("update Order o set o.status = :to where o.id = :id and o.status = :from")
+    int transitionStatus(@Param("id") Long id, @Param("from") String from, @Param("to") String to);
+}
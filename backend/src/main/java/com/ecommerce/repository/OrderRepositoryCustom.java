@@ -0,0 +1,10 @@
+package com.ecommerce.repository;
+
+import com.ecommerce.model.Order;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import java.util.List;
+
+public interface OrderRepositoryCustom {
+    List<Order> findKeyset(Specification<Order> spec, Sort sort, int limit);
+}
@@ -0,0 +1,19 @@
+package com.ecommerce.repository;
+
+import com.ecommerce.model.Order;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.List;
+
+public class OrderRepositoryCustomImpl implements OrderRepositoryCustom {
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Order> findKeyset(Specification<Order> spec, Sort sort, int limit) {
+        // Users are fetch-joined; items come in one batched query per page (hibernate.default_batch_fetch_size)
+        return KeysetQueries.fetch(entityManager, Order.class, spec, sort, limit, "user");
+    }
+}
@@ -0,0 +1,10 @@
+package com.ecommerce.repository;
+
+import com.ecommerce.model.Product;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import java.util.List;
+
+public interface ProductRepositoryCustom {
+    List<Product> findKeyset(Specification<Product> spec, Sort sort, int limit);
+}
@@ -0,0 +1,43 @@
+package com.ecommerce.repository;
+
+import com.ecommerce.model.Product;
+import org.springframework.data.jpa.domain.Specification;
+import java.math.BigDecimal;
+import java.util.Locale;
+
+public final class ProductSpecifications {
+    private ProductSpecifications() {}
+
+    public static Specification<Product> nameContains(String name) {
+        if (name == null || name.isEmpty()) {
+            return null;
+        }
+        String pattern = "%" + escapeLike(name.toLowerCase(Locale.ROOT)) + "%";
+        return (root, query, cb) -> cb.like(cb.lower(root.get("name")), pattern, '\\');
+    }
+
+    public static Specification<Product> priceAtLeast(BigDecimal minPrice) {
+        if (minPrice == null) {
+            return null;
+        }
+        return (root, query, cb) -> cb.greaterThanOrEqualTo(root.get("price"), minPrice);
+    }
+
+    public static Specification<Product> priceAtMost(BigDecimal maxPrice) {
+        if (maxPrice == null) {
+            return null;
+        }
+        return (root, query, cb) -> cb.lessThanOrEqualTo(root.get("price"), maxPrice);
+    }
+
+    // Null parts are skipped by Specification.where/and, so absent filters add no predicate
+    public static Specification<Product> catalogFilter(String name, BigDecimal minPrice, BigDecimal maxPrice) {
+        return Specification.where(nameContains(name))
+                .and(priceAtLeast(minPrice))
+                .and(priceAtMost(maxPrice));
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
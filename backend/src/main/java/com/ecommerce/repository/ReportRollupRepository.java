@@ -0,0 +1,20 @@
+package com.ecommerce.repository;
+
+import com.ecommerce.dto.ReportBucket;
+import com.ecommerce.model.ReportRollup;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import java.time.LocalDate;
+import java.util.List;
+
+// Every query reads a range of the (series, bucketDate, dimension) index, never the orders table
+public interface ReportRollupRepository extends JpaRepository<ReportRollup, Long> {
+    List<ReportRollup> findBySeriesAndDimensionAndBucketDateBetweenOrderByBucketDate(
+            String series, String dimension, LocalDate from, LocalDate to);
+
+    @Query("select new com.ecommerce.dto.ReportBucket(r.dimension, sum(r.eventCount), sum(r.amount)) from ReportRollup r "
+            + "where r.series = :series and r.bucketDate between :from and :to group by r.dimension order by sum(r.amount) desc, r.dimension")
+    List<ReportBucket> sumByDimension(@Param("series") String series, @Param("from") LocalDate from, @Param("to") LocalDate to, Pageable pageable);
+}
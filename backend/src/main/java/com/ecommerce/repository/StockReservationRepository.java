@@ -0,0 +1,21 @@
+package com.ecommerce.repository;
+
+import com.ecommerce.model.StockReservation;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface StockReservationRepository extends JpaRepository<StockReservation, Long> {
+    List<StockReservation> findByReference(String reference);
+
+    List<StockReservation> findByStatusAndExpiresAtBefore(String status, LocalDateTime time, Pageable pageable);
+
+    // Compare-and-set on status: exactly one of confirm, release and expiry can win for a reservation
+    @Modifying
+    @Query("update StockReservation r set r.status = :to where r.id = :id and r.status = :from")
+    int transition(@Param("id") Long id, @Param("from") String from, @Param("to") String to);
+}
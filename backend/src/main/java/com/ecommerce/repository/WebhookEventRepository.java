@@ -0,0 +1,23 @@
+package com.ecommerce.repository;
+
+import com.ecommerce.model.WebhookEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface WebhookEventRepository extends JpaRepository<WebhookEvent, String> {
+    List<WebhookEvent> findByStatusAndReceivedAtBeforeOrderByReceivedAtAsc(String status, LocalDateTime receivedBefore, Pageable pageable);
+
+    // Only the worker whose update wins gets to commit the event's side effects
+    @Modifying
+    @Query("update WebhookEvent e set e.status = :to, e.processedAt = :now, e.attempts = e.attempts + 1 where e.id = :id and e.status = 'PENDING'")
+    int complete(@Param("id") String id, @Param("to") String to, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("update WebhookEvent e set e.attempts = e.attempts + 1, e.lastError = :error where e.id = :id and e.status = 'PENDING'")
+    int recordFailure(@Param("id") String id, @Param("error") String error);
+}
@@ -0,0 +1,23 @@
+package com.ecommerce.search;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+// Part of the readiness group: a new node takes traffic once its catalog indexes are warm
+@Component
+public class CatalogHealthIndicator implements HealthIndicator {
+    @Autowired
+    private CatalogIndexer catalogIndexer;
+    @Autowired
+    private ProductCatalog productCatalog;
+
+    @Override
+    public Health health() {
+        if (!catalogIndexer.isReady()) {
+            return Health.outOfService().withDetail("reason", "catalog indexes are loading").build();
+        }
+        return Health.up().withDetail("products", productCatalog.size()).build();
+    }
+}
@@ -0,0 +1,160 @@
+package com.ecommerce.search;
+
+import com.ecommerce.cache.ProductCache;
+import com.ecommerce.model.Product;
+import com.ecommerce.repository.KeysetSpecifications;
+import com.ecommerce.repository.ProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Keeps the in-memory catalog indexes ({@link ProductSearchIndex},
+ * {@link ProductSuggester}, {@link ProductCatalog}) in sync with the products table: one keyset pass
+ * over the table at startup, then every save on this node and, through the
+ * catalog invalidation channel, on the others. Bulk changes trigger a full
+ * re-read in the background.
+ *
+ * The startup pass runs in the background too, so the server comes up without
+ * waiting for it; {@link CatalogHealthIndicator} keeps the readiness probe out
+ * of service until it is done.
+ */
+@Component
+public class CatalogIndexer {
+    private static final Logger logger = LoggerFactory.getLogger(CatalogIndexer.class);
+    private static final int LOAD_BATCH = 1000;
+    private static final long LOAD_RETRY_MS = 5000;
+
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private ProductCache productCache;
+    @Autowired
+    private ProductSearchIndex searchIndex;
+    @Autowired
+    private ProductSuggester suggester;
+    @Autowired
+    private ProductCatalog productCatalog;
+
+    private final ExecutorService reindexer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "catalog-reindex");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile boolean ready;
+    private long reindexedVersion = -1;
+
+    @PostConstruct
+    public void init() {
+        productCache.addInvalidationListener(this::refresh);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        reindexer.shutdownNow();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        reindexer.execute(() -> {
+            long started = System.nanoTime();
+            while (!ready) {
+                try {
+                    scan(false);
+                    ready = true;
+                } catch (RuntimeException e) {
+                    logger.warn("Catalog indexes could not be built, retrying in {} ms", LOAD_RETRY_MS, e);
+                    try {
+                        Thread.sleep(LOAD_RETRY_MS);
+                    } catch (InterruptedException interrupted) {
+                        return;
+                    }
+                }
+            }
+            logger.info("Catalog indexes built: {} products, {} terms in {} ms",
+                    searchIndex.size(), searchIndex.termCount(), (System.nanoTime() - started) / 1_000_000);
+        });
+    }
+
+    /**
+     * Re-reads every product into the indexes in the background, after a bulk
+     * change. Requests are coalesced per catalog version, so the importing node's
+     * own call and the pub/sub echo of its invalidation cost a single pass.
+     */
+    public synchronized void reindexAll() {
+        long version = productCache.getVersion();
+        if (!ready || version <= reindexedVersion) {
+            return;
+        }
+        reindexedVersion = version;
+        reindexer.execute(() -> {
+            long started = System.nanoTime();
+            scan(true);
+            logger.info("Catalog indexes refreshed: {} products, {} terms in {} ms",
+                    searchIndex.size(), searchIndex.termCount(), (System.nanoTime() - started) / 1_000_000);
+        });
+    }
+
+    private void scan(boolean overwrite) {
+        Sort byId = Sort.by(Sort.Direction.ASC, "id");
+        ProductCatalog.Rebuild rebuild = productCatalog.startRebuild();
+        Long lastId = null;
+        List<Product> batch;
+        do {
+            Specification<Product> spec = lastId == null ? Specification.<Product>where(null)
+                    : KeysetSpecifications.after("id", Sort.Direction.ASC, lastId, lastId);
+            batch = productRepository.findKeyset(spec, byId, LOAD_BATCH);
+            for (Product product : batch) {
+                if (overwrite) {
+                    index(product);
+                } else {
+                    searchIndex.indexIfAbsent(product);
+                    suggester.addIfAbsent(product);
+                }
+                rebuild.add(product);
+                lastId = product.getId();
+            }
+        } while (batch.size() == LOAD_BATCH);
+        rebuild.finish();
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void index(Product product) {
+        searchIndex.index(product);
+        suggester.add(product);
+        productCatalog.put(product);
+    }
+
+    private void refresh(Long productId) {
+        if (!ready) {
+            return;
+        }
+        if (productId == null) {
+            reindexAll();
+            return;
+        }
+        // Our own saves echo back here too; re-reading one row by id is cheap and idempotent
+        Product product = productRepository.findById(productId).orElse(null);
+        if (product != null) {
+            index(product);
+        } else {
+            searchIndex.remove(productId);
+            suggester.remove(productId);
+            productCatalog.remove(productId);
+        }
+    }
+}
@@ -0,0 +1,469 @@
+package com.ecommerce.search;
+
+import com.ecommerce.dto.ProductView;
+import com.ecommerce.model.Product;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.IntStream;
+
+/**
+ * Immutable, column-oriented copy of the whole catalog. Rows are ordered by id;
+ * prices are also held as long cents, and the price and name orderings are
+ * precomputed as row permutations. A price range is two binary searches over
+ * the price ordering and any sort is a walk over a permutation, so listing the
+ * catalog never compares a BigDecimal or sorts at request time.
+ *
+ * Never modified after construction: {@link #with}, {@link #without} and
+ * {@link #withStock} return a new snapshot for {@link ProductCatalog} to publish.
+ * They copy only the columns that change and share the rest, and patch the
+ * fingerprint rather than rehash every row.
+ */
+final class CatalogSnapshot {
+    static final CatalogSnapshot EMPTY = build(new ArrayList<>());
+
+    private final int size;
+    private final long[] ids;
+    private final String[] names;
+    private final String[] lowerNames;
+    private final String[] descriptions;
+    private final BigDecimal[] prices;
+    private final long[] priceCents;
+    private final int[] stocks;
+    private final String[] imageUrls;
+    // Row permutations: by (price, id) and by (name case-insensitively, id); id order is the row order itself
+    private final int[] byPrice;
+    private final int[] byName;
+    // priceCents in byPrice order, for binary search; nameRank is the inverse of byName
+    private final long[] sortedCents;
+    private final int[] nameRank;
+    // Sum of every row's hash: equal on any node holding the same catalog, and changes with any field
+    private final long fingerprint;
+
+    private CatalogSnapshot(long[] ids, String[] names, String[] lowerNames, String[] descriptions, BigDecimal[] prices,
+                            long[] priceCents, int[] stocks, String[] imageUrls, int[] byPrice, int[] byName,
+                            long[] sortedCents, int[] nameRank, long fingerprint) {
+        this.size = ids.length;
+        this.ids = ids;
+        this.names = names;
+        this.lowerNames = lowerNames;
+        this.descriptions = descriptions;
+        this.prices = prices;
+        this.priceCents = priceCents;
+        this.stocks = stocks;
+        this.imageUrls = imageUrls;
+        this.byPrice = byPrice;
+        this.byName = byName;
+        this.sortedCents = sortedCents;
+        this.nameRank = nameRank;
+        this.fingerprint = fingerprint;
+    }
+
+    // Later entries win when an id appears twice
+    static CatalogSnapshot build(List<Product> products) {
+        List<Product> sorted = new ArrayList<>(products);
+        sorted.sort(Comparator.comparing(Product::getId));
+        List<Product> unique = new ArrayList<>(sorted.size());
+        for (Product product : sorted) {
+            if (!unique.isEmpty() && unique.get(unique.size() - 1).getId().equals(product.getId())) {
+                unique.set(unique.size() - 1, product);
+            } else {
+                unique.add(product);
+            }
+        }
+        int n = unique.size();
+        long[] ids = new long[n];
+        String[] names = new String[n];
+        String[] descriptions = new String[n];
+        BigDecimal[] prices = new BigDecimal[n];
+        long[] priceCents = new long[n];
+        int[] stocks = new int[n];
+        String[] imageUrls = new String[n];
+        for (int row = 0; row < n; row++) {
+            Product product = unique.get(row);
+            ids[row] = product.getId();
+            names[row] = product.getName();
+            descriptions[row] = product.getDescription();
+            prices[row] = product.getPrice();
+            priceCents[row] = toCents(product.getPrice(), RoundingMode.HALF_UP);
+            stocks[row] = product.getStock() != null ? product.getStock() : 0;
+            imageUrls[row] = product.getImageUrl();
+        }
+        int[] byPrice = IntStream.range(0, n).boxed()
+                .sorted((a, b) -> comparePrices(priceCents, ids, a, b))
+                .mapToInt(Integer::intValue).toArray();
+        int[] byName = IntStream.range(0, n).boxed()
+                .sorted((a, b) -> compareNames(names, ids, a, b))
+                .mapToInt(Integer::intValue).toArray();
+        String[] lowerNames = new String[n];
+        long fingerprint = 0;
+        for (int row = 0; row < n; row++) {
+            lowerNames[row] = lower(names[row]);
+            fingerprint += rowHash(ids[row], names[row], descriptions[row], prices[row], stocks[row], imageUrls[row]);
+        }
+        return new CatalogSnapshot(ids, names, lowerNames, descriptions, prices, priceCents, stocks, imageUrls,
+                byPrice, byName, sortedCents(priceCents, byPrice), nameRank(byName), fingerprint);
+    }
+
+    int size() {
+        return size;
+    }
+
+    long fingerprint() {
+        return fingerprint;
+    }
+
+    // Row of a product id, or a negative insertion point as in Arrays.binarySearch
+    int rowOf(long id) {
+        return Arrays.binarySearch(ids, 0, size, id);
+    }
+
+    ProductView get(long id) {
+        int row = rowOf(id);
+        return row >= 0 ? view(row) : null;
+    }
+
+    /**
+     * Emits the products matching the filters in the requested order.
+     *
+     * @param name       case-insensitive substring of the name, or null
+     * @param minPrice   inclusive lower bound, or null
+     * @param maxPrice   inclusive upper bound, or null
+     * @param property   "id", "price" or "name"; ties are broken by id
+     */
+    void forEach(String name, BigDecimal minPrice, BigDecimal maxPrice, String property, boolean descending, Consumer<ProductView> consumer) {
+        String needle = name != null && !name.isEmpty() ? name.toLowerCase(Locale.ROOT) : null;
+        int from = 0;
+        int to = size;
+        boolean priceFiltered = minPrice != null || maxPrice != null;
+        if (priceFiltered) {
+            from = minPrice != null ? lowerBound(sortedCents, size, toCents(minPrice, RoundingMode.CEILING)) : 0;
+            to = maxPrice != null ? upperBound(sortedCents, size, toCents(maxPrice, RoundingMode.FLOOR)) : size;
+            if (from >= to) {
+                return;
+            }
+        }
+        int[] ordering = "price".equals(property) ? byPrice : "name".equals(property) ? byName : null;
+        if (!priceFiltered || ordering == byPrice) {
+            // A contiguous slice of one ordering
+            for (int k = 0; k < to - from; k++) {
+                int position = descending ? to - 1 - k : from + k;
+                emit(ordering != null ? ordering[position] : position, needle, consumer);
+            }
+            return;
+        }
+        // A price slice in another order: sort the rows' ranks in that order (primitive ints) and map back
+        int[] ranks = new int[to - from];
+        for (int k = 0; k < ranks.length; k++) {
+            int row = byPrice[from + k];
+            ranks[k] = ordering != null ? nameRank[row] : row;
+        }
+        Arrays.sort(ranks);
+        for (int k = 0; k < ranks.length; k++) {
+            int rank = ranks[descending ? ranks.length - 1 - k : k];
+            emit(ordering != null ? ordering[rank] : rank, needle, consumer);
+        }
+    }
+
+    private void emit(int row, String needle, Consumer<ProductView> consumer) {
+        if (needle == null || lowerNames[row].contains(needle)) {
+            consumer.accept(view(row));
+        }
+    }
+
+    private ProductView view(int row) {
+        return new ProductView(ids[row], names[row], descriptions[row], prices[row], stocks[row], imageUrls[row]);
+    }
+
+    // Adds the product, or replaces the row with its id
+    CatalogSnapshot with(Product product) {
+        int row = rowOf(product.getId());
+        return row >= 0 ? replace(row, product) : insert(product);
+    }
+
+    CatalogSnapshot without(long id) {
+        int removed = rowOf(id);
+        if (removed < 0) {
+            return this;
+        }
+        int n = size - 1;
+        long[] newCents = removeAt(priceCents, removed);
+        int[] priceOrder = removeRow(byPrice, removed);
+        int[] nameOrder = removeRow(byName, removed);
+        return new CatalogSnapshot(removeAt(ids, removed), removeAt(names, removed, new String[n]),
+                removeAt(lowerNames, removed, new String[n]), removeAt(descriptions, removed, new String[n]),
+                removeAt(prices, removed, new BigDecimal[n]), newCents, removeAt(stocks, removed),
+                removeAt(imageUrls, removed, new String[n]), priceOrder, nameOrder,
+                sortedCents(newCents, priceOrder), nameRank(nameOrder), fingerprint - rowHash(removed));
+    }
+
+    // Same rows with one product's stock changed, e.g. after a checkout on any node; shares every other column
+    CatalogSnapshot withStock(long id, int stock) {
+        int row = rowOf(id);
+        if (row < 0 || stocks[row] == stock) {
+            return this;
+        }
+        int[] newStocks = stocks.clone();
+        newStocks[row] = stock;
+        long newFingerprint = fingerprint - rowHash(row)
+                + rowHash(ids[row], names[row], descriptions[row], prices[row], stock, imageUrls[row]);
+        return new CatalogSnapshot(ids, names, lowerNames, descriptions, prices, priceCents, newStocks, imageUrls,
+                byPrice, byName, sortedCents, nameRank, newFingerprint);
+    }
+
+    // Patches the row in place; an ordering is only touched if its sort key changed
+    private CatalogSnapshot replace(int row, Product product) {
+        long cents = toCents(product.getPrice(), RoundingMode.HALF_UP);
+        int stock = product.getStock() != null ? product.getStock() : 0;
+        String[] newNames = set(names, row, product.getName());
+        long[] newCents = priceCents;
+        int[] priceOrder = byPrice;
+        long[] newSortedCents = sortedCents;
+        if (cents != priceCents[row]) {
+            newCents = priceCents.clone();
+            newCents[row] = cents;
+            long[] centsColumn = newCents;
+            priceOrder = moveRow(byPrice, row, other -> comparePrices(centsColumn, ids, other, row));
+            newSortedCents = sortedCents(newCents, priceOrder);
+        }
+        int[] nameOrder = byName;
+        int[] newNameRank = nameRank;
+        if (!Objects.equals(names[row], product.getName())) {
+            nameOrder = moveRow(byName, row, other -> compareNames(newNames, ids, other, row));
+            newNameRank = nameRank(nameOrder);
+        }
+        int[] newStocks = stocks;
+        if (stocks[row] != stock) {
+            newStocks = stocks.clone();
+            newStocks[row] = stock;
+        }
+        long newFingerprint = fingerprint - rowHash(row) + rowHash(ids[row], product.getName(), product.getDescription(),
+                product.getPrice(), stock, product.getImageUrl());
+        return new CatalogSnapshot(ids, newNames, set(lowerNames, row, lower(product.getName())),
+                set(descriptions, row, product.getDescription()), set(prices, row, product.getPrice()), newCents,
+                newStocks, set(imageUrls, row, product.getImageUrl()), priceOrder, nameOrder, newSortedCents,
+                newNameRank, newFingerprint);
+    }
+
+    private CatalogSnapshot insert(Product product) {
+        int row = -rowOf(product.getId()) - 1;
+        int n = size + 1;
+        int stock = product.getStock() != null ? product.getStock() : 0;
+        long[] newIds = insertAt(ids, row, product.getId());
+        String[] newNames = insertAt(names, row, product.getName(), new String[n]);
+        long[] newCents = insertAt(priceCents, row, toCents(product.getPrice(), RoundingMode.HALF_UP));
+        int[] priceOrder = place(renumber(byPrice, row), row, other -> comparePrices(newCents, newIds, other, row));
+        int[] nameOrder = place(renumber(byName, row), row, other -> compareNames(newNames, newIds, other, row));
+        long newFingerprint = fingerprint + rowHash(product.getId(), product.getName(), product.getDescription(),
+                product.getPrice(), stock, product.getImageUrl());
+        return new CatalogSnapshot(newIds, newNames, insertAt(lowerNames, row, lower(product.getName()), new String[n]),
+                insertAt(descriptions, row, product.getDescription(), new String[n]),
+                insertAt(prices, row, product.getPrice(), new BigDecimal[n]), newCents, insertAt(stocks, row, stock),
+                insertAt(imageUrls, row, product.getImageUrl(), new String[n]), priceOrder, nameOrder,
+                sortedCents(newCents, priceOrder), nameRank(nameOrder), newFingerprint);
+    }
+
+    private long rowHash(int row) {
+        return rowHash(ids[row], names[row], descriptions[row], prices[row], stocks[row], imageUrls[row]);
+    }
+
+    /**
+     * One row's share of the fingerprint. The fingerprint is their sum, so it does not
+     * depend on row order and a changed row is patched in without rehashing the rest.
+     */
+    private static long rowHash(long id, String name, String description, BigDecimal price, int stock, String imageUrl) {
+        int content = Objects.hash(name, description, price, stock, imageUrl);
+        return mix(id ^ ((long) content << 32));
+    }
+
+    // priceCents in byPrice order, for binary search
+    private static long[] sortedCents(long[] priceCents, int[] byPrice) {
+        long[] sorted = new long[byPrice.length];
+        for (int k = 0; k < byPrice.length; k++) {
+            sorted[k] = priceCents[byPrice[k]];
+        }
+        return sorted;
+    }
+
+    // Inverse of the byName permutation
+    private static int[] nameRank(int[] byName) {
+        int[] rank = new int[byName.length];
+        for (int k = 0; k < byName.length; k++) {
+            rank[byName[k]] = k;
+        }
+        return rank;
+    }
+
+    private static String lower(String name) {
+        return name != null ? name.toLowerCase(Locale.ROOT) : "";
+    }
+
+    // Drops the row from a permutation and renumbers the rows after it
+    private static int[] removeRow(int[] ordering, int removed) {
+        int[] result = new int[ordering.length - 1];
+        int k = 0;
+        for (int row : ordering) {
+            if (row != removed) {
+                result[k++] = row > removed ? row - 1 : row;
+            }
+        }
+        return result;
+    }
+
+    // Shifts rows at or after the inserted one up by one, making room for it in a permutation
+    private static int[] renumber(int[] ordering, int inserted) {
+        int[] renumbered = new int[ordering.length];
+        for (int k = 0; k < ordering.length; k++) {
+            renumbered[k] = ordering[k] >= inserted ? ordering[k] + 1 : ordering[k];
+        }
+        return renumbered;
+    }
+
+    // Takes the row out of a permutation and places it again, after its sort key changed
+    private static int[] moveRow(int[] ordering, int row, IntUnaryOperator compareToRow) {
+        int[] others = new int[ordering.length - 1];
+        int k = 0;
+        for (int other : ordering) {
+            if (other != row) {
+                others[k++] = other;
+            }
+        }
+        return place(others, row, compareToRow);
+    }
+
+    /**
+     * Places the row at its binary-searched position in an ordering of the other rows.
+     * compareToRow(other) orders another row against it.
+     */
+    private static int[] place(int[] ordering, int row, IntUnaryOperator compareToRow) {
+        int n = ordering.length;
+        int low = 0;
+        int high = n;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compareToRow.applyAsInt(ordering[mid]) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        int[] result = new int[n + 1];
+        System.arraycopy(ordering, 0, result, 0, low);
+        result[low] = row;
+        System.arraycopy(ordering, low, result, low + 1, n - low);
+        return result;
+    }
+
+    private static int comparePrices(long[] priceCents, long[] ids, int a, int b) {
+        int byCents = Long.compare(priceCents[a], priceCents[b]);
+        return byCents != 0 ? byCents : Long.compare(ids[a], ids[b]);
+    }
+
+    private static int compareNames(String[] names, long[] ids, int a, int b) {
+        String left = names[a] != null ? names[a] : "";
+        String right = names[b] != null ? names[b] : "";
+        int byName = String.CASE_INSENSITIVE_ORDER.compare(left, right);
+        return byName != 0 ? byName : Long.compare(ids[a], ids[b]);
+    }
+
+    // First position whose value is >= key
+    private static int lowerBound(long[] sorted, int size, long key) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // First position whose value is > key
+    private static int upperBound(long[] sorted, int size, long key) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] <= key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // splitmix64 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private static long toCents(BigDecimal amount, RoundingMode rounding) {
+        return amount != null ? amount.movePointRight(2).setScale(0, rounding).longValue() : 0;
+    }
+
+    private static long[] insertAt(long[] values, int index, long value) {
+        long[] result = new long[values.length + 1];
+        System.arraycopy(values, 0, result, 0, index);
+        result[index] = value;
+        System.arraycopy(values, index, result, index + 1, values.length - index);
+        return result;
+    }
+
+    private static int[] insertAt(int[] values, int index, int value) {
+        int[] result = new int[values.length + 1];
+        System.arraycopy(values, 0, result, 0, index);
+        result[index] = value;
+        System.arraycopy(values, index, result, index + 1, values.length - index);
+        return result;
+    }
+
+    private static <T> T[] insertAt(T[] values, int index, T value, T[] result) {
+        System.arraycopy(values, 0, result, 0, index);
+        result[index] = value;
+        System.arraycopy(values, index, result, index + 1, values.length - index);
+        return result;
+    }
+
+    private static <T> T[] set(T[] values, int index, T value) {
+        if (Objects.equals(values[index], value)) {
+            return values;
+        }
+        T[] result = values.clone();
+        result[index] = value;
+        return result;
+    }
+
+    private static long[] removeAt(long[] values, int index) {
+        long[] result = new long[values.length - 1];
+        System.arraycopy(values, 0, result, 0, index);
+        System.arraycopy(values, index + 1, result, index, values.length - index - 1);
+        return result;
+    }
+
+    private static int[] removeAt(int[] values, int index) {
+        int[] result = new int[values.length - 1];
+        System.arraycopy(values, 0, result, 0, index);
+        System.arraycopy(values, index + 1, result, index, values.length - index - 1);
+        return result;
+    }
+
+    private static <T> T[] removeAt(T[] values, int index, T[] result) {
+        System.arraycopy(values, 0, result, 0, index);
+        System.arraycopy(values, index + 1, result, index, values.length - index - 1);
+        return result;
+    }
+}
@@ -0,0 +1,37 @@
+package com.ecommerce.search;
+
+import java.util.Arrays;
+
+// Doc ids ascending with their weighted term frequencies, kept in parallel int arrays
+final class PostingList {
+    int[] docs = new int[4];
+    int[] freqs = new int[4];
+    int size;
+
+    void add(int doc, int freq) {
+        if (size == docs.length) {
+            int capacity = size + (size >> 1) + 1;
+            docs = Arrays.copyOf(docs, capacity);
+            freqs = Arrays.copyOf(freqs, capacity);
+        }
+        docs[size] = doc;
+        freqs[size] = freq;
+        size++;
+    }
+
+    // Drops docs mapped to -1 and renumbers the rest; order is preserved because the mapping is monotonic
+    void remap(int[] newIds) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            int doc = newIds[docs[i]];
+            if (doc >= 0) {
+                docs[kept] = doc;
+                freqs[kept] = freqs[i];
+                kept++;
+            }
+        }
+        size = kept;
+        docs = Arrays.copyOf(docs, Math.max(kept, 4));
+        freqs = Arrays.copyOf(freqs, Math.max(kept, 4));
+    }
+}
@@ -0,0 +1,152 @@
+package com.ecommerce.search;
+
+import com.ecommerce.cache.ProductCache;
+import com.ecommerce.dto.ProductView;
+import com.ecommerce.model.Product;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * In-memory read model of the catalog for list requests, published as an
+ * immutable {@link CatalogSnapshot}. Readers take the current snapshot from a
+ * volatile field and never lock; writers build a new snapshot and swap it in.
+ *
+ * Kept in sync by {@link CatalogIndexer} like the search indexes. Stock also
+ * moves through checkouts, which don't go through product saves; those announce
+ * the products they touched on the catalog invalidation channel and every node
+ * re-reads just those rows.
+ */
+@Component
+public class ProductCatalog {
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private ProductCache productCache;
+
+    private volatile CatalogSnapshot snapshot = CatalogSnapshot.EMPTY;
+    private volatile boolean ready;
+    // Saves and removals seen while a full rebuild is reading the table; re-applied on top of its result
+    private Map<Long, Product> changedDuringRebuild;
+    private Set<Long> stockChangedDuringRebuild = new HashSet<>();
+
+    @PostConstruct
+    public void init() {
+        productCache.addStockListener(this::refreshStock);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int size() {
+        return snapshot.size();
+    }
+
+    // Changes whenever the catalog contents do, stock included
+    public long fingerprint() {
+        return snapshot.fingerprint();
+    }
+
+    public Optional<ProductView> get(Long productId) {
+        return Optional.ofNullable(snapshot.get(productId));
+    }
+
+    /**
+     * Streams the products matching the filters, in the requested order.
+     * Filters and sorting have the same meaning as the SQL catalog search.
+     */
+    public void forEach(String name, BigDecimal minPrice, BigDecimal maxPrice, String sortProperty, boolean descending,
+                        Consumer<ProductView> consumer) {
+        snapshot.forEach(name, minPrice, maxPrice, sortProperty, descending, consumer);
+    }
+
+    public synchronized void put(Product product) {
+        snapshot = snapshot.with(product);
+        if (changedDuringRebuild != null) {
+            changedDuringRebuild.put(product.getId(), product);
+        }
+    }
+
+    public synchronized void remove(Long productId) {
+        snapshot = snapshot.without(productId);
+        if (changedDuringRebuild != null) {
+            changedDuringRebuild.put(productId, null);
+        }
+    }
+
+    // Starts a full rebuild; feed it every product and then call finish()
+    public synchronized Rebuild startRebuild() {
+        changedDuringRebuild = new LinkedHashMap<>();
+        return new Rebuild();
+    }
+
+    /**
+     * Re-reads the stock of these products into the snapshot. Runs under the lock,
+     * read included, so two refreshes of one product can't publish out of order.
+     */
+    public synchronized void refreshStock(Set<Long> productIds) {
+        if (changedDuringRebuild != null) {
+            stockChangedDuringRebuild.addAll(productIds);
+        }
+        if (!ready) {
+            return;
+        }
+        CatalogSnapshot updated = snapshot;
+        for (Map.Entry<Long, Integer> stock : readStock(productIds).entrySet()) {
+            updated = updated.withStock(stock.getKey(), stock.getValue());
+        }
+        snapshot = updated;
+    }
+
+    private Map<Long, Integer> readStock(Set<Long> productIds) {
+        Map<Long, Integer> stocks = new HashMap<>();
+        if (productIds.isEmpty()) {
+            return stocks;
+        }
+        String placeholders = String.join(",", Collections.nCopies(productIds.size(), "?"));
+        jdbcTemplate.query("select id, stock from products where id in (" + placeholders + ")",
+                rs -> {
+                    stocks.put(rs.getLong(1), rs.getInt(2));
+                }, productIds.toArray());
+        return stocks;
+    }
+
+    public final class Rebuild {
+        private final List<Product> products = new ArrayList<>();
+
+        private Rebuild() {}
+
+        public void add(Product product) {
+            products.add(product);
+        }
+
+        public void finish() {
+            CatalogSnapshot built = CatalogSnapshot.build(products);
+            synchronized (ProductCatalog.this) {
+                for (Map.Entry<Long, Product> change : changedDuringRebuild.entrySet()) {
+                    built = change.getValue() != null ? built.with(change.getValue()) : built.without(change.getKey());
+                }
+                changedDuringRebuild = null;
+                snapshot = built;
+                ready = true;
+                // The scan may have read these rows before a checkout moved their stock
+                refreshStock(stockChangedDuringRebuild);
+                stockChangedDuringRebuild = new HashSet<>();
+            }
+        }
+    }
+}
@@ -0,0 +1,449 @@
+package com.ecommerce.search;
+
+import com.ecommerce.model.Product;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-process full-text index over product name and description.
+ *
+ * Products get dense int doc ids; each term maps to a {@link PostingList} of
+ * (doc, weighted frequency) pairs held in primitive arrays. Queries are
+ * AND-ed across terms, ranked with BM25, and can be restricted to a price
+ * range via a per-doc price-in-cents column. The last query term also matches
+ * as a prefix (search-as-you-type) and a term with no match at all falls back
+ * to terms within a small edit distance.
+ *
+ * Kept in sync with the database by {@link CatalogIndexer}.
+ *
+ * Updates never rewrite postings: the old doc is tombstoned and the product
+ * is appended under a new doc id. Tombstones are compacted away once they
+ * make up a quarter of the index.
+ */
+@Component
+public class ProductSearchIndex {
+    private static final int NAME_WEIGHT = 3;
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+    private static final float PREFIX_WEIGHT = 0.7f;
+    private static final float FUZZY_WEIGHT = 0.5f;
+    private static final int MAX_EXPANSIONS = 64;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TreeMap<String, PostingList> terms = new TreeMap<>();
+    private final Map<Long, Integer> docByProduct = new HashMap<>();
+    private final BitSet deleted = new BitSet();
+    private long[] productIds = new long[1024];
+    private long[] priceCents = new long[1024];
+    private int[] docLengths = new int[1024];
+    private int docCount;
+    private int liveCount;
+    private long totalLength;
+
+    // Dense accumulators cost 8 bytes per doc, so keep only about one per core rather than one per request thread
+    private final BlockingQueue<Scratch> scratchPool = new ArrayBlockingQueue<>(Runtime.getRuntime().availableProcessors());
+
+    public void index(Product product) {
+        lock.writeLock().lock();
+        try {
+            add(product);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long productId) {
+        lock.writeLock().lock();
+        try {
+            Integer doc = docByProduct.remove(productId);
+            if (doc != null) {
+                tombstone(doc);
+                maybeCompact();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return liveCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int termCount() {
+        lock.readLock().lock();
+        try {
+            return terms.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the ids of the best matching products, best first.
+     *
+     * @param minPrice inclusive lower bound, or null
+     * @param maxPrice inclusive upper bound, or null
+     */
+    public List<Long> search(String query, BigDecimal minPrice, BigDecimal maxPrice, int limit) {
+        List<String> tokens = distinct(Tokenizer.tokenize(query));
+        if (tokens.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+        long minCents = minPrice != null ? toCents(minPrice, RoundingMode.CEILING) : Long.MIN_VALUE;
+        long maxCents = maxPrice != null ? toCents(maxPrice, RoundingMode.FLOOR) : Long.MAX_VALUE;
+
+        lock.readLock().lock();
+        try {
+            List<List<Expansion>> groups = new ArrayList<>(tokens.size());
+            for (int i = 0; i < tokens.size(); i++) {
+                List<Expansion> expansions = expand(tokens.get(i), i == tokens.size() - 1);
+                if (expansions.isEmpty()) {
+                    return new ArrayList<>();
+                }
+                groups.add(expansions);
+            }
+            // Rarest term first keeps the candidate set small for the rest
+            groups.sort(Comparator.comparingLong(ProductSearchIndex::postingCount));
+
+            Scratch s = scratchPool.poll();
+            if (s == null) {
+                s = new Scratch();
+            }
+            s.ensureCapacity(docCount);
+            try {
+                float avgLength = liveCount > 0 ? (float) totalLength / liveCount : 1f;
+                for (int g = 0; g < groups.size(); g++) {
+                    for (Expansion expansion : groups.get(g)) {
+                        accumulate(s, expansion, g, avgLength, minCents, maxCents);
+                    }
+                }
+                return topK(s, groups.size(), limit);
+            } finally {
+                s.reset();
+                scratchPool.offer(s);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void accumulate(Scratch s, Expansion expansion, int group, float avgLength, long minCents, long maxCents) {
+        PostingList postings = expansion.postings;
+        float idf = (float) Math.log(1 + (liveCount - postings.size + 0.5) / (postings.size + 0.5));
+        if (idf <= 0) {
+            idf = 0.01f;
+        }
+        float weight = expansion.weight * idf;
+        for (int i = 0; i < postings.size; i++) {
+            int doc = postings.docs[i];
+            int matched = s.matched[doc];
+            // Only docs that matched every earlier term (or this one via another expansion) stay candidates
+            if (matched < group || deleted.get(doc)) {
+                continue;
+            }
+            long price = priceCents[doc];
+            if (price < minCents || price > maxCents) {
+                continue;
+            }
+            if (matched == group) {
+                if (group == 0) {
+                    s.touch(doc);
+                }
+                s.matched[doc] = group + 1;
+            }
+            float tf = postings.freqs[i];
+            float norm = K1 * (1 - B + B * docLengths[doc] / avgLength);
+            s.scores[doc] += weight * tf * (K1 + 1) / (tf + norm);
+        }
+    }
+
+    private List<Long> topK(Scratch s, int groups, int limit) {
+        // Bounded min-heap on score; ties go to the older (lower) doc id
+        int[] heap = new int[limit];
+        int heapSize = 0;
+        for (int i = 0; i < s.touchedSize; i++) {
+            int doc = s.touched[i];
+            if (s.matched[doc] != groups) {
+                continue;
+            }
+            if (heapSize < limit) {
+                heap[heapSize] = doc;
+                siftUp(heap, heapSize++, s.scores);
+            } else if (better(doc, heap[0], s.scores)) {
+                heap[0] = doc;
+                siftDown(heap, heapSize, s.scores);
+            }
+        }
+        Long[] ordered = new Long[heapSize];
+        for (int i = heapSize - 1; i >= 0; i--) {
+            ordered[i] = productIds[heap[0]];
+            heap[0] = heap[i];
+            siftDown(heap, i, s.scores);
+        }
+        return new ArrayList<>(Arrays.asList(ordered));
+    }
+
+    private static boolean better(int a, int b, float[] scores) {
+        return scores[a] > scores[b] || (scores[a] == scores[b] && a < b);
+    }
+
+    private static void siftUp(int[] heap, int i, float[] scores) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!better(heap[parent], heap[i], scores)) {
+                break;
+            }
+            swap(heap, i, parent);
+            i = parent;
+        }
+    }
+
+    private static void siftDown(int[] heap, int size, float[] scores) {
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && better(heap[child], heap[child + 1], scores)) {
+                child++;
+            }
+            if (!better(heap[i], heap[child], scores)) {
+                break;
+            }
+            swap(heap, i, child);
+            i = child;
+        }
+    }
+
+    private static void swap(int[] heap, int a, int b) {
+        int tmp = heap[a];
+        heap[a] = heap[b];
+        heap[b] = tmp;
+    }
+
+    private List<Expansion> expand(String token, boolean prefix) {
+        List<Expansion> expansions = new ArrayList<>();
+        PostingList exact = terms.get(token);
+        if (exact != null) {
+            expansions.add(new Expansion(exact, 1f));
+        }
+        if (prefix && token.length() >= 2) {
+            for (Map.Entry<String, PostingList> entry : terms.subMap(token, false, token + Character.MAX_VALUE, false).entrySet()) {
+                if (expansions.size() >= MAX_EXPANSIONS) {
+                    break;
+                }
+                expansions.add(new Expansion(entry.getValue(), PREFIX_WEIGHT));
+            }
+        }
+        if (expansions.isEmpty() && token.length() >= 4) {
+            int maxDistance = token.length() >= 8 ? 2 : 1;
+            // Typos rarely hit the first letter, so only that slice of the dictionary is scanned
+            NavigableMap<String, PostingList> slice = terms.subMap(token.substring(0, 1), true, token.charAt(0) + String.valueOf(Character.MAX_VALUE), false);
+            for (Map.Entry<String, PostingList> entry : slice.entrySet()) {
+                String term = entry.getKey();
+                if (Math.abs(term.length() - token.length()) <= maxDistance && withinDistance(token, term, maxDistance)) {
+                    expansions.add(new Expansion(entry.getValue(), FUZZY_WEIGHT));
+                    if (expansions.size() >= MAX_EXPANSIONS) {
+                        break;
+                    }
+                }
+            }
+        }
+        return expansions;
+    }
+
+    // Optimal string alignment distance (edits plus adjacent transpositions), abandoned once a row exceeds max
+    static boolean withinDistance(String a, String b, int max) {
+        int[] prevPrev = new int[b.length() + 1];
+        int[] prev = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            prev[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int value = Math.min(Math.min(prev[j] + 1, current[j - 1] + 1), prev[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    value = Math.min(value, prevPrev[j - 2] + 1);
+                }
+                current[j] = value;
+                rowMin = Math.min(rowMin, value);
+            }
+            if (rowMin > max) {
+                return false;
+            }
+            int[] recycled = prevPrev;
+            prevPrev = prev;
+            prev = current;
+            current = recycled;
+        }
+        return prev[b.length()] <= max;
+    }
+
+    private static long postingCount(List<Expansion> expansions) {
+        long total = 0;
+        for (Expansion expansion : expansions) {
+            total += expansion.postings.size;
+        }
+        return total;
+    }
+
+    // Used by the bulk load: a save that raced with it has already indexed the newer version
+    public void indexIfAbsent(Product product) {
+        lock.writeLock().lock();
+        try {
+            if (!docByProduct.containsKey(product.getId())) {
+                add(product);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void add(Product product) {
+        Integer previous = docByProduct.get(product.getId());
+        if (previous != null) {
+            tombstone(previous);
+        }
+        int doc = docCount++;
+        if (doc == productIds.length) {
+            int capacity = productIds.length * 2;
+            productIds = Arrays.copyOf(productIds, capacity);
+            priceCents = Arrays.copyOf(priceCents, capacity);
+            docLengths = Arrays.copyOf(docLengths, capacity);
+        }
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String token : Tokenizer.tokenize(product.getName())) {
+            frequencies.merge(token, NAME_WEIGHT, Integer::sum);
+        }
+        for (String token : Tokenizer.tokenize(product.getDescription())) {
+            frequencies.merge(token, 1, Integer::sum);
+        }
+        int length = 0;
+        for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+            terms.computeIfAbsent(entry.getKey(), t -> new PostingList()).add(doc, entry.getValue());
+            length += entry.getValue();
+        }
+        productIds[doc] = product.getId();
+        priceCents[doc] = product.getPrice() != null ? toCents(product.getPrice(), RoundingMode.HALF_UP) : 0;
+        docLengths[doc] = length;
+        docByProduct.put(product.getId(), doc);
+        liveCount++;
+        totalLength += length;
+        if (previous != null) {
+            maybeCompact();
+        }
+    }
+
+    private void tombstone(int doc) {
+        deleted.set(doc);
+        liveCount--;
+        totalLength -= docLengths[doc];
+    }
+
+    private void maybeCompact() {
+        int dead = docCount - liveCount;
+        if (dead < 1024 || dead < docCount / 4) {
+            return;
+        }
+        int[] newIds = new int[docCount];
+        int next = 0;
+        for (int doc = 0; doc < docCount; doc++) {
+            if (deleted.get(doc)) {
+                newIds[doc] = -1;
+            } else {
+                newIds[doc] = next;
+                productIds[next] = productIds[doc];
+                priceCents[next] = priceCents[doc];
+                docLengths[next] = docLengths[doc];
+                docByProduct.put(productIds[next], next);
+                next++;
+            }
+        }
+        terms.values().removeIf(postings -> {
+            postings.remap(newIds);
+            return postings.size == 0;
+        });
+        deleted.clear();
+        docCount = next;
+    }
+
+    private static long toCents(BigDecimal amount, RoundingMode rounding) {
+        return amount.movePointRight(2).setScale(0, rounding).longValue();
+    }
+
+    private static List<String> distinct(List<String> tokens) {
+        List<String> unique = new ArrayList<>(tokens.size());
+        for (String token : tokens) {
+            if (!unique.contains(token)) {
+                unique.add(token);
+            }
+        }
+        return unique;
+    }
+
+    private static final class Expansion {
+        private final PostingList postings;
+        private final float weight;
+
+        private Expansion(PostingList postings, float weight) {
+            this.postings = postings;
+            this.weight = weight;
+        }
+    }
+
+    // Accumulators sized to the doc count; only touched slots are cleared after a query
+    private static final class Scratch {
+        private float[] scores = new float[0];
+        private int[] matched = new int[0];
+        private int[] touched = new int[256];
+        private int touchedSize;
+
+        void ensureCapacity(int docs) {
+            if (scores.length < docs) {
+                int capacity = Math.max(docs, scores.length * 2);
+                scores = new float[capacity];
+                matched = new int[capacity];
+            }
+        }
+
+        void touch(int doc) {
+            if (touchedSize == touched.length) {
+                touched = Arrays.copyOf(touched, touchedSize * 2);
+            }
+            touched[touchedSize++] = doc;
+        }
+
+        void reset() {
+            for (int i = 0; i < touchedSize; i++) {
+                scores[touched[i]] = 0;
+                matched[touched[i]] = 0;
+            }
+            touchedSize = 0;
+        }
+    }
+}
@@ -0,0 +1,327 @@
+package com.ecommerce.search;
+
+import com.ecommerce.dto.ProductSuggestion;
+import com.ecommerce.model.Product;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Type-ahead over product names. A name is inserted once from each word start,
+ * so "mou" finds "Wireless Mouse". Every trie node keeps its best products
+ * (by stock) precomputed, so a lookup is a walk of the prefix plus a copy of
+ * at most {@link #MAX_SUGGESTIONS} entries.
+ *
+ * Nodes live in parallel primitive arrays (first child / next sibling) rather
+ * than one object per node. Nodes are never freed; a rename only leaves a few
+ * empty ones behind.
+ */
+@Component
+public class ProductSuggester {
+    public static final int MAX_SUGGESTIONS = 10;
+    // Headroom so most removals don't have to rescan a subtree to refill a node
+    private static final int KEEP = 2 * MAX_SUGGESTIONS;
+    private static final int MAX_DEPTH = 32;
+    private static final int[] NONE = new int[0];
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private char[] labels = new char[1024];
+    private int[] firstChild = new int[1024];
+    private int[] nextSibling = new int[1024];
+    private int[][] top = new int[1024][];
+    private int[][] ends = new int[1024][];
+    private int nodeCount;
+
+    private final Map<Long, Integer> slotByProduct = new HashMap<>();
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+    private long[] productIds = new long[1024];
+    private String[] names = new String[1024];
+    private long[] scores = new long[1024];
+    private int slotCount;
+
+    private final Comparator<Integer> bestFirst = (a, b) -> better(a, b) ? -1 : better(b, a) ? 1 : 0;
+
+    public ProductSuggester() {
+        newNode('\0');
+    }
+
+    public List<ProductSuggestion> suggest(String prefix, int limit) {
+        List<ProductSuggestion> suggestions = new ArrayList<>();
+        String key = normalize(prefix);
+        if (key.isEmpty()) {
+            return suggestions;
+        }
+        lock.readLock().lock();
+        try {
+            int node = 0;
+            for (int i = 0; i < key.length() && i < MAX_DEPTH && node >= 0; i++) {
+                node = child(node, key.charAt(i));
+            }
+            if (node < 0) {
+                return suggestions;
+            }
+            int[] best = top[node];
+            for (int i = 0; i < best.length && i < Math.min(limit, MAX_SUGGESTIONS); i++) {
+                suggestions.add(new ProductSuggestion(productIds[best[i]], names[best[i]]));
+            }
+            return suggestions;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void add(Product product) {
+        lock.writeLock().lock();
+        try {
+            long score = product.getStock() != null ? product.getStock() : 0;
+            Integer slot = slotByProduct.get(product.getId());
+            if (slot != null) {
+                if (names[slot].equals(product.getName()) && scores[slot] == score) {
+                    return;
+                }
+                unlink(slot);
+            } else {
+                slot = allocateSlot(product.getId());
+            }
+            names[slot] = product.getName();
+            scores[slot] = score;
+            link(slot);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void addIfAbsent(Product product) {
+        lock.writeLock().lock();
+        try {
+            if (!slotByProduct.containsKey(product.getId())) {
+                add(product);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long productId) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slotByProduct.remove(productId);
+            if (slot != null) {
+                unlink(slot);
+                names[slot] = null;
+                freeSlots.push(slot);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void link(int slot) {
+        for (String key : keys(names[slot])) {
+            int node = 0;
+            for (int i = 0; i < key.length(); i++) {
+                int next = child(node, key.charAt(i));
+                if (next < 0) {
+                    next = newNode(key.charAt(i));
+                    nextSibling[next] = firstChild[node];
+                    firstChild[node] = next;
+                }
+                node = next;
+                offer(node, slot);
+            }
+            ends[node] = append(ends[node], slot);
+        }
+    }
+
+    private void unlink(int slot) {
+        // Drop every end marker first so a refill below can't pick the slot up again
+        Set<String> keys = keys(names[slot]);
+        List<int[]> paths = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            int node = 0;
+            int[] path = new int[key.length()];
+            for (int i = 0; i < key.length(); i++) {
+                node = child(node, key.charAt(i));
+                path[i] = node;
+            }
+            ends[node] = without(ends[node], slot);
+            paths.add(path);
+        }
+        for (int[] path : paths) {
+            for (int node : path) {
+                if (!contains(top[node], slot)) {
+                    continue;
+                }
+                top[node] = without(top[node], slot);
+                if (top[node].length < MAX_SUGGESTIONS) {
+                    refill(node);
+                }
+            }
+        }
+    }
+
+    // Inserts slot into the node's best-first list, keeping at most KEEP entries
+    private void offer(int node, int slot) {
+        int[] best = top[node];
+        if (contains(best, slot)) {
+            return;
+        }
+        int position = 0;
+        while (position < best.length && better(best[position], slot)) {
+            position++;
+        }
+        if (position >= KEEP) {
+            return;
+        }
+        int[] updated = new int[Math.min(best.length + 1, KEEP)];
+        System.arraycopy(best, 0, updated, 0, position);
+        updated[position] = slot;
+        System.arraycopy(best, position, updated, position + 1, updated.length - position - 1);
+        top[node] = updated;
+    }
+
+    // Recomputes a node's list from every name ending in its subtree
+    private void refill(int node) {
+        Set<Integer> slots = new LinkedHashSet<>();
+        Deque<Integer> pending = new ArrayDeque<>();
+        pending.push(node);
+        while (!pending.isEmpty()) {
+            int current = pending.pop();
+            if (ends[current] != null) {
+                for (int slot : ends[current]) {
+                    slots.add(slot);
+                }
+            }
+            for (int c = firstChild[current]; c >= 0; c = nextSibling[c]) {
+                pending.push(c);
+            }
+        }
+        List<Integer> ordered = new ArrayList<>(slots);
+        ordered.sort(bestFirst);
+        int[] best = new int[Math.min(ordered.size(), KEEP)];
+        for (int i = 0; i < best.length; i++) {
+            best[i] = ordered.get(i);
+        }
+        top[node] = best;
+    }
+
+    private boolean better(int a, int b) {
+        if (scores[a] != scores[b]) {
+            return scores[a] > scores[b];
+        }
+        int byName = names[a].compareToIgnoreCase(names[b]);
+        if (byName != 0) {
+            return byName < 0;
+        }
+        return productIds[a] < productIds[b];
+    }
+
+    private int child(int node, char label) {
+        for (int c = firstChild[node]; c >= 0; c = nextSibling[c]) {
+            if (labels[c] == label) {
+                return c;
+            }
+        }
+        return -1;
+    }
+
+    private int newNode(char label) {
+        if (nodeCount == labels.length) {
+            int capacity = labels.length * 2;
+            labels = Arrays.copyOf(labels, capacity);
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            nextSibling = Arrays.copyOf(nextSibling, capacity);
+            top = Arrays.copyOf(top, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+        }
+        int node = nodeCount++;
+        labels[node] = label;
+        firstChild[node] = -1;
+        nextSibling[node] = -1;
+        top[node] = NONE;
+        return node;
+    }
+
+    private int allocateSlot(Long productId) {
+        Integer slot = freeSlots.poll();
+        if (slot == null) {
+            if (slotCount == productIds.length) {
+                int capacity = productIds.length * 2;
+                productIds = Arrays.copyOf(productIds, capacity);
+                names = Arrays.copyOf(names, capacity);
+                scores = Arrays.copyOf(scores, capacity);
+            }
+            slot = slotCount++;
+        }
+        productIds[slot] = productId;
+        slotByProduct.put(productId, slot);
+        return slot;
+    }
+
+    // One key per word start: "wireless mouse" and "mouse", each cut to MAX_DEPTH characters
+    private static Set<String> keys(String name) {
+        Set<String> keys = new LinkedHashSet<>();
+        List<String> words = Tokenizer.tokenize(name);
+        for (int i = 0; i < words.size(); i++) {
+            String key = String.join(" ", words.subList(i, words.size()));
+            keys.add(key.length() > MAX_DEPTH ? key.substring(0, MAX_DEPTH) : key);
+        }
+        return keys;
+    }
+
+    private static String normalize(String prefix) {
+        String key = String.join(" ", Tokenizer.tokenize(prefix));
+        // Keep a trailing separator so "wireless " only matches names with a following word
+        if (!key.isEmpty() && prefix != null && !Character.isLetterOrDigit(prefix.charAt(prefix.length() - 1))) {
+            key = key + " ";
+        }
+        return key;
+    }
+
+    private static boolean contains(int[] values, int value) {
+        for (int v : values) {
+            if (v == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int[] append(int[] values, int value) {
+        if (values == null) {
+            return new int[] {value};
+        }
+        if (contains(values, value)) {
+            return values;
+        }
+        int[] updated = Arrays.copyOf(values, values.length + 1);
+        updated[values.length] = value;
+        return updated;
+    }
+
+    private static int[] without(int[] values, int value) {
+        if (values == null || !contains(values, value)) {
+            return values;
+        }
+        int[] updated = new int[values.length - 1];
+        int i = 0;
+        for (int v : values) {
+            if (v != value) {
+                updated[i++] = v;
+            }
+        }
+        return updated;
+    }
+}
@@ -0,0 +1,378 @@
+package com.ecommerce.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Product images served from a plain directory instead of the jar, so they can
+ * go out with sendfile. Images bundled under static/img are extracted there on
+ * startup; an external directory (images.dir) can hold more. Every image gets
+ * a SHA-256 content hash used as its ETag and cache-busting version, plus
+ * resized variants generated once and kept next to it.
+ */
+// Created at startup even with lazy initialization, so extraction and hashing don't land on the first image request
+@Lazy(false)
+@Service
+public class ImageService {
+    private static final Logger logger = LoggerFactory.getLogger(ImageService.class);
+    private static final String BUNDLED_IMAGES = "classpath:static/img/*";
+
+    @Value("${images.dir:${java.io.tmpdir}/ecommerce-images}")
+    private String directory;
+    @Value("${images.variant-widths:320,640}")
+    private int[] variantWidths;
+    @Value("${images.variant-quality:0.82}")
+    private float variantQuality;
+
+    private Path root;
+    private Path variantsDir;
+    private boolean webpSupported;
+    private final Map<String, StoredImage> images = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() throws IOException {
+        root = Paths.get(directory).toAbsolutePath();
+        variantsDir = root.resolve(".variants");
+        Files.createDirectories(variantsDir);
+        // The JDK has no WebP encoder; variants are only produced when an ImageIO plugin provides one
+        webpSupported = ImageIO.getImageWritersByFormatName("webp").hasNext();
+        extractBundled();
+        try (Stream<Path> files = Files.list(root)) {
+            files.filter(Files::isRegularFile).forEach(this::register);
+        }
+        logger.info("Serving {} images from {} (webp variants: {})", images.size(), root, webpSupported);
+    }
+
+    /**
+     * Stores an uploaded image and generates its variants before it becomes visible.
+     * The upload is decoded while it is still a temp file; anything that is not a
+     * readable image of the type its name claims never reaches the served directory.
+     *
+     * @throws IllegalArgumentException if the name or the content is not an acceptable image
+     */
+    public StoredImage store(String name, InputStream content) throws IOException {
+        Path target = resolve(name).orElseThrow(() -> new IllegalArgumentException("Invalid image name"));
+        if (contentTypeOf(name) == null) {
+            throw new IllegalArgumentException("Unsupported image type");
+        }
+        Path temp = Files.createTempFile(root, ".upload", null);
+        try {
+            Files.copy(content, temp, StandardCopyOption.REPLACE_EXISTING);
+            BufferedImage source = decode(temp, name);
+            StoredImage image = describe(name, temp, target, source);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            images.put(name, image);
+            return image;
+        } finally {
+            // Only still there if the upload was rejected or the move failed
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    public Optional<StoredImage> find(String name) {
+        return Optional.ofNullable(images.get(name));
+    }
+
+    /**
+     * Picks the smallest variant at least {@code width} wide (the original if none
+     * is), preferring WebP when the client accepts it and one exists.
+     */
+    public ImageFile select(StoredImage image, Integer width, boolean acceptsWebp) {
+        ImageFile fallback = acceptsWebp && image.getOriginalWebp() != null ? image.getOriginalWebp() : image.getOriginal();
+        if (width == null) {
+            return fallback;
+        }
+        Variant best = null;
+        for (Variant variant : image.getVariants()) {
+            if (variant.width < width || (variant.file.isWebp() && !acceptsWebp)) {
+                continue;
+            }
+            if (best == null || variant.width < best.width || (variant.width == best.width && variant.file.isWebp())) {
+                best = variant;
+            }
+        }
+        return best != null ? best.file : fallback;
+    }
+
+    private void extractBundled() throws IOException {
+        Resource[] bundled = new PathMatchingResourcePatternResolver().getResources(BUNDLED_IMAGES);
+        for (Resource resource : bundled) {
+            String name = resource.getFilename();
+            Optional<Path> target = resolve(name);
+            if (!target.isPresent() || (Files.exists(target.get()) && Files.size(target.get()) == resource.contentLength())) {
+                continue;
+            }
+            try (InputStream in = resource.getInputStream()) {
+                Files.copy(in, target.get(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+
+    private StoredImage register(Path file) {
+        String name = file.getFileName().toString();
+        if (name.startsWith(".") || contentTypeOf(name) == null) {
+            return null;
+        }
+        try {
+            StoredImage image = describe(name, file, file, ImageIO.read(file.toFile()));
+            images.put(name, image);
+            return image;
+        } catch (IOException e) {
+            logger.warn("Skipping image {}: {}", name, e.getMessage());
+            return null;
+        }
+    }
+
+    // Hashes and resizes the bytes in content, recording them under target, where they will be served from
+    private StoredImage describe(String name, Path content, Path target, BufferedImage source) throws IOException {
+        String hash = sha256(content);
+        String contentType = contentTypeOf(name);
+        ImageFile original = new ImageFile(target, "\"" + hash + "\"", Files.size(content), contentType);
+        List<Variant> variants = new ArrayList<>();
+        ImageFile originalWebp = null;
+        if (source != null) {
+            String format = name.substring(name.lastIndexOf('.') + 1).toLowerCase();
+            for (int width : variantWidths) {
+                if (width < source.getWidth()) {
+                    variants.add(variant(source, hash, width, format, contentType));
+                    if (webpSupported) {
+                        variants.add(variant(source, hash, width, "webp", "image/webp"));
+                    }
+                }
+            }
+            if (webpSupported) {
+                originalWebp = variant(source, hash, source.getWidth(), "webp", "image/webp").file;
+            }
+        }
+        return new StoredImage(name, hash, original, originalWebp, variants);
+    }
+
+    // The decoder is picked from the content, so it must also agree with the type the name claims
+    private static BufferedImage decode(Path file, String name) throws IOException {
+        String contentType = contentTypeOf(name);
+        try (ImageInputStream in = ImageIO.createImageInputStream(file.toFile())) {
+            Iterator<ImageReader> readers = in != null ? ImageIO.getImageReaders(in) : Collections.emptyIterator();
+            while (readers.hasNext()) {
+                ImageReader reader = readers.next();
+                try {
+                    if (Arrays.asList(reader.getOriginatingProvider().getMIMETypes()).contains(contentType)) {
+                        reader.setInput(in, true, true);
+                        return reader.read(0);
+                    }
+                } catch (IOException e) {
+                    // Claims the right format but does not decode
+                    break;
+                } finally {
+                    reader.dispose();
+                }
+            }
+        }
+        throw new IllegalArgumentException("Not a readable " + contentType + " image");
+    }
+
+    // Variant files are keyed by the source hash, so a replaced image never picks up stale variants
+    private Variant variant(BufferedImage source, String hash, int width, String format, String contentType) throws IOException {
+        Path target = variantsDir.resolve(hash + "-w" + width + "." + format);
+        if (!Files.exists(target)) {
+            int height = Math.max(1, Math.round(source.getHeight() * (width / (float) source.getWidth())));
+            int type = "jpg".equals(format) || "jpeg".equals(format) ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+            BufferedImage scaled = new BufferedImage(width, height, type);
+            Graphics2D g = scaled.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                g.drawImage(source, 0, 0, width, height, null);
+            } finally {
+                g.dispose();
+            }
+            Path temp = Files.createTempFile(variantsDir, ".variant", null);
+            write(scaled, format, temp);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        String etag = "\"" + hash + "-w" + width + "." + format + "\"";
+        return new Variant(width, new ImageFile(target, etag, Files.size(target), contentType));
+    }
+
+    private void write(BufferedImage image, String format, Path target) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(format);
+        if (!writers.hasNext()) {
+            throw new IOException("No ImageIO writer for " + format);
+        }
+        ImageWriter writer = writers.next();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(target.toFile())) {
+            writer.setOutput(out);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (param.canWriteCompressed()) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                if (param.getCompressionType() == null && param.getCompressionTypes() != null) {
+                    param.setCompressionType(param.getCompressionTypes()[0]);
+                }
+                param.setCompressionQuality(variantQuality);
+            }
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private Optional<Path> resolve(String name) {
+        if (name == null || name.isEmpty() || name.startsWith(".") || name.contains("/") || name.contains("\\")) {
+            return Optional.empty();
+        }
+        Path path = root.resolve(name).normalize();
+        return path.getParent().equals(root) ? Optional.of(path) : Optional.empty();
+    }
+
+    private static String contentTypeOf(String name) {
+        String lower = name.toLowerCase();
+        if (lower.endsWith(".jpg") || lower.endsWith(".jpeg")) {
+            return "image/jpeg";
+        }
+        if (lower.endsWith(".png")) {
+            return "image/png";
+        }
+        if (lower.endsWith(".gif")) {
+            return "image/gif";
+        }
+        if (lower.endsWith(".webp")) {
+            return "image/webp";
+        }
+        return null;
+    }
+
+    private static String sha256(Path file) throws IOException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            try (InputStream in = Files.newInputStream(file)) {
+                byte[] buffer = new byte[16 * 1024];
+                int read;
+                while ((read = in.read(buffer)) > 0) {
+                    digest.update(buffer, 0, read);
+                }
+            }
+            StringBuilder hex = new StringBuilder();
+            byte[] hash = digest.digest();
+            // 128 bits is plenty to tell image versions apart and keeps URLs short
+            for (int i = 0; i < 16; i++) {
+                hex.append(String.format("%02x", hash[i]));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static final class StoredImage {
+        private final String name;
+        private final String hash;
+        private final ImageFile original;
+        private final ImageFile originalWebp;
+        private final List<Variant> variants;
+
+        StoredImage(String name, String hash, ImageFile original, ImageFile originalWebp, List<Variant> variants) {
+            this.name = name;
+            this.hash = hash;
+            this.original = original;
+            this.originalWebp = originalWebp;
+            this.variants = variants;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getHash() {
+            return hash;
+        }
+
+        public ImageFile getOriginal() {
+            return original;
+        }
+
+        public ImageFile getOriginalWebp() {
+            return originalWebp;
+        }
+
+        public List<Variant> getVariants() {
+            return variants;
+        }
+    }
+
+    public static final class Variant {
+        private final int width;
+        private final ImageFile file;
+
+        Variant(int width, ImageFile file) {
+            this.width = width;
+            this.file = file;
+        }
+    }
+
+    public static final class ImageFile {
+        private final Path path;
+        private final String etag;
+        private final long length;
+        private final String contentType;
+
+        ImageFile(Path path, String etag, long length, String contentType) {
+            this.path = path;
+            this.etag = etag;
+            this.length = length;
+            this.contentType = contentType;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public long getLength() {
+            return length;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        boolean isWebp() {
+            return "image/webp".equals(contentType);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.ecommerce.service;
+
+import io.jsonwebtoken.Claims;
+import java.util.Date;
+
+/**
+ * Immutable view of a verified token. Produced once per token by
+ * {@link JwtService#verify(String)}; reading fields never touches the signature again.
+ */
+public final class JwtClaims {
+    private final String id;
+    private final String subject;
+    private final String role;
+    private final long issuedAt;
+    private final long expiresAt;
+
+    JwtClaims(Claims claims) {
+        this.id = claims.getId();
+        this.subject = claims.getSubject();
+        this.role = claims.get("role", String.class);
+        this.issuedAt = claims.getIssuedAt() != null ? claims.getIssuedAt().getTime() : 0L;
+        this.expiresAt = claims.getExpiration() != null ? claims.getExpiration().getTime() : Long.MAX_VALUE;
+    }
+
+    // jti: identifies this token for revocation; null on tokens issued before it was added
+    public String getId() {
+        return id;
+    }
+    public String getSubject() {
+        return subject;
+    }
+    public String getRole() {
+        return role;
+    }
+    public Date getIssuedAt() {
+        return new Date(issuedAt);
+    }
+    public Date getExpiration() {
+        return new Date(expiresAt);
+    }
+    public boolean isExpired() {
+        return expiresAt <= System.currentTimeMillis();
+    }
+}
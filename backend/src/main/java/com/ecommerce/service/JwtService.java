@@ -1,30 +1,90 @@
 package com.ecommerce.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import java.time.Duration;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
 @Service
 public class JwtService {
     @Value("${JWT_SECRET_KEY:mysecretkey123456}")
     private String SECRET_KEY;
-    private final long EXPIRATION_TIME = 1000 * 60 * 60 * 10; // 10 hours
+    @Value("${security.jwt.verified-cache-size:100000}")
+    private long verifiedCacheSize = 100_000;
+    // Short-lived: clients renew through /api/auth/refresh, and revocation only has to outlive this
+    @Value("${security.jwt.access-ttl:15m}")
+    private Duration accessTtl = Duration.ofMinutes(15);
+
+    // Tokens whose HS256 signature already checked out, keyed by the full token so a
+    // tampered payload or signature can never hit; entries drop out when the token expires
+    private Cache<String, JwtClaims> verifiedTokens;
+
+    @PostConstruct
+    public void init() {
+        verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(verifiedCacheSize)
+                .expireAfter(new Expiry<String, JwtClaims>() {
+                    @Override
+                    public long expireAfterCreate(String token, JwtClaims claims, long currentTime) {
+                        long remaining = claims.getExpiration().getTime() - System.currentTimeMillis();
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, remaining));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String token, JwtClaims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String token, JwtClaims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * Verifies the token once and returns its claims. Repeat calls for a token that
+     * was already verified skip parsing and HMAC entirely until the token expires.
+     *
+     * @throws io.jsonwebtoken.JwtException if the token is malformed, forged or expired
+     */
+    public JwtClaims verify(String token) {
+        JwtClaims claims = verifiedTokens.getIfPresent(token);
+        if (claims == null) {
+            claims = new JwtClaims(extractAllClaims(token));
+            verifiedTokens.put(token, claims);
+        } else if (claims.isExpired()) {
+            // Caffeine expiry is lazy; never serve a token past its exp claim
+            verifiedTokens.invalidate(token);
+            throw new ExpiredJwtException(null, null, "JWT expired");
+        }
+        return claims;
+    }
 
     public String extractUsername(String token) {
-        return extractClaim(token, Claims::getSubject);
+        return verify(token).getSubject();
     }
 
     public Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
+        return verify(token).getExpiration();
     }
 
+    // Full parse on every call; use verify() unless a claim outside JwtClaims is needed
     public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
         final Claims claims = extractAllClaims(token);
         return claimsResolver.apply(claims);
@@ -46,16 +106,21 @@ public class JwtService {
     }
 
     public String extractRole(String token) {
-        final Claims claims = extractAllClaims(token);
-        return claims.get("role", String.class);
+        return verify(token).getRole();
+    }
+
+    public Duration getAccessTtl() {
+        return accessTtl;
     }
 
     private String createToken(Map<String, Object> claims, String subject) {
+        long now = System.currentTimeMillis();
         return Jwts.builder()
                 .setClaims(claims)
+                .setId(UUID.randomUUID().toString())
                 .setSubject(subject)
-                .setIssuedAt(new Date(System.currentTimeMillis()))
-                .setExpiration(new Date(System.currentTimeMillis() + EXPIRATION_TIME))
+                .setIssuedAt(new Date(now))
+                .setExpiration(new Date(now + accessTtl.toMillis()))
                 .signWith(SignatureAlgorithm.HS256, SECRET_KEY)
                 .compact();
     }
@@ -69,4 +134,4 @@ public class JwtService {
     public String generateToken(String username) {
         return generateToken(username, "USER");
     }
-} 
\ No newline at end of file
+}
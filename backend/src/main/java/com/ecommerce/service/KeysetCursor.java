@@ -0,0 +1,53 @@
+package com.ecommerce.service;
+
+import org.springframework.data.domain.Sort;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque continuation token for keyset pagination. It carries the sort it was
+ * issued for, so a token replayed against a different sort is rejected instead
+ * of silently skipping rows.
+ */
+final class KeysetCursor {
+    private final String property;
+    private final Sort.Direction direction;
+    private final long id;
+    private final String key;
+
+    KeysetCursor(String property, Sort.Direction direction, long id, String key) {
+        this.property = property;
+        this.direction = direction;
+        this.id = id;
+        this.key = key;
+    }
+
+    String encode() {
+        String raw = property + "|" + direction.name() + "|" + id + "|" + key;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static KeysetCursor decode(String token, String property, Sort.Direction direction) {
+        String[] parts;
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split("\\|", 4);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+        if (parts.length != 4 || !parts[0].equals(property) || !parts[1].equals(direction.name())) {
+            throw new IllegalArgumentException("Cursor does not match the requested sort");
+        }
+        try {
+            return new KeysetCursor(property, direction, Long.parseLong(parts[2]), parts[3]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+    }
+
+    long getId() {
+        return id;
+    }
+    String getKey() {
+        return key;
+    }
+}
@@ -0,0 +1,178 @@
+package com.ecommerce.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Token buckets for authentication attempts, one per client IP and one per
+ * username: an attempt needs a token from both and is refused (without taking
+ * either) when one is empty. The IP bucket stops a single source from spraying
+ * many accounts; the username bucket stops many sources from guessing one.
+ *
+ * Buckets live in process by default. With auth.rate-limit.store=redis they are
+ * shared by all nodes through an atomic Lua script, falling back to the local
+ * buckets while Redis is unreachable.
+ */
+@Service
+public class LoginRateLimiter {
+    private static final Logger logger = LoggerFactory.getLogger(LoginRateLimiter.class);
+    private static final String KEY_PREFIX = "auth:bucket:";
+    // KEYS: buckets; ARGV: now (ms), then capacity and refill period (ms) per bucket. Returns 0 or ms to wait.
+    private static final RedisScript<Long> TAKE_SCRIPT = new DefaultRedisScript<>(
+            "local now = tonumber(ARGV[1])\n"
+            + "local wait = 0\n"
+            + "local tokens = {}\n"
+            + "for i, key in ipairs(KEYS) do\n"
+            + "  local capacity = tonumber(ARGV[i * 2])\n"
+            + "  local period = tonumber(ARGV[i * 2 + 1])\n"
+            + "  local state = redis.call('HMGET', key, 't', 'ts')\n"
+            + "  local t = tonumber(state[1]) or capacity\n"
+            + "  local ts = tonumber(state[2]) or now\n"
+            + "  t = math.min(capacity, t + math.max(0, now - ts) / period)\n"
+            + "  tokens[i] = t\n"
+            + "  if t < 1 then wait = math.max(wait, math.ceil((1 - t) * period)) end\n"
+            + "end\n"
+            + "if wait > 0 then return wait end\n"
+            + "for i, key in ipairs(KEYS) do\n"
+            + "  local capacity = tonumber(ARGV[i * 2])\n"
+            + "  local period = tonumber(ARGV[i * 2 + 1])\n"
+            + "  redis.call('HSET', key, 't', tostring(tokens[i] - 1), 'ts', ARGV[1])\n"
+            + "  redis.call('PEXPIRE', key, math.ceil(capacity * period))\n"
+            + "end\n"
+            + "return 0\n",
+            Long.class);
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Value("${auth.rate-limit.store:local}")
+    private String store;
+    @Value("${auth.rate-limit.ip.capacity:20}")
+    private int ipCapacity;
+    @Value("${auth.rate-limit.ip.refill-period:3s}")
+    private Duration ipRefillPeriod;
+    @Value("${auth.rate-limit.username.capacity:5}")
+    private int usernameCapacity;
+    @Value("${auth.rate-limit.username.refill-period:30s}")
+    private Duration usernameRefillPeriod;
+    @Value("${auth.rate-limit.max-keys:100000}")
+    private long maxKeys;
+
+    private Cache<String, TokenBucket> buckets;
+
+    @PostConstruct
+    public void init() {
+        // An idle bucket is full again after capacity * period, so it can be dropped then
+        Duration idle = max(ipRefillPeriod.multipliedBy(ipCapacity), usernameRefillPeriod.multipliedBy(usernameCapacity));
+        buckets = Caffeine.newBuilder().maximumSize(maxKeys).expireAfterAccess(idle).build();
+    }
+
+    /**
+     * Takes a token for this attempt. Returns 0 when it may proceed, otherwise
+     * how many milliseconds until it would be allowed.
+     */
+    public long tryAcquire(String clientIp, String username) {
+        List<Limit> limits = new ArrayList<>(2);
+        limits.add(new Limit("ip:" + clientIp, ipCapacity, ipRefillPeriod.toMillis()));
+        if (username != null && !username.trim().isEmpty()) {
+            limits.add(new Limit("user:" + username.trim().toLowerCase(Locale.ROOT), usernameCapacity, usernameRefillPeriod.toMillis()));
+        }
+        if ("redis".equals(store)) {
+            try {
+                return tryAcquireShared(limits);
+            } catch (DataAccessException e) {
+                logger.warn("Redis unavailable, rate limiting logins locally: {}", e.getMessage());
+            }
+        }
+        return tryAcquireLocal(limits);
+    }
+
+    private long tryAcquireShared(List<Limit> limits) {
+        List<String> keys = new ArrayList<>(limits.size());
+        List<String> args = new ArrayList<>(1 + limits.size() * 2);
+        args.add(Long.toString(System.currentTimeMillis()));
+        for (Limit limit : limits) {
+            keys.add(KEY_PREFIX + limit.key);
+            args.add(Integer.toString(limit.capacity));
+            args.add(Long.toString(limit.periodMillis));
+        }
+        Long wait = redisTemplate.execute(TAKE_SCRIPT, keys, args.toArray());
+        return wait != null ? wait : 0;
+    }
+
+    private long tryAcquireLocal(List<Limit> limits) {
+        long now = System.nanoTime();
+        for (int i = 0; i < limits.size(); i++) {
+            Limit limit = limits.get(i);
+            TokenBucket bucket = buckets.get(limit.key, key -> new TokenBucket(limit.capacity, now));
+            long wait = bucket.tryTake(now, limit.capacity, limit.periodMillis);
+            if (wait > 0) {
+                // Give back what the earlier buckets handed out; the attempt isn't happening
+                for (int j = 0; j < i; j++) {
+                    TokenBucket taken = buckets.getIfPresent(limits.get(j).key);
+                    if (taken != null) {
+                        taken.refund(limits.get(j).capacity);
+                    }
+                }
+                return wait;
+            }
+        }
+        return 0;
+    }
+
+    private static Duration max(Duration a, Duration b) {
+        return a.compareTo(b) >= 0 ? a : b;
+    }
+
+    private static final class Limit {
+        private final String key;
+        private final int capacity;
+        private final long periodMillis;
+
+        Limit(String key, int capacity, long periodMillis) {
+            this.key = key;
+            this.capacity = capacity;
+            this.periodMillis = periodMillis;
+        }
+    }
+
+    private static final class TokenBucket {
+        private double tokens;
+        private long refilledAt;
+
+        TokenBucket(int capacity, long now) {
+            this.tokens = capacity;
+            this.refilledAt = now;
+        }
+
+        synchronized long tryTake(long now, int capacity, long periodMillis) {
+            double periodNanos = periodMillis * 1_000_000.0;
+            tokens = Math.min(capacity, tokens + (now - refilledAt) / periodNanos);
+            refilledAt = now;
+            if (tokens < 1) {
+                return (long) Math.ceil((1 - tokens) * periodMillis);
+            }
+            tokens -= 1;
+            return 0;
+        }
+
+        synchronized void refund(int capacity) {
+            tokens = Math.min(capacity, tokens + 1);
+        }
+    }
+}
@@ -1,21 +1,161 @@
 package com.ecommerce.service;
 
+import com.ecommerce.datasource.ReadYourWrites;
+import com.ecommerce.dto.CursorPage;
+import com.ecommerce.dto.ItemQuantity;
+import com.ecommerce.dto.OrderItemView;
+import com.ecommerce.dto.OrderView;
 import com.ecommerce.model.Order;
+import com.ecommerce.model.OrderItem;
+import com.ecommerce.model.Product;
+import com.ecommerce.model.User;
+import com.ecommerce.report.RollupRecorder;
+import com.ecommerce.repository.KeysetSpecifications;
 import com.ecommerce.repository.OrderRepository;
+import com.ecommerce.repository.ProductRepository;
+import com.ecommerce.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class OrderService {
+    private static final String SORT_PROPERTY = "orderDate";
+    private static final int EXPORT_CHUNK = 100;
+
     @Autowired
     private OrderRepository orderRepository;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private StockReservationService reservationService;
+    @Autowired
+    private RollupRecorder rollupRecorder;
+    @Autowired
+    private ReadYourWrites readYourWrites;
 
+    @Transactional(readOnly = true)
     public List<Order> findAll() {
         return orderRepository.findAll();
     }
 
+    /**
+     * Every order with its items, in id order, without materialising the list: orders
+     * come from a DB cursor and items are fetched with one IN query per chunk.
+     */
+    @Transactional(readOnly = true)
+    public void forEachOrder(Consumer<OrderView> consumer) {
+        try (Stream<OrderView> rows = orderRepository.streamAllViews()) {
+            Iterator<OrderView> iterator = rows.iterator();
+            Map<Long, OrderView> chunk = new LinkedHashMap<>();
+            while (iterator.hasNext()) {
+                OrderView order = iterator.next();
+                chunk.put(order.getId(), order);
+                if (chunk.size() == EXPORT_CHUNK || !iterator.hasNext()) {
+                    for (OrderItemView item : orderRepository.findItemViews(new ArrayList<>(chunk.keySet()))) {
+                        chunk.get(item.getOrderId()).getItems().add(item);
+                    }
+                    chunk.values().forEach(consumer);
+                    chunk.clear();
+                }
+            }
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<Order> findById(Long id) {
+        return orderRepository.findById(id);
+    }
+
+    // Raw save (admin edits): the report rollups move the order from its old buckets to its new ones
     public Order save(Order order) {
-        return orderRepository.save(order);
+        OrderView before = order.getId() != null ? rollupRecorder.snapshot(order.getId()).orElse(null) : null;
+        Order saved = orderRepository.save(order);
+        OrderView after = rollupRecorder.snapshot(saved.getId()).orElse(null);
+        rollupRecorder.orderChanged(before, after);
+        if (after != null) {
+            readYourWrites.markWritten(after.getUsername());
+        }
+        return saved;
+    }
+
+    /**
+     * Reserves stock and writes the order with its items in one transaction; if any
+     * step fails nothing is reserved or written. Prices come from the catalog, never
+     * from the client.
+     *
+     * @throws InsufficientStockException if any line cannot be reserved
+     */
+    @Transactional
+    public Order checkout(String username, List<ItemQuantity> items) {
+        User user = userRepository.findByUsername(username)
+                .orElseThrow(() -> new IllegalArgumentException("Unknown user " + username));
+        String reservation = reservationService.reserve(username, items);
+        Map<Long, Integer> lines = ItemQuantity.merge(items);
+        Map<Long, Product> products = productRepository.findAllById(lines.keySet()).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+
+        Order order = new Order();
+        order.setUser(user);
+        order.setOrderDate(LocalDateTime.now());
+        order.setStatus("PENDING");
+        order.setReservationReference(reservation);
+        BigDecimal total = BigDecimal.ZERO;
+        for (Map.Entry<Long, Integer> line : lines.entrySet()) {
+            Product product = products.get(line.getKey());
+            OrderItem item = new OrderItem();
+            item.setProductId(product.getId());
+            item.setProductName(product.getName());
+            item.setUnitPrice(product.getPrice());
+            item.setQuantity(line.getValue());
+            order.addItem(item);
+            total = total.add(product.getPrice().multiply(BigDecimal.valueOf(line.getValue())));
+        }
+        order.setTotalAmount(total);
+        // Items cascade from the order and are flushed as one JDBC batch
+        Order saved = orderRepository.save(order);
+        rollupRecorder.orderCreated(saved);
+        readYourWrites.markWritten(username);
+        return saved;
+    }
+
+    // Newest first; (orderDate, id) is unique so new orders never shift pages a client is already walking
+    @Transactional(readOnly = true)
+    public CursorPage<Order> scroll(String cursor, int size) {
+        Sort.Direction direction = Sort.Direction.DESC;
+        Sort sort = Sort.by(direction, SORT_PROPERTY).and(Sort.by(direction, "id"));
+        int limit = PageSizes.clamp(size);
+        Specification<Order> spec = null;
+        if (cursor != null && !cursor.isEmpty()) {
+            KeysetCursor after = KeysetCursor.decode(cursor, SORT_PROPERTY, direction);
+            spec = KeysetSpecifications.after(SORT_PROPERTY, direction, parseOrderDate(after.getKey()), after.getId());
+        }
+        List<Order> rows = orderRepository.findKeyset(spec, sort, limit + 1);
+        return CursorPage.of(rows, limit, last -> new KeysetCursor(SORT_PROPERTY, direction, last.getId(), last.getOrderDate().toString()).encode());
+    }
+
+    private static LocalDateTime parseOrderDate(String key) {
+        try {
+            return LocalDateTime.parse(key);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Malformed cursor");
+        }
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,16 @@
+package com.ecommerce.service;
+
+final class PageSizes {
+    static final int DEFAULT = 20;
+    static final int MAX = 100;
+
+    private PageSizes() {}
+
+    // Page size is always bounded server-side, whatever the client asks for
+    static int clamp(int requested) {
+        if (requested <= 0) {
+            return DEFAULT;
+        }
+        return Math.min(requested, MAX);
+    }
+}
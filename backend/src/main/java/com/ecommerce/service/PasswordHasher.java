@@ -0,0 +1,129 @@
+package com.ecommerce.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * BCrypt hashing on a small dedicated pool. A burst of logins can only occupy
+ * these threads (half the cores by default) and a short queue; beyond that
+ * callers get a RejectedExecutionException right away instead of piling up on
+ * request threads, so the rest of the API keeps its CPU.
+ */
+@Service
+public class PasswordHasher {
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${auth.bcrypt.cost:10}")
+    private int cost;
+    // 0 means half the available cores
+    @Value("${auth.hashing.threads:0}")
+    private int threads;
+    @Value("${auth.hashing.queue-capacity:64}")
+    private int queueCapacity;
+
+    private BCryptPasswordEncoder encoder;
+    private ThreadPoolExecutor executor;
+    // Compared against when the user doesn't exist, so unknown usernames take as long as wrong passwords
+    private String unknownUserHash;
+
+    @PostConstruct
+    public void init() {
+        encoder = new BCryptPasswordEncoder(cost);
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hash-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        unknownUserHash = encoder.encode("unknown-user");
+        Gauge.builder("auth.hashing.queued", executor, pool -> pool.getQueue().size()).register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    public CompletableFuture<String> encode(String rawPassword) {
+        return submit(() -> encoder.encode(rawPassword));
+    }
+
+    /**
+     * Checks a password against a stored hash (null when the user is unknown).
+     * On a match against a hash made with a different cost, the result also
+     * carries a fresh hash at the configured cost for the caller to store.
+     */
+    public CompletableFuture<Verification> verify(String rawPassword, String storedHash) {
+        return submit(() -> {
+            if (storedHash == null) {
+                encoder.matches(rawPassword, unknownUserHash);
+                return new Verification(false, null);
+            }
+            if (!encoder.matches(rawPassword, storedHash)) {
+                return new Verification(false, null);
+            }
+            return new Verification(true, needsRehash(storedHash) ? encoder.encode(rawPassword) : null);
+        });
+    }
+
+    // Unlike upgradeEncoding this also catches a lowered cost, e.g. after tuning for login latency
+    boolean needsRehash(String storedHash) {
+        // $2a$10$... : version, cost, salt and hash
+        if (storedHash.length() < 7 || storedHash.charAt(0) != '$' || storedHash.charAt(3) != '$' || storedHash.charAt(6) != '$') {
+            return false;
+        }
+        try {
+            return Integer.parseInt(storedHash.substring(4, 6)) != cost;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    // A full pool fails the future with RejectedExecutionException rather than throwing at the caller
+    private <T> CompletableFuture<T> submit(Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, executor);
+        } catch (RejectedExecutionException e) {
+            CompletableFuture<T> rejected = new CompletableFuture<>();
+            rejected.completeExceptionally(e);
+            return rejected;
+        }
+    }
+
+    public static final class Verification {
+        private final boolean matched;
+        private final String rehashed;
+
+        Verification(boolean matched, String rehashed) {
+            this.matched = matched;
+            this.rehashed = rehashed;
+        }
+
+        public boolean isMatched() {
+            return matched;
+        }
+
+        // New hash to store, or null when the stored one is current
+        public String getRehashed() {
+            return rehashed;
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.ecommerce.service;
+
+// Thrown instead of queueing a request thread behind a slow or saturated Stripe
+public class PaymentGatewayBusyException extends RuntimeException {
+    public PaymentGatewayBusyException(String message) {
+        super(message);
+    }
+}
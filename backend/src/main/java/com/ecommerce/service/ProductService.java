@@ -1,40 +1,286 @@
 package com.ecommerce.service;
 
+import com.ecommerce.cache.ProductCache;
+import com.ecommerce.datasource.ReadYourWrites;
+import com.ecommerce.dto.CursorPage;
 import com.ecommerce.model.Product;
+import com.ecommerce.repository.KeysetSpecifications;
 import com.ecommerce.repository.ProductRepository;
+import com.ecommerce.repository.ProductSpecifications;
+import com.ecommerce.dto.ProductSuggestion;
+import com.ecommerce.dto.ProductView;
+import com.ecommerce.search.CatalogIndexer;
+import com.ecommerce.search.ProductCatalog;
+import com.ecommerce.search.ProductSearchIndex;
+import com.ecommerce.search.ProductSuggester;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import javax.annotation.PostConstruct;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class ProductService {
     @Autowired
     private ProductRepository productRepository;
+    @Autowired
+    private ProductCache productCache;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private ProductSearchIndex searchIndex;
+    @Autowired
+    private ProductSuggester suggester;
+    @Autowired
+    private CatalogIndexer catalogIndexer;
+    @Autowired
+    private ProductCatalog productCatalog;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private ReadYourWrites readYourWrites;
+
+    private TransactionTemplate readOnlyTransaction;
+
+    @PostConstruct
+    public void init() {
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+    }
 
+    // Cached results are shared between callers and must be treated as read-only
     public List<Product> findAll() {
-        return productRepository.findAll();
+        return productCache.getQuery("all", productListType(), readOnly(productRepository::findAll));
+    }
+
+    public Optional<Product> findById(Long id) {
+        return Optional.ofNullable(productCache.getProduct(id, productType(), readOnly(() -> productRepository.findById(id).orElse(null))));
     }
 
     public Product save(Product product) {
-        return productRepository.save(product);
+        Product saved = productRepository.save(product);
+        productCache.evict(saved.getId());
+        catalogIndexer.index(saved);
+        return saved;
     }
 
     public List<Product> findByName(String name) {
-        return productRepository.findByNameContainingIgnoreCase(name);
+        return productCache.getQuery("name:" + name.toLowerCase(), productListType(),
+                readOnly(() -> productRepository.findByNameContainingIgnoreCase(name)));
     }
 
     public List<Product> findByPriceRange(BigDecimal min, BigDecimal max) {
-        return productRepository.findByPriceBetween(min, max);
+        return productCache.getQuery("price:" + keyPart(min) + ":" + keyPart(max), productListType(),
+                readOnly(() -> productRepository.findByPriceBetween(min, max)));
     }
 
+    @Transactional(readOnly = true)
     public List<Product> findByNameAndPriceRange(String name, BigDecimal min, BigDecimal max) {
         return productRepository.findByNameContainingIgnoreCaseAndPriceBetween(name, min, max);
     }
 
+    @Transactional(readOnly = true)
     public List<Product> findAllSorted(String sortBy, String order) {
         Sort sort = order.equalsIgnoreCase("desc") ? Sort.by(sortBy).descending() : Sort.by(sortBy).ascending();
         return productRepository.findAll(sort);
     }
-} 
\ No newline at end of file
+
+    // Filtering and sorting run in SQL; only matching rows are loaded
+    public List<Product> search(String name, BigDecimal minPrice, BigDecimal maxPrice, String sortBy, String order) {
+        Sort sort = catalogSort(sortBy, order);
+        String key = "search:" + (name != null ? name.toLowerCase() : "") + ":" + keyPart(minPrice) + ":" + keyPart(maxPrice) + ":" + sort;
+        return productCache.getQuery(key, productListType(),
+                readOnly(() -> productRepository.findAll(ProductSpecifications.catalogFilter(name, minPrice, maxPrice), sort)));
+    }
+
+    /**
+     * Relevance-ranked full-text search over name and description, served from the
+     * in-memory index; only the matching rows are then loaded by primary key.
+     * Until the index has finished building it falls back to a SQL name filter.
+     */
+    @Transactional(readOnly = true)
+    public List<Product> searchText(String query, BigDecimal minPrice, BigDecimal maxPrice, int size) {
+        int limit = PageSizes.clamp(size);
+        if (!catalogIndexer.isReady()) {
+            Pageable pageable = PageRequest.of(0, limit, Sort.by("id"));
+            return productRepository.findAll(ProductSpecifications.catalogFilter(query, minPrice, maxPrice), pageable).getContent();
+        }
+        List<Long> ids = searchIndex.search(query, minPrice, maxPrice, limit);
+        Map<Long, Product> byId = productRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        List<Product> ranked = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Product product = byId.get(id);
+            if (product != null) {
+                ranked.add(product);
+            }
+        }
+        return ranked;
+    }
+
+    public List<ProductSuggestion> suggest(String prefix, int limit) {
+        return suggester.suggest(prefix, Math.max(1, Math.min(limit, ProductSuggester.MAX_SUGGESTIONS)));
+    }
+
+    /**
+     * Weak ETag for a product response with these parameters. It combines the
+     * catalog version, which every save moves on every node, with the in-memory
+     * catalog's fingerprint, which also moves with stock, and a SHA-256 digest of
+     * the parameters. Nothing is read from the database, so a request can be
+     * answered 304 before any real work.
+     */
+    public String catalogETag(Object... parameters) {
+        return "W/\"" + Long.toHexString(productCache.getVersion()) + "-" + Long.toHexString(productCatalog.fingerprint())
+                + "-" + parameterDigest(parameters) + "\"";
+    }
+
+    // Length-prefixed, so no two parameter lists share a canonical string; equal prices hash alike at any scale
+    private static String parameterDigest(Object... parameters) {
+        StringBuilder canonical = new StringBuilder();
+        for (Object parameter : parameters) {
+            if (parameter == null) {
+                canonical.append("-;");
+                continue;
+            }
+            String value = parameter instanceof BigDecimal
+                    ? ((BigDecimal) parameter).stripTrailingZeros().toPlainString() : parameter.toString();
+            canonical.append(value.length()).append(':').append(value).append(';');
+        }
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(canonical.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            // 128 bits, as for image hashes: collisions are out of reach and the header stays short
+            for (int i = 0; i < 16; i++) {
+                hex.append(String.format("%02x", hash[i]));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // The body for a single-product response: from the catalog snapshot, so it matches catalogETag's fingerprint
+    // (stock included, which the product cache lets lag). Until the snapshot has loaded, from the product cache
+    public Optional<ProductView> findView(Long id) {
+        if (productCatalog.isReady()) {
+            return productCatalog.get(id);
+        }
+        return findById(id).map(product -> new ProductView(product.getId(), product.getName(), product.getDescription(),
+                product.getPrice(), product.getStock(), product.getImageUrl()));
+    }
+
+    public boolean isCatalogReady() {
+        return productCatalog.isReady();
+    }
+
+    // Same filters and order as search(), answered from the in-memory catalog without touching the database
+    public void forEachCatalogProduct(String name, BigDecimal minPrice, BigDecimal maxPrice, String sortBy, String order,
+                                      Consumer<ProductView> consumer) {
+        productCatalog.forEach(name, minPrice, maxPrice, catalogSortProperty(sortBy), "desc".equalsIgnoreCase(order), consumer);
+    }
+
+    // The whole catalog, row by row from a DB cursor; too big for the query cache or a List
+    @Transactional(readOnly = true)
+    public void forEachProduct(String sortBy, String order, Consumer<ProductView> consumer) {
+        try (Stream<ProductView> rows = productRepository.streamAllViews(catalogSort(sortBy, order))) {
+            rows.forEach(consumer);
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public Page<Product> searchPage(String name, BigDecimal minPrice, BigDecimal maxPrice, String sortBy, String order, int page, int size) {
+        Pageable pageable = PageRequest.of(Math.max(page, 0), PageSizes.clamp(size), catalogSort(sortBy, order));
+        return productRepository.findAll(ProductSpecifications.catalogFilter(name, minPrice, maxPrice), pageable);
+    }
+
+    // Keyset paging: each page is an index range scan from the cursor, so deep pages cost the same as the first
+    @Transactional(readOnly = true)
+    public CursorPage<Product> scroll(String name, BigDecimal minPrice, BigDecimal maxPrice, String sortBy, String order, String cursor, int size) {
+        String property = catalogSortProperty(sortBy);
+        Sort sort = catalogSort(sortBy, order);
+        Sort.Direction direction = sort.getOrderFor(property).getDirection();
+        int limit = PageSizes.clamp(size);
+        Specification<Product> spec = ProductSpecifications.catalogFilter(name, minPrice, maxPrice);
+        if (cursor != null && !cursor.isEmpty()) {
+            KeysetCursor after = KeysetCursor.decode(cursor, property, direction);
+            spec = spec.and(afterProduct(property, direction, after));
+        }
+        List<Product> rows = productRepository.findKeyset(spec, sort, limit + 1);
+        return CursorPage.of(rows, limit, last -> new KeysetCursor(property, direction, last.getId(), sortKeyOf(last, property)).encode());
+    }
+
+    private static Specification<Product> afterProduct(String property, Sort.Direction direction, KeysetCursor after) {
+        if ("price".equals(property)) {
+            return KeysetSpecifications.after(property, direction, new BigDecimal(after.getKey()), after.getId());
+        }
+        return KeysetSpecifications.after(property, direction, after.getKey(), after.getId());
+    }
+
+    private static String sortKeyOf(Product product, String property) {
+        switch (property) {
+            case "price":
+                return product.getPrice().toPlainString();
+            case "name":
+                return product.getName();
+            default:
+                return "";
+        }
+    }
+
+    // Read-only work may go to a replica. Only cache misses open the transaction, so hits still cost no connection.
+    // Shortly after a catalog save misses read the primary instead: what they load is cached for every node,
+    // and a lagging replica may still have the row as it was before the save
+    private <T> Supplier<T> readOnly(Supplier<T> loader) {
+        return () -> readYourWrites.isCatalogSticky() ? loader.get() : readOnlyTransaction.execute(status -> loader.get());
+    }
+
+    private JavaType productType() {
+        return objectMapper.constructType(Product.class);
+    }
+
+    private JavaType productListType() {
+        return objectMapper.getTypeFactory().constructCollectionType(List.class, Product.class);
+    }
+
+    private static String keyPart(BigDecimal value) {
+        return value != null ? value.stripTrailingZeros().toPlainString() : "";
+    }
+
+    // Only indexed columns are sortable; id breaks ties so paging is deterministic
+    static Sort catalogSort(String sortBy, String order) {
+        Sort.Direction direction = "desc".equalsIgnoreCase(order) ? Sort.Direction.DESC : Sort.Direction.ASC;
+        String property = catalogSortProperty(sortBy);
+        if ("id".equals(property)) {
+            return Sort.by(direction, "id");
+        }
+        return Sort.by(direction, property).and(Sort.by(direction, "id"));
+    }
+
+    static String catalogSortProperty(String sortBy) {
+        if ("price".equals(sortBy) || "name".equals(sortBy)) {
+            return sortBy;
+        }
+        return "id";
+    }
+}
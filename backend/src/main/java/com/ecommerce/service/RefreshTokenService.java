@@ -0,0 +1,136 @@
+package com.ecommerce.service;
+
+import com.ecommerce.model.RefreshToken;
+import com.ecommerce.repository.RefreshTokenRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Opaque, rotating refresh tokens. Only a SHA-256 of each token is stored.
+ * Exchanging a token marks it used and issues its successor in the same family;
+ * presenting a used token again means it was copied, so the whole family is
+ * revoked and both the thief and the owner have to log in again.
+ */
+@Service
+public class RefreshTokenService {
+    private static final Logger logger = LoggerFactory.getLogger(RefreshTokenService.class);
+    private static final int TOKEN_BYTES = 32;
+
+    @Autowired
+    private RefreshTokenRepository refreshTokenRepository;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${security.jwt.refresh-ttl:30d}")
+    private Duration refreshTtl;
+
+    private final SecureRandom random = new SecureRandom();
+
+    public String issue(String username) {
+        return create(username, UUID.randomUUID().toString());
+    }
+
+    /**
+     * Exchanges a refresh token for its successor. Returns the username and the new
+     * token, or empty when the token is unknown, expired, revoked or already used.
+     */
+    public Optional<Rotation> rotate(String rawToken) {
+        Optional<RefreshToken> found = refreshTokenRepository.findByTokenHash(hash(rawToken));
+        if (!found.isPresent()) {
+            return Optional.empty();
+        }
+        RefreshToken token = found.get();
+        if (token.isRevoked() || token.getExpiresAt().isBefore(LocalDateTime.now())) {
+            return Optional.empty();
+        }
+        // Marking the old token and storing its successor commit together
+        String successor = transactionTemplate.execute(status -> refreshTokenRepository.markUsed(token.getId()) == 1
+                ? create(token.getUsername(), token.getFamily()) : null);
+        if (successor == null) {
+            logger.warn("Refresh token reuse for user {}, revoking its family", token.getUsername());
+            transactionTemplate.execute(status -> refreshTokenRepository.revokeFamily(token.getFamily()));
+            return Optional.empty();
+        }
+        return Optional.of(new Rotation(token.getUsername(), successor));
+    }
+
+    // Logout: the presented token and everything rotated from the same login
+    @Transactional
+    public void revoke(String rawToken) {
+        refreshTokenRepository.findByTokenHash(hash(rawToken))
+                .ifPresent(token -> refreshTokenRepository.revokeFamily(token.getFamily()));
+    }
+
+    @Transactional
+    public void revokeAll(String username) {
+        refreshTokenRepository.revokeByUsername(username);
+    }
+
+    @Scheduled(fixedDelayString = "${security.jwt.refresh-cleanup-interval-ms:3600000}")
+    @Transactional
+    public void deleteExpired() {
+        refreshTokenRepository.deleteExpired(LocalDateTime.now());
+    }
+
+    private String create(String username, String family) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String rawToken = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        LocalDateTime now = LocalDateTime.now();
+        RefreshToken token = new RefreshToken();
+        token.setTokenHash(hash(rawToken));
+        token.setUsername(username);
+        token.setFamily(family);
+        token.setCreatedAt(now);
+        token.setExpiresAt(now.plus(refreshTtl));
+        refreshTokenRepository.save(token);
+        return rawToken;
+    }
+
+    private static String hash(String rawToken) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(rawToken.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static final class Rotation {
+        private final String username;
+        private final String refreshToken;
+
+        Rotation(String username, String refreshToken) {
+            this.username = username;
+            this.refreshToken = refreshToken;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public String getRefreshToken() {
+            return refreshToken;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.ecommerce.service;
+
+import com.ecommerce.cache.ProductCache;
+import com.ecommerce.dto.ItemQuantity;
+import com.ecommerce.model.StockReservation;
+import com.ecommerce.repository.ProductRepository;
+import com.ecommerce.repository.StockReservationRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Holds stock for a checkout until payment settles. Stock is taken with a
+ * conditional UPDATE, so concurrent buyers of the same SKU can never oversell
+ * and never lose an update; each reservation then moves from PENDING to
+ * CONFIRMED (paid) or RELEASED (cancelled or expired). A failed payment releases
+ * nothing, because the customer can still retry the same PaymentIntent, and a
+ * released line paid for late goes back to CONFIRMED only if its stock can be
+ * taken again. Reservations belong to the user who made them; every lookup by
+ * reference is filtered by owner.
+ *
+ * Product caches are deliberately not evicted here: displayed stock may lag for
+ * a cache TTL, but the reservation itself is always checked against the row.
+ * Every stock change is announced through {@link ProductCache#stockChanged} once
+ * it commits, so each node's in-memory catalog re-reads just those rows.
+ */
+@Service
+public class StockReservationService {
+    private static final Logger logger = LoggerFactory.getLogger(StockReservationService.class);
+    private static final int SWEEP_BATCH_SIZE = 500;
+
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private StockReservationRepository reservationRepository;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private ProductCache productCache;
+
+    @Value("${reservation.ttl:15m}")
+    private Duration reservationTtl;
+
+    /**
+     * Reserves every line or none of them, on behalf of {@code username}.
+     *
+     * @return the reference identifying this reservation
+     * @throws InsufficientStockException if any product lacks stock; nothing is reserved
+     */
+    @Transactional
+    public String reserve(String username, List<ItemQuantity> items) {
+        if (username == null) {
+            throw new IllegalArgumentException("A reservation needs an owner");
+        }
+        String reference = UUID.randomUUID().toString();
+        LocalDateTime now = LocalDateTime.now();
+        List<StockReservation> reservations = new ArrayList<>();
+        Map<Long, Integer> lines = ItemQuantity.merge(items);
+        // Ascending product order keeps lock acquisition consistent across checkouts, so they cannot deadlock
+        for (Map.Entry<Long, Integer> line : lines.entrySet()) {
+            if (productRepository.decrementStock(line.getKey(), line.getValue()) == 0) {
+                throw new InsufficientStockException(line.getKey());
+            }
+            StockReservation reservation = new StockReservation();
+            reservation.setReference(reference);
+            reservation.setUsername(username);
+            reservation.setProductId(line.getKey());
+            reservation.setQuantity(line.getValue());
+            reservation.setStatus(StockReservation.PENDING);
+            reservation.setCreatedAt(now);
+            reservation.setExpiresAt(now.plus(reservationTtl));
+            reservations.add(reservation);
+        }
+        reservationRepository.saveAll(reservations);
+        productCache.stockChanged(lines.keySet());
+        return reference;
+    }
+
+    public boolean isHeldBy(String reference, String username) {
+        return !owned(reference, username).isEmpty();
+    }
+
+    public LocalDateTime expiresAt(String reference, String username) {
+        return owned(reference, username).stream()
+                .map(StockReservation::getExpiresAt)
+                .min(LocalDateTime::compareTo)
+                .orElse(null);
+    }
+
+    /**
+     * Payment succeeded: the stock is sold and the reservation can no longer expire.
+     * Lines already released (the reservation expired before the customer paid) are
+     * taken from stock again with the same conditional UPDATE. If any of them has sold
+     * out meanwhile, every line is put back and false is returned.
+     *
+     * @return whether all of the reservation's stock is now held for the payment
+     */
+    @Transactional
+    public boolean confirm(String reference, String username) {
+        List<StockReservation> lines = owned(reference, username);
+        if (lines.isEmpty()) {
+            return false;
+        }
+        List<StockReservation> confirmed = new ArrayList<>();
+        Set<Long> retaken = new TreeSet<>();
+        for (StockReservation line : lines) {
+            if (reservationRepository.transition(line.getId(), StockReservation.PENDING, StockReservation.CONFIRMED) == 1) {
+                confirmed.add(line);
+            } else if (reservationRepository.transition(line.getId(), StockReservation.RELEASED, StockReservation.CONFIRMED) == 1) {
+                if (productRepository.decrementStock(line.getProductId(), line.getQuantity()) == 0) {
+                    logger.warn("Reservation {} was paid for after product {} sold out", reference, line.getProductId());
+                    reservationRepository.transition(line.getId(), StockReservation.CONFIRMED, StockReservation.RELEASED);
+                    confirmed.forEach(this::unconfirm);
+                    productCache.stockChanged(productIds(confirmed));
+                    return false;
+                }
+                confirmed.add(line);
+                retaken.add(line.getProductId());
+            }
+            // Otherwise an earlier delivery of the same payment already confirmed it
+        }
+        productCache.stockChanged(retaken);
+        return true;
+    }
+
+    // Checkout was cancelled or abandoned: put still-pending stock back
+    @Transactional
+    public int release(String reference, String username) {
+        List<StockReservation> released = new ArrayList<>();
+        for (StockReservation reservation : owned(reference, username)) {
+            if (releaseOne(reservation) == 1) {
+                released.add(reservation);
+            }
+        }
+        productCache.stockChanged(productIds(released));
+        return released.size();
+    }
+
+    @Scheduled(fixedDelayString = "${reservation.sweep-interval-ms:30000}")
+    public void releaseExpired() {
+        List<StockReservation> expired;
+        int released = 0;
+        do {
+            expired = reservationRepository.findByStatusAndExpiresAtBefore(
+                    StockReservation.PENDING, LocalDateTime.now(), PageRequest.of(0, SWEEP_BATCH_SIZE));
+            List<StockReservation> batch = new ArrayList<>();
+            for (StockReservation reservation : expired) {
+                // One short transaction per reservation so the sweep never holds many product row locks at once
+                Integer result = transactionTemplate.execute(status -> releaseOne(reservation));
+                if (result != null && result == 1) {
+                    batch.add(reservation);
+                }
+            }
+            // Committed already; one announcement per batch rather than per reservation
+            productCache.stockChanged(productIds(batch));
+            released += batch.size();
+        } while (expired.size() == SWEEP_BATCH_SIZE);
+        if (released > 0) {
+            logger.info("Released {} expired stock reservations", released);
+        }
+    }
+
+    private int releaseOne(StockReservation reservation) {
+        if (reservationRepository.transition(reservation.getId(), StockReservation.PENDING, StockReservation.RELEASED) == 0) {
+            return 0;
+        }
+        productRepository.incrementStock(reservation.getProductId(), reservation.getQuantity());
+        return 1;
+    }
+
+    private void unconfirm(StockReservation reservation) {
+        reservationRepository.transition(reservation.getId(), StockReservation.CONFIRMED, StockReservation.RELEASED);
+        productRepository.incrementStock(reservation.getProductId(), reservation.getQuantity());
+    }
+
+    private static Set<Long> productIds(List<StockReservation> reservations) {
+        return reservations.stream().map(StockReservation::getProductId).collect(Collectors.toCollection(TreeSet::new));
+    }
+
+    // Ascending product order, as in reserve(), so re-taking released stock cannot deadlock either
+    private List<StockReservation> owned(String reference, String username) {
+        return reservationRepository.findByReference(reference).stream()
+                .filter(reservation -> username != null && username.equals(reservation.getUsername()))
+                .sorted(Comparator.comparing(StockReservation::getProductId))
+                .collect(Collectors.toList());
+    }
+}
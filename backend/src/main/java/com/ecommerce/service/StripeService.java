@@ -5,48 +5,362 @@ import com.stripe.model.Event;
 import com.stripe.model.PaymentIntent;
 import com.stripe.model.StripeObject;
 import com.stripe.param.PaymentIntentCreateParams;
+import com.ecommerce.config.VirtualThreads;
+import com.ecommerce.model.Order;
+import com.ecommerce.repository.OrderRepository;
+import com.ecommerce.report.RollupRecorder;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
 import org.springframework.stereotype.Service;
 import com.stripe.Stripe;
+import com.stripe.net.RequestOptions;
 import com.stripe.net.Webhook;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// StripeConfig sets the SDK's global API key; nothing injects it, so lazy initialization would skip it
 @Service
+@DependsOn("stripeConfig")
 public class StripeService {
     private static final Logger logger = LoggerFactory.getLogger(StripeService.class);
+    // For tracing in the Stripe dashboard only; webhook handlers take the reservation from the order
+    public static final String RESERVATION_METADATA_KEY = "reservation";
+    public static final String ORDER_METADATA_KEY = "orderId";
+
+    @Autowired
+    private StockReservationService reservationService;
+    @Autowired
+    private OrderRepository orderRepository;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @Autowired
+    private RollupRecorder rollupRecorder;
+
+    @Value("${stripe.bulkhead.max-concurrent:20}")
+    private int maxConcurrentCalls;
+    @Value("${stripe.bulkhead.max-wait:500ms}")
+    private Duration bulkheadMaxWait;
+    @Value("${stripe.timeout.connect:2s}")
+    private Duration connectTimeout;
+    @Value("${stripe.timeout.read:10s}")
+    private Duration readTimeout;
+    @Value("${stripe.idempotency.window:10m}")
+    private Duration idempotencyWindow;
+    @Value("${execution.mode:platform}")
+    private String executionMode;
+    @Value("${stripe.async.queue-capacity:200}")
+    private int asyncQueueCapacity;
+
+    // Caps request threads blocked on Stripe at once, so a slow Stripe cannot drain the Tomcat pool
+    private Semaphore bulkhead;
+    private final Map<String, InFlight> inFlight = new ConcurrentHashMap<>();
+    private Cache<String, InFlight> completed;
+    // Runs the blocking Stripe calls behind createPaymentIntentAsync; the caller's thread in platform mode
+    private Executor callExecutor;
+
+    @PostConstruct
+    public void init() {
+        bulkhead = new Semaphore(maxConcurrentCalls);
+        Gauge.builder("stripe.bulkhead.available", bulkhead, Semaphore::availablePermits)
+                .description("Free Stripe call slots")
+                .register(meterRegistry);
+        completed = Caffeine.newBuilder().expireAfterWrite(idempotencyWindow).maximumSize(100_000).build();
+        callExecutor = createCallExecutor();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (callExecutor instanceof ExecutorService) {
+            ((ExecutorService) callExecutor).shutdown();
+        }
+    }
+
+    private Executor createCallExecutor() {
+        if (VirtualThreads.MODE_VIRTUAL.equals(executionMode)) {
+            Optional<ExecutorService> virtual = VirtualThreads.newPerTaskExecutor();
+            if (virtual.isPresent()) {
+                return virtual.get();
+            }
+        }
+        if (VirtualThreads.MODE_PLATFORM.equals(executionMode)) {
+            return Runnable::run;
+        }
+        // Sized to the bulkhead, so a queued call never also waits for a permit
+        AtomicInteger threadNumber = new AtomicInteger();
+        return new ThreadPoolExecutor(maxConcurrentCalls, maxConcurrentCalls, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(asyncQueueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "stripe-call-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
     
     public PaymentIntent createPaymentIntent(Long amount, String currency) throws StripeException {
-        PaymentIntentCreateParams params = PaymentIntentCreateParams.builder()
+        return createPaymentIntent(amount, currency, null);
+    }
+
+    public PaymentIntent createPaymentIntent(Long amount, String currency, Map<String, String> metadata) throws StripeException {
+        return createPaymentIntent(amount, currency, metadata, null);
+    }
+
+    /**
+     * Creates a PaymentIntent at most once per idempotency key. Concurrent calls with
+     * the same key share one Stripe request, later calls within the idempotency window
+     * get the same intent back, and the key is forwarded to Stripe so a retry after
+     * a lost response cannot create a second intent either.
+     *
+     * @throws IllegalArgumentException if the key was already used with different parameters
+     * @throws PaymentGatewayBusyException if Stripe is saturated or did not answer in time
+     */
+    public PaymentIntent createPaymentIntent(Long amount, String currency, Map<String, String> metadata, String idempotencyKey) throws StripeException {
+        if (idempotencyKey == null || idempotencyKey.isEmpty()) {
+            return callStripe(amount, currency, metadata, null);
+        }
+        String fingerprint = amount + "|" + currency + "|" + (metadata != null ? new TreeMap<>(metadata) : "{}");
+        InFlight previous = completed.getIfPresent(idempotencyKey);
+        if (previous == null) {
+            InFlight mine = new InFlight(fingerprint);
+            previous = inFlight.putIfAbsent(idempotencyKey, mine);
+            if (previous == null) {
+                try {
+                    PaymentIntent paymentIntent = callStripe(amount, currency, metadata, idempotencyKey);
+                    completed.put(idempotencyKey, mine);
+                    mine.result.complete(paymentIntent);
+                    return paymentIntent;
+                } catch (StripeException | RuntimeException e) {
+                    mine.result.completeExceptionally(e);
+                    throw e;
+                } finally {
+                    inFlight.remove(idempotencyKey, mine);
+                }
+            }
+        }
+        if (!previous.fingerprint.equals(fingerprint)) {
+            throw new IllegalArgumentException("Idempotency key was already used with different parameters");
+        }
+        return previous.await(readTimeout.plus(bulkheadMaxWait));
+    }
+
+    /**
+     * Same as {@link #createPaymentIntent(Long, String, Map, String)}, but in the async and
+     * virtual execution modes the blocking Stripe call runs off the calling thread,
+     * so a servlet can release its worker while Stripe answers.
+     */
+    public CompletableFuture<PaymentIntent> createPaymentIntentAsync(Long amount, String currency, Map<String, String> metadata, String idempotencyKey) {
+        CompletableFuture<PaymentIntent> result = new CompletableFuture<>();
+        try {
+            callExecutor.execute(() -> {
+                try {
+                    result.complete(createPaymentIntent(amount, currency, metadata, idempotencyKey));
+                } catch (StripeException | RuntimeException e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(new PaymentGatewayBusyException("Payment provider is busy, please retry"));
+        }
+        return result;
+    }
+
+    private PaymentIntent callStripe(Long amount, String currency, Map<String, String> metadata, String idempotencyKey) throws StripeException {
+        PaymentIntentCreateParams.Builder builder = PaymentIntentCreateParams.builder()
                 .setAmount(amount)
                 .setCurrency(currency)
                 .setAutomaticPaymentMethods(
                     PaymentIntentCreateParams.AutomaticPaymentMethods.builder()
                         .setEnabled(true)
                         .build()
-                )
-                .build();
-        
-        return PaymentIntent.create(params);
+                );
+        if (metadata != null) {
+            metadata.forEach((key, value) -> {
+                if (value != null && !value.isEmpty()) {
+                    builder.putMetadata(key, value);
+                }
+            });
+        }
+        RequestOptions options = requestOptions().setIdempotencyKey(idempotencyKey).build();
+        PaymentIntent paymentIntent = call("payment_intent.create", () -> PaymentIntent.create(builder.build(), options));
+        // Counted here, after the idempotency layer, so replays of one intent count once
+        rollupRecorder.paymentEvent(RollupRecorder.INTENT_CREATED);
+        return paymentIntent;
     }
     
     public PaymentIntent confirmPaymentIntent(String paymentIntentId) throws StripeException {
-        PaymentIntent paymentIntent = PaymentIntent.retrieve(paymentIntentId);
-        return paymentIntent.confirm();
+        RequestOptions options = requestOptions().build();
+        PaymentIntent paymentIntent = call("payment_intent.retrieve", () -> PaymentIntent.retrieve(paymentIntentId, options));
+        return call("payment_intent.confirm", () -> paymentIntent.confirm(options));
+    }
+
+    // Every outbound Stripe request goes through the bulkhead and is timed as stripe.requests{operation,outcome}
+    private <T> T call(String operation, StripeCall<T> request) throws StripeException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            acquireBulkhead();
+        } catch (PaymentGatewayBusyException e) {
+            sample.stop(stripeTimer(operation, "rejected"));
+            throw e;
+        }
+        try {
+            T result = request.execute();
+            outcome = "success";
+            return result;
+        } finally {
+            bulkhead.release();
+            sample.stop(stripeTimer(operation, outcome));
+        }
+    }
+
+    private Timer stripeTimer(String operation, String outcome) {
+        return Timer.builder("stripe.requests")
+                .description("Outbound Stripe API calls, including time spent waiting for the bulkhead")
+                .tags("operation", operation, "outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    @FunctionalInterface
+    private interface StripeCall<T> {
+        T execute() throws StripeException;
+    }
+
+    private RequestOptions.RequestOptionsBuilder requestOptions() {
+        return RequestOptions.builder()
+                .setConnectTimeout((int) connectTimeout.toMillis())
+                .setReadTimeout((int) readTimeout.toMillis());
+    }
+
+    private void acquireBulkhead() {
+        boolean acquired;
+        try {
+            acquired = bulkhead.tryAcquire(bulkheadMaxWait.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            throw new PaymentGatewayBusyException("Payment provider is busy, please retry");
+        }
     }
 
     public Event constructEvent(String payload, String sigHeader, String webhookSecret) throws StripeException {
         return Webhook.constructEvent(payload, sigHeader, webhookSecret);
     }
 
+    // Called by WebhookInboxService inside the transaction that marks the event processed.
+    // The reservation and its owner are read from the order; metadata only names the order.
     public void handlePaymentIntentSucceeded(PaymentIntent paymentIntent) {
         // Handle successful payment
         logger.info("Payment succeeded for payment intent: {}", paymentIntent.getId());
-        // TODO: Update order status, send confirmation email, etc.
+        rollupRecorder.paymentEvent(RollupRecorder.PAYMENT_SUCCEEDED);
+        Optional<Order> order = order(paymentIntent);
+        if (!order.isPresent()) {
+            return;
+        }
+        String reservation = order.get().getReservationReference();
+        String status = "PAID";
+        if (reservation != null && !reservationService.confirm(reservation, order.get().getUser().getUsername())) {
+            // Paid after the reservation lapsed and the stock has gone to someone else
+            logger.error("Order {} was paid but its stock could not be reserved again; refund or fulfil it by hand",
+                    order.get().getId());
+            status = "NEEDS_REVIEW";
+        }
+        // A failed attempt may have come first; the customer then retried the same intent
+        transitionOrder(order.get().getId(), status, "PENDING", "PAYMENT_FAILED");
+        // TODO: send confirmation email, etc.
     }
 
+    // The stock stays reserved so the customer can retry; it is released on cancel or expiry
     public void handlePaymentIntentFailed(PaymentIntent paymentIntent) {
         // Handle failed payment
         logger.error("Payment failed for payment intent: {}", paymentIntent.getId());
-        // TODO: Update order status, notify customer, etc.
+        rollupRecorder.paymentEvent(RollupRecorder.PAYMENT_FAILED);
+        order(paymentIntent).ifPresent(order -> transitionOrder(order.getId(), "PAYMENT_FAILED", "PENDING"));
+        // TODO: notify customer, etc.
+    }
+
+    public void handlePaymentIntentCanceled(PaymentIntent paymentIntent) {
+        logger.info("Payment intent canceled: {}", paymentIntent.getId());
+        order(paymentIntent).ifPresent(order -> {
+            if (order.getReservationReference() != null) {
+                reservationService.release(order.getReservationReference(), order.getUser().getUsername());
+            }
+            transitionOrder(order.getId(), "CANCELLED", "PENDING", "PAYMENT_FAILED");
+        });
+    }
+
+    private Optional<Order> order(PaymentIntent paymentIntent) {
+        Long orderId = orderId(paymentIntent);
+        return orderId != null ? orderRepository.findById(orderId) : Optional.empty();
+    }
+
+    private void transitionOrder(Long orderId, String to, String... from) {
+        for (String status : from) {
+            if (orderRepository.transitionStatus(orderId, status, to) == 1) {
+                rollupRecorder.statusChanged(orderId, status, to);
+                return;
+            }
+        }
+    }
+
+    private static Long orderId(PaymentIntent paymentIntent) {
+        String orderId = metadata(paymentIntent, ORDER_METADATA_KEY);
+        return orderId != null ? Long.valueOf(orderId) : null;
+    }
+
+    private static String metadata(PaymentIntent paymentIntent, String key) {
+        return paymentIntent.getMetadata() != null ? paymentIntent.getMetadata().get(key) : null;
+    }
+
+    private static final class InFlight {
+        private final String fingerprint;
+        private final CompletableFuture<PaymentIntent> result = new CompletableFuture<>();
+
+        private InFlight(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+
+        private PaymentIntent await(Duration timeout) throws StripeException {
+            try {
+                return result.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof StripeException) {
+                    throw (StripeException) e.getCause();
+                }
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new IllegalStateException(e.getCause());
+            } catch (TimeoutException e) {
+                throw new PaymentGatewayBusyException("Payment provider is busy, please retry");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new PaymentGatewayBusyException("Interrupted while waiting for the payment provider");
+            }
+        }
     }
-} 
\ No newline at end of file
+}
@@ -1,21 +1,58 @@
 package com.ecommerce.service;
 
+import com.ecommerce.cache.TokenRevocations;
+import com.ecommerce.datasource.ReadYourWrites;
 import com.ecommerce.model.User;
 import com.ecommerce.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
 import java.util.Optional;
 
 @Service
 public class UserService {
     @Autowired
     private UserRepository userRepository;
+    @Autowired
+    private TokenRevocations tokenRevocations;
+    @Autowired
+    private ReadYourWrites readYourWrites;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate readOnlyTransaction;
 
+    @PostConstruct
+    public void init() {
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+    }
+
+    // May be served by a replica, a moment behind; a user saved within the sticky window is read from the primary,
+    // whoever asks, so a lookup right after registration finds them
     public Optional<User> findByUsername(String username) {
+        if (readYourWrites.isSticky(username)) {
+            return findForAuthentication(username);
+        }
+        return readOnlyTransaction.execute(status -> userRepository.findByUsername(username));
+    }
+
+    // Always the primary: credentials and roles must not lag a registration or role change, and create-if-missing must see the latest row
+    public Optional<User> findForAuthentication(String username) {
         return userRepository.findByUsername(username);
     }
 
+    // Access tokens carry the role, so an update to an existing user invalidates the ones already issued
     public User save(User user) {
-        return userRepository.save(user);
+        boolean existing = user.getId() != null;
+        User saved = userRepository.save(user);
+        readYourWrites.markWritten(saved.getUsername());
+        if (existing) {
+            tokenRevocations.revokeUser(saved.getUsername());
+        }
+        return saved;
     }
-} 
\ No newline at end of file
+}
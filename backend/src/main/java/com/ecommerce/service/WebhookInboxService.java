@@ -0,0 +1,187 @@
+package com.ecommerce.service;
+
+import com.ecommerce.model.WebhookEvent;
+import com.ecommerce.repository.WebhookEventRepository;
+import com.stripe.exception.EventDataObjectDeserializationException;
+import com.stripe.model.Event;
+import com.stripe.model.PaymentIntent;
+import com.stripe.net.ApiResource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stripe webhook inbox. The controller only verifies the signature and calls
+ * {@link #accept}; the event is stored keyed by its Stripe id and processed on a
+ * bounded worker pool, so the webhook answers immediately and a redelivery is
+ * recognised and dropped.
+ *
+ * Workers are single-threaded lanes chosen by PaymentIntent id, so events for
+ * one PaymentIntent are applied in the order they arrived. Processing runs in
+ * one transaction that also flips the inbox row from PENDING to PROCESSED; if
+ * two workers ever race on an event, only one commits its side effects.
+ */
+@Service
+public class WebhookInboxService {
+    private static final Logger logger = LoggerFactory.getLogger(WebhookInboxService.class);
+    static final String PAYMENT_SUCCEEDED = "payment_intent.succeeded";
+    static final String PAYMENT_FAILED = "payment_intent.payment_failed";
+    static final String PAYMENT_CANCELED = "payment_intent.canceled";
+
+    @Autowired
+    private WebhookEventRepository webhookEventRepository;
+    @Autowired
+    private StripeService stripeService;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${stripe.webhook.workers:4}")
+    private int workerCount;
+    @Value("${stripe.webhook.queue-capacity:1000}")
+    private int queueCapacity;
+    @Value("${stripe.webhook.max-attempts:5}")
+    private int maxAttempts;
+    @Value("${stripe.webhook.redispatch-after:30s}")
+    private Duration redispatchAfter;
+
+    private ExecutorService[] lanes;
+
+    @PostConstruct
+    public void start() {
+        lanes = new ExecutorService[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            String name = "stripe-webhook-" + i;
+            lanes[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity), runnable -> new Thread(runnable, name));
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        for (ExecutorService lane : lanes) {
+            lane.shutdown();
+        }
+    }
+
+    public static boolean isHandled(String eventType) {
+        return PAYMENT_SUCCEEDED.equals(eventType) || PAYMENT_FAILED.equals(eventType)
+                || PAYMENT_CANCELED.equals(eventType);
+    }
+
+    /**
+     * Stores a verified event and queues it for processing.
+     *
+     * @return false if the event was already in the inbox (a Stripe retry)
+     */
+    public boolean accept(Event event, String payload) {
+        // Cheap check for the common case of a sequential retry; the primary key still decides concurrent ones
+        if (webhookEventRepository.existsById(event.getId())) {
+            return false;
+        }
+        WebhookEvent inbound = new WebhookEvent();
+        inbound.setId(event.getId());
+        inbound.setType(event.getType());
+        inbound.setPaymentIntentId(paymentIntentId(event));
+        inbound.setPayload(payload);
+        inbound.setStatus(WebhookEvent.PENDING);
+        inbound.setReceivedAt(LocalDateTime.now());
+        try {
+            webhookEventRepository.saveAndFlush(inbound);
+        } catch (DataIntegrityViolationException duplicate) {
+            return false;
+        }
+        dispatch(inbound);
+        return true;
+    }
+
+    // Safety net for events whose lane was full or whose processing failed; lanes keep per-PaymentIntent order
+    @Scheduled(fixedDelayString = "${stripe.webhook.redispatch-interval-ms:15000}")
+    public void redispatchPending() {
+        List<WebhookEvent> stale = webhookEventRepository.findByStatusAndReceivedAtBeforeOrderByReceivedAtAsc(
+                WebhookEvent.PENDING, LocalDateTime.now().minus(redispatchAfter), PageRequest.of(0, queueCapacity));
+        stale.forEach(this::dispatch);
+    }
+
+    private void dispatch(WebhookEvent event) {
+        String eventId = event.getId();
+        try {
+            lanes[Math.floorMod(event.getPaymentIntentId().hashCode(), lanes.length)].execute(() -> process(eventId));
+        } catch (RejectedExecutionException e) {
+            logger.warn("Webhook lanes saturated, event {} left for redispatch", eventId);
+        }
+    }
+
+    void process(String eventId) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                WebhookEvent stored = webhookEventRepository.findById(eventId).orElse(null);
+                if (stored == null || !WebhookEvent.PENDING.equals(stored.getStatus())) {
+                    return;
+                }
+                apply(stored);
+                if (webhookEventRepository.complete(eventId, WebhookEvent.PROCESSED, LocalDateTime.now()) == 0) {
+                    // Another worker finished it first; roll back so its effects are applied only once
+                    status.setRollbackOnly();
+                }
+            });
+        } catch (RuntimeException e) {
+            logger.error("Processing webhook event {} failed", eventId, e);
+            recordFailure(eventId, e);
+        }
+    }
+
+    private void apply(WebhookEvent stored) {
+        PaymentIntent paymentIntent = paymentIntent(ApiResource.GSON.fromJson(stored.getPayload(), Event.class));
+        if (PAYMENT_SUCCEEDED.equals(stored.getType())) {
+            stripeService.handlePaymentIntentSucceeded(paymentIntent);
+        } else if (PAYMENT_FAILED.equals(stored.getType())) {
+            stripeService.handlePaymentIntentFailed(paymentIntent);
+        } else if (PAYMENT_CANCELED.equals(stored.getType())) {
+            stripeService.handlePaymentIntentCanceled(paymentIntent);
+        }
+    }
+
+    private void recordFailure(String eventId, RuntimeException e) {
+        String message = String.valueOf(e.getMessage());
+        String error = message.length() > 1000 ? message.substring(0, 1000) : message;
+        transactionTemplate.executeWithoutResult(status -> {
+            webhookEventRepository.recordFailure(eventId, error);
+            webhookEventRepository.findById(eventId)
+                    .filter(stored -> stored.getAttempts() >= maxAttempts)
+                    .ifPresent(stored -> {
+                        webhookEventRepository.complete(eventId, WebhookEvent.FAILED, LocalDateTime.now());
+                        logger.error("Giving up on webhook event {} after {} attempts", eventId, stored.getAttempts());
+                    });
+        });
+    }
+
+    private static String paymentIntentId(Event event) {
+        return paymentIntent(event).getId();
+    }
+
+    // deserializeUnsafe also accepts events rendered for a different API version than the library's
+    private static PaymentIntent paymentIntent(Event event) {
+        try {
+            return (PaymentIntent) event.getDataObjectDeserializer().deserializeUnsafe();
+        } catch (EventDataObjectDeserializationException e) {
+            throw new IllegalStateException("Cannot deserialize PaymentIntent for event " + event.getId(), e);
+        }
+    }
+}
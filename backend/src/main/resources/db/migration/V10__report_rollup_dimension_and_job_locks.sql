@@ -0,0 +1,10 @@
+-- PAID_BY_USER buckets hold usernames, which are up to 255 characters (OAuth ones are email addresses)
+alter table report_rollups modify dimension varchar(255) not null;
+
+-- One row per job that must not run on two nodes at once; a job holds its row with select ... for update
+create table job_locks (
+    name varchar(64) not null,
+    primary key (name)
+) engine=InnoDB;
+
+insert into job_locks (name) values ('report_rollups.rebuild');
@@ -0,0 +1,34 @@
+-- The schema as ddl-auto=update created it before migrations were introduced. Databases created that
+-- way are baselined at this version (spring.flyway.baseline-on-migrate) and get everything after it.
+
+create table users (
+    id bigint not null auto_increment,
+    email varchar(255) not null,
+    password varchar(255) not null,
+    role varchar(255) not null,
+    username varchar(255) not null,
+    primary key (id)
+) engine=InnoDB;
+
+alter table users add constraint UK_r43af9ap4edm43mmtq01oddj6 unique (username);
+
+create table products (
+    id bigint not null auto_increment,
+    description varchar(255) not null,
+    image_url varchar(255),
+    name varchar(255) not null,
+    price decimal(19,2) not null,
+    stock integer not null,
+    primary key (id)
+) engine=InnoDB;
+
+create table orders (
+    id bigint not null auto_increment,
+    order_date datetime(6) not null,
+    status varchar(255) not null,
+    total_amount decimal(19,2) not null,
+    user_id bigint not null,
+    primary key (id)
+) engine=InnoDB;
+
+alter table orders add constraint FK32ql8ubntj5uh44ph9659tiih foreign key (user_id) references users (id);
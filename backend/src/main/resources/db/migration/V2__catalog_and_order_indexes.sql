@@ -0,0 +1,4 @@
+-- Catalog filtering and sorting in SQL, and keyset pagination of orders
+create index idx_products_price on products (price);
+create index idx_products_name on products (name);
+create index idx_orders_order_date on orders (order_date, id);
@@ -0,0 +1,13 @@
+create table stock_reservations (
+    id bigint not null auto_increment,
+    created_at datetime(6) not null,
+    expires_at datetime(6) not null,
+    product_id bigint not null,
+    quantity integer not null,
+    reference varchar(64) not null,
+    status varchar(16) not null,
+    primary key (id)
+) engine=InnoDB;
+
+create index idx_stock_reservations_reference on stock_reservations (reference);
+create index idx_stock_reservations_status_expires on stock_reservations (status, expires_at);
@@ -0,0 +1,22 @@
+-- Pooled ids for order_items (OrderItem's table generator), handed out 50 at a time
+create table id_generators (
+    name varchar(255) not null,
+    next_val bigint,
+    primary key (name)
+) engine=InnoDB;
+
+insert into id_generators (name, next_val) values ('order_items', 0);
+
+create table order_items (
+    id bigint not null,
+    product_id bigint not null,
+    product_name varchar(255) not null,
+    quantity integer not null,
+    unit_price decimal(19,2) not null,
+    order_id bigint not null,
+    primary key (id),
+    constraint fk_order_items_order foreign key (order_id) references orders (id)
+) engine=InnoDB;
+
+-- Stock held for an order until its payment settles
+alter table orders add column reservation_reference varchar(64);
@@ -0,0 +1,15 @@
+create table webhook_events (
+    id varchar(255) not null,
+    attempts integer not null,
+    last_error varchar(1000),
+    payload longtext not null,
+    payment_intent_id varchar(255) not null,
+    processed_at datetime(6),
+    received_at datetime(6) not null,
+    status varchar(16) not null,
+    type varchar(255) not null,
+    primary key (id)
+) engine=InnoDB;
+
+create index idx_webhook_events_status_received on webhook_events (status, received_at);
+create index idx_webhook_events_payment_intent on webhook_events (payment_intent_id);
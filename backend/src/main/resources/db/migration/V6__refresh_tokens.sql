@@ -0,0 +1,16 @@
+create table refresh_tokens (
+    id bigint not null auto_increment,
+    created_at datetime(6) not null,
+    expires_at datetime(6) not null,
+    family varchar(36) not null,
+    revoked bit not null,
+    token_hash varchar(64) not null,
+    used bit not null,
+    username varchar(255) not null,
+    primary key (id),
+    constraint idx_refresh_tokens_hash unique (token_hash)
+) engine=InnoDB;
+
+create index idx_refresh_tokens_family on refresh_tokens (family);
+create index idx_refresh_tokens_username on refresh_tokens (username);
+create index idx_refresh_tokens_expires on refresh_tokens (expires_at);
@@ -0,0 +1,10 @@
+create table report_rollups (
+    id bigint not null auto_increment,
+    amount decimal(19,2) not null,
+    bucket_date date not null,
+    dimension varchar(64) not null,
+    event_count bigint not null,
+    series varchar(32) not null,
+    primary key (id),
+    constraint idx_report_rollups_bucket unique (series, bucket_date, dimension)
+) engine=InnoDB;
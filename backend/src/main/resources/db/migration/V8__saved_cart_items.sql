@@ -0,0 +1,11 @@
+create table saved_cart_items (
+    id bigint not null auto_increment,
+    product_id bigint not null,
+    quantity integer not null,
+    updated_at datetime(6) not null,
+    username varchar(255) not null,
+    primary key (id),
+    constraint idx_saved_cart_items_username_product unique (username, product_id)
+) engine=InnoDB;
+
+create index idx_saved_cart_items_updated_at on saved_cart_items (updated_at);
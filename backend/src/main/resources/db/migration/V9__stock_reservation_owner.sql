@@ -0,0 +1 @@
+alter table stock_reservations add column username varchar(255);
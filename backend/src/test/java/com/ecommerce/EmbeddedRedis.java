@@ -0,0 +1,51 @@
+package com.ecommerce;
+
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+
+/**
+ * One Redis server for the whole test run, started on a free port the first
+ * time a test asks for it. Register it with
+ * {@code registry.add("spring.redis.port", EmbeddedRedis::port)} in a
+ * {@code @DynamicPropertySource} method.
+ */
+public final class EmbeddedRedis {
+    private static RedisServer server;
+    private static int port;
+
+    private EmbeddedRedis() {}
+
+    public static synchronized int port() {
+        if (server == null) {
+            try (ServerSocket socket = new ServerSocket(0)) {
+                port = socket.getLocalPort();
+                server = new RedisServer(port);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            start();
+            Runtime.getRuntime().addShutdownHook(new Thread(EmbeddedRedis::stop));
+        }
+        return port;
+    }
+
+    // For outage tests; the server keeps its port but not its data
+    public static synchronized void stop() {
+        try {
+            server.stop();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static synchronized void start() {
+        try {
+            server.start();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.ecommerce;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A stand-in for the Stripe API that answers every request with a new
+ * PaymentIntent after a configurable delay, and records what it was sent.
+ * Register it with {@code registry.add("stripe.api-base", FakeStripe::url)}.
+ */
+public final class FakeStripe {
+    private static final AtomicInteger requests = new AtomicInteger();
+    private static final List<String> idempotencyKeys = new CopyOnWriteArrayList<>();
+    private static volatile Duration latency = Duration.ZERO;
+    private static HttpServer server;
+
+    private FakeStripe() {}
+
+    public static synchronized String url() {
+        if (server == null) {
+            try {
+                server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            server.setExecutor(Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "fake-stripe");
+                thread.setDaemon(true);
+                return thread;
+            }));
+            server.createContext("/", exchange -> {
+                int number = requests.incrementAndGet();
+                String key = exchange.getRequestHeaders().getFirst("Idempotency-Key");
+                if (key != null) {
+                    idempotencyKeys.add(key);
+                }
+                try {
+                    Thread.sleep(latency.toMillis());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                byte[] body = ("{\"id\":\"pi_" + number + "\",\"object\":\"payment_intent\",\"client_secret\":\"pi_"
+                        + number + "_secret\"}").getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body);
+                exchange.close();
+            });
+            server.start();
+        }
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    // Clears the counters and sets how long each request takes from now on
+    public static void reset(Duration requestLatency) {
+        latency = requestLatency;
+        requests.set(0);
+        idempotencyKeys.clear();
+    }
+
+    public static int requests() {
+        return requests.get();
+    }
+
+    public static List<String> idempotencyKeys() {
+        return idempotencyKeys;
+    }
+}
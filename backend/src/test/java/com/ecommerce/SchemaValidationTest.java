@@ -0,0 +1,18 @@
+package com.ecommerce;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+// The schema comes from the Flyway migrations (on H2 in MySQL mode); the types Hibernate expects
+// come from the MySQL dialect used in production. Any mismatch fails the context.
+@SpringBootTest(properties = {
+    "spring.jpa.hibernate.ddl-auto=validate",
+    "spring.jpa.database-platform=org.hibernate.dialect.MySQL8Dialect"
+})
+@ActiveProfiles("test")
+class SchemaValidationTest {
+    @Test
+    void entitiesMatchTheMigratedSchema() {
+    }
+}
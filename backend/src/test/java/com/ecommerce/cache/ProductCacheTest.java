@@ -0,0 +1,97 @@
+package com.ecommerce.cache;
+
+import com.ecommerce.EmbeddedRedis;
+import com.ecommerce.model.Product;
+import com.ecommerce.repository.ProductRepository;
+import com.ecommerce.service.ProductService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class ProductCacheTest {
+    @Autowired
+    private ProductService productService;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private ProductCache productCache;
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @DynamicPropertySource
+    static void redis(DynamicPropertyRegistry registry) {
+        registry.add("spring.redis.port", EmbeddedRedis::port);
+        registry.add("catalog.cache.l2.enabled", () -> "true");
+    }
+
+    @Test
+    void singleProductsAreReadThroughBothTiers() {
+        Product product = productRepository.save(new Product(null, "Cached", "d", new BigDecimal("5.00"), 3, null));
+
+        assertThat(productService.findById(product.getId())).get().extracting(Product::getName).isEqualTo("Cached");
+        assertThat(redisTemplate.hasKey("catalog:product:" + product.getId())).isTrue();
+
+        // Changed behind the cache's back: still served from L1
+        rename(product.getId(), "Changed elsewhere");
+        assertThat(productService.findById(product.getId())).get().extracting(Product::getName).isEqualTo("Cached");
+    }
+
+    @Test
+    void saveInvalidatesTheProductAndEveryCachedQuery() {
+        Product product = productRepository.save(new Product(null, "Before save", "d", new BigDecimal("7.25"), 3, null));
+        assertThat(productService.findById(product.getId())).isPresent();
+        assertThat(names(productService.findByPriceRange(new BigDecimal("7.20"), new BigDecimal("7.30")))).contains("Before save");
+        long version = productCache.getVersion();
+
+        product.setName("After save");
+        productService.save(product);
+
+        assertThat(productCache.getVersion()).isGreaterThan(version);
+        assertThat(redisTemplate.hasKey("catalog:product:" + product.getId())).isFalse();
+        assertThat(productService.findById(product.getId())).get().extracting(Product::getName).isEqualTo("After save");
+        assertThat(names(productService.findByPriceRange(new BigDecimal("7.20"), new BigDecimal("7.30"))))
+                .contains("After save").doesNotContain("Before save");
+    }
+
+    @Test
+    void invalidationsFromOtherNodesEvictLocalEntries() throws InterruptedException {
+        Product product = productRepository.save(new Product(null, "Local copy", "d", new BigDecimal("9.00"), 3, null));
+        assertThat(productService.findById(product.getId())).isPresent();
+
+        // What another node's save does: write the row, bump the shared version, drop L2, publish
+        rename(product.getId(), "Saved on another node");
+        Long next = redisTemplate.opsForValue().increment("catalog:version");
+        redisTemplate.delete("catalog:product:" + product.getId());
+        redisTemplate.convertAndSend(ProductCache.CHANNEL, next + ":" + product.getId());
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (productCache.getVersion() < next && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(productCache.getVersion()).isGreaterThanOrEqualTo(next);
+        assertThat(productService.findById(product.getId())).get().extracting(Product::getName).isEqualTo("Saved on another node");
+    }
+
+    private void rename(Long id, String name) {
+        jdbcTemplate.update("update products set name = ? where id = ?", name, id);
+    }
+
+    private static List<String> names(List<Product> products) {
+        return products.stream().map(Product::getName).collect(Collectors.toList());
+    }
+}
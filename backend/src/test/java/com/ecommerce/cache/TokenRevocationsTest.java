@@ -0,0 +1,34 @@
+package com.ecommerce.cache;
+
+import com.ecommerce.service.JwtService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class TokenRevocationsTest {
+    @Autowired
+    private TokenRevocations tokenRevocations;
+    @Autowired
+    private JwtService jwtService;
+
+    // iat is truncated to the second, so a token issued just before the revocation shares its second
+    @Test
+    void aTokenIssuedEarlierInTheSameSecondIsRevoked() throws InterruptedException {
+        String username = "revoked-" + UUID.randomUUID();
+        Thread.sleep(1000 - System.currentTimeMillis() % 1000);
+        String token = jwtService.generateToken(username, "USER");
+        tokenRevocations.revokeUser(username);
+
+        assertThat(tokenRevocations.isRevoked(jwtService.verify(token))).isTrue();
+
+        Thread.sleep(1000 - System.currentTimeMillis() % 1000);
+        assertThat(tokenRevocations.isRevoked(jwtService.verify(jwtService.generateToken(username, "ADMIN")))).isFalse();
+    }
+}
@@ -0,0 +1,213 @@
+package com.ecommerce.cart;
+
+import com.ecommerce.EmbeddedRedis;
+import com.ecommerce.controller.CartController;
+import com.ecommerce.dto.CartLine;
+import com.ecommerce.dto.CartView;
+import com.ecommerce.model.Order;
+import com.ecommerce.model.Product;
+import com.ecommerce.model.User;
+import com.ecommerce.repository.ProductRepository;
+import com.ecommerce.repository.UserRepository;
+import com.ecommerce.search.CatalogIndexer;
+import com.ecommerce.service.ProductService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(properties = {
+    "carts.max-lines=3",
+    "carts.max-quantity=10"
+})
+@ActiveProfiles("test")
+class CartServiceTest {
+    @Autowired
+    private CartService cartService;
+    @Autowired
+    private CartController cartController;
+    @Autowired
+    private AbandonedCartWriter writer;
+    @Autowired
+    private ProductService productService;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private CatalogIndexer catalogIndexer;
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private String username;
+
+    @DynamicPropertySource
+    static void redis(DynamicPropertyRegistry registry) {
+        registry.add("spring.redis.port", EmbeddedRedis::port);
+    }
+
+    @BeforeEach
+    void user() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!catalogIndexer.isReady() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        User user = new User();
+        user.setUsername("shopper-" + UUID.randomUUID());
+        user.setPassword("x");
+        user.setEmail("shopper@example.com");
+        username = userRepository.save(user).getUsername();
+    }
+
+    @Test
+    void addingMergesLinesAndPricesThemFromTheCatalog() {
+        Product product = product("2.50", 10);
+
+        cartService.add(username, product.getId(), 2);
+        CartView cart = cartService.add(username, product.getId(), 1);
+
+        assertThat(quantities(cart)).containsExactly(Map.entry(product.getId(), 3));
+        assertThat(redisTemplate.opsForHash().get(CartService.KEY_PREFIX + username, product.getId().toString())).isEqualTo("3");
+        assertThat(redisTemplate.getExpire(CartService.KEY_PREFIX + username)).isPositive();
+        assertThat(redisTemplate.opsForZSet().score(CartService.TOUCHED_KEY, username)).isNotNull();
+
+        assertThat(quantities(cartService.setQuantity(username, product.getId(), 5))).containsExactly(Map.entry(product.getId(), 5));
+        assertThat(cartService.remove(username, product.getId()).getItems()).isEmpty();
+    }
+
+    @Test
+    void invalidChangesAreRejectedAndLeaveTheCartAlone() {
+        Product product = product("1.00", 10);
+        cartService.add(username, product.getId(), 2);
+
+        assertThatThrownBy(() -> cartService.add(username, product.getId(), 0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> cartService.add(username, Long.MAX_VALUE, 1)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> cartService.setQuantity(username, product.getId(), 11)).isInstanceOf(IllegalArgumentException.class);
+        cartService.add(username, product("1.00", 10).getId(), 1);
+        cartService.add(username, product("1.00", 10).getId(), 1);
+        assertThatThrownBy(() -> cartService.add(username, product("1.00", 10).getId(), 1))
+                .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("3 products");
+
+        assertThat(cartService.get(username).getItems()).hasSize(3);
+        assertThat(quantities(cartService.get(username))).containsEntry(product.getId(), 2);
+    }
+
+    @Test
+    void checkoutOrdersTheCartAndEmptiesIt() {
+        Product product = product("4.00", 5);
+        cartService.add(username, product.getId(), 2);
+
+        Order order = cartService.checkout(username);
+
+        assertThat(order.getTotalAmount()).isEqualByComparingTo("8.00");
+        assertThat(productRepository.findById(product.getId()).get().getStock()).isEqualTo(3);
+        assertThat(cartService.get(username).getItems()).isEmpty();
+        assertThatThrownBy(() -> cartService.checkout(username))
+                .isInstanceOf(IllegalArgumentException.class).hasMessage("Cart is empty");
+    }
+
+    // The order is committed before the cart is emptied; a failure there must not invite a second order
+    @Test
+    void checkoutStandsWhenEmptyingTheCartFails() {
+        Product product = product("4.00", 5);
+        cartService.add(username, product.getId(), 2);
+        redisTemplate.delete(CartService.TOUCHED_KEY);
+        redisTemplate.opsForValue().set(CartService.TOUCHED_KEY, "not a sorted set");
+        try {
+            Order order = cartService.checkout(username);
+
+            assertThat(order.getTotalAmount()).isEqualByComparingTo("8.00");
+            assertThat(productRepository.findById(product.getId()).get().getStock()).isEqualTo(3);
+        } finally {
+            redisTemplate.delete(CartService.TOUCHED_KEY);
+        }
+    }
+
+    @Test
+    void quietCartsAreWrittenBehindAndEmptiedOnesDeleted() {
+        Product first = product("1.00", 10);
+        Product second = product("1.00", 10);
+        cartService.add(username, first.getId(), 2);
+        cartService.add(username, second.getId(), 1);
+        Duration abandonAfter = (Duration) ReflectionTestUtils.getField(writer, "abandonAfter");
+        ReflectionTestUtils.setField(writer, "abandonAfter", Duration.ofMillis(-1));
+        try {
+            writer.writeAbandoned();
+            assertThat(savedLines()).containsOnly(Map.entry(first.getId(), 2), Map.entry(second.getId(), 1));
+            assertThat(redisTemplate.opsForZSet().score(CartService.TOUCHED_KEY, username)).isNull();
+
+            cartService.clear(username);
+            writer.writeAbandoned();
+            assertThat(savedLines()).isEmpty();
+        } finally {
+            ReflectionTestUtils.setField(writer, "abandonAfter", abandonAfter);
+        }
+    }
+
+    @Test
+    void onlyTheNodeHoldingTheLockWritesBehind() {
+        Product product = product("1.00", 10);
+        cartService.add(username, product.getId(), 2);
+        Duration abandonAfter = (Duration) ReflectionTestUtils.getField(writer, "abandonAfter");
+        ReflectionTestUtils.setField(writer, "abandonAfter", Duration.ofMillis(-1));
+        redisTemplate.opsForValue().set(AbandonedCartWriter.LOCK_KEY, "another-node");
+        try {
+            writer.writeAbandoned();
+            assertThat(savedLines()).isEmpty();
+            assertThat(redisTemplate.opsForValue().get(AbandonedCartWriter.LOCK_KEY)).isEqualTo("another-node");
+
+            redisTemplate.delete(AbandonedCartWriter.LOCK_KEY);
+            writer.writeAbandoned();
+            assertThat(savedLines()).containsOnly(Map.entry(product.getId(), 2));
+            assertThat(redisTemplate.hasKey(AbandonedCartWriter.LOCK_KEY)).isFalse();
+        } finally {
+            redisTemplate.delete(AbandonedCartWriter.LOCK_KEY);
+            ReflectionTestUtils.setField(writer, "abandonAfter", abandonAfter);
+        }
+    }
+
+    @Test
+    void aRedisOutageAnswersServiceUnavailable() {
+        EmbeddedRedis.stop();
+        try {
+            assertThat(cartController.getCart(() -> username).getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        } finally {
+            EmbeddedRedis.start();
+        }
+        assertThat(cartController.getCart(() -> username).getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+
+    private Product product(String price, int stock) {
+        return productService.save(new Product(null, "Cart item", "d", new BigDecimal(price), stock, null));
+    }
+
+    private static Map<Long, Integer> quantities(CartView cart) {
+        return cart.getItems().stream().collect(Collectors.toMap(CartLine::getProductId, CartLine::getQuantity));
+    }
+
+    private Map<Long, Integer> savedLines() {
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                "select product_id, quantity from saved_cart_items where username = ?", username);
+        return rows.stream().collect(Collectors.toMap(row -> ((Number) row.get("product_id")).longValue(),
+                row -> ((Number) row.get("quantity")).intValue()));
+    }
+}
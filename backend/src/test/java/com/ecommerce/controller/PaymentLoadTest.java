@@ -0,0 +1,131 @@
+package com.ecommerce.controller;
+
+import com.ecommerce.FakeStripe;
+import com.ecommerce.model.Product;
+import com.ecommerce.model.User;
+import com.ecommerce.repository.ProductRepository;
+import com.ecommerce.repository.UserRepository;
+import com.ecommerce.service.JwtService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 60 clients create PaymentIntents against a Stripe that takes 300 ms per call,
+ * through a Tomcat pool of 20 threads, while 4 clients read products. With the
+ * Stripe call off the request thread (execution.mode async or virtual) reads
+ * must not queue behind payments. Run with {@code mvn -Pload test}.
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+    "server.tomcat.threads.max=20",
+    "execution.mode=${loadtest.mode:async}",
+    "stripe.bulkhead.max-wait=20s",
+    "stripe.async.queue-capacity=1000"
+})
+@ActiveProfiles("test")
+class PaymentLoadTest {
+    private static final Duration STRIPE_LATENCY = Duration.ofMillis(300);
+    private static final Duration RUN = Duration.ofSeconds(10);
+
+    @LocalServerPort
+    private int port;
+    @Autowired
+    private JwtService jwtService;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private ProductRepository productRepository;
+
+    @DynamicPropertySource
+    static void stripe(DynamicPropertyRegistry registry) {
+        registry.add("stripe.api-base", FakeStripe::url);
+    }
+
+    @Test
+    void readsStayFastWhilePaymentsWaitOnStripe() throws Exception {
+        FakeStripe.reset(STRIPE_LATENCY);
+        User user = new User();
+        user.setUsername("load");
+        user.setEmail("load@example.com");
+        user.setPassword("x");
+        userRepository.save(user);
+        String token = jwtService.generateToken("load", "USER");
+        Product product = productRepository.save(new Product(null, "Read under load", "d", new BigDecimal("1.00"), 1, null));
+        String base = "http://localhost:" + port;
+        HttpClient client = HttpClient.newBuilder().executor(Executors.newCachedThreadPool()).build();
+
+        AtomicInteger payments = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+        List<Long> readNanos = Collections.synchronizedList(new ArrayList<>());
+        long end = System.nanoTime() + RUN.toNanos();
+        ExecutorService clients = Executors.newCachedThreadPool();
+        List<Future<?>> running = new ArrayList<>();
+        try {
+            for (int i = 0; i < 60; i++) {
+                running.add(clients.submit(() -> {
+                    while (System.nanoTime() < end) {
+                        HttpRequest request = HttpRequest.newBuilder(URI.create(base + "/api/payments/create-payment-intent"))
+                                .header("Authorization", "Bearer " + token)
+                                .header("Content-Type", "application/json")
+                                .POST(HttpRequest.BodyPublishers.ofString("{\"amount\":100,\"currency\":\"usd\"}"))
+                                .build();
+                        int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                        (status == 200 ? payments : errors).incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            for (int i = 0; i < 4; i++) {
+                running.add(clients.submit(() -> {
+                    while (System.nanoTime() < end) {
+                        long start = System.nanoTime();
+                        HttpRequest request = HttpRequest.newBuilder(URI.create(base + "/api/products/" + product.getId())).build();
+                        assertThat(client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode()).isEqualTo(200);
+                        readNanos.add(System.nanoTime() - start);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> caller : running) {
+                caller.get();
+            }
+        } finally {
+            clients.shutdown();
+        }
+
+        List<Long> reads = new ArrayList<>(readNanos);
+        Collections.sort(reads);
+        double paymentsPerSecond = payments.get() / (double) RUN.getSeconds();
+        Duration readP99 = Duration.ofNanos(reads.get((int) (reads.size() * 0.99)));
+        System.out.printf("execution.mode=%s payments/s=%.1f errors=%d reads=%d read p99=%d ms%n",
+                System.getProperty("loadtest.mode", "async"), paymentsPerSecond, errors.get(), reads.size(), readP99.toMillis());
+
+        assertThat(errors.get()).isZero();
+        // The bulkhead lets 20 calls wait on Stripe at once, so the ceiling is about 20 / 0.3 s
+        assertThat(paymentsPerSecond).isGreaterThan(30);
+        // A read that had to wait for a Tomcat thread would wait for a whole Stripe call
+        assertThat(readP99).isLessThan(STRIPE_LATENCY);
+    }
+}
@@ -0,0 +1,99 @@
+package com.ecommerce.controller;
+
+import com.ecommerce.dto.ItemQuantity;
+import com.ecommerce.model.Product;
+import com.ecommerce.service.JwtService;
+import com.ecommerce.service.ProductService;
+import com.ecommerce.service.StockReservationService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {"spring.mvc.async.request-timeout=30s", "execution.streaming.timeout=10m", "catalog.export.timeout=2h"})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ProductControllerTest {
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private ProductService productService;
+    @Autowired
+    private JwtService jwtService;
+    @Autowired
+    private StockReservationService reservationService;
+
+    @Test
+    void theUnfilteredCatalogIsStreamedWithTheStreamingTimeout() throws Exception {
+        Product product = productService.save(new Product(null, "Streamed " + UUID.randomUUID(), "d", new BigDecimal("3.00"), 1, null));
+
+        MvcResult result = mockMvc.perform(get("/api/products")).andExpect(request().asyncStarted()).andReturn();
+        assertThat(result.getRequest().getAsyncContext().getTimeout()).isEqualTo(600_000L);
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString(product.getName())));
+    }
+
+    @Test
+    void filteredListsAreWrittenOnTheRequestThread() throws Exception {
+        String name = "Filtered " + UUID.randomUUID();
+        productService.save(new Product(null, name, "d", new BigDecimal("3.00"), 1, null));
+
+        mockMvc.perform(get("/api/products").param("name", name))
+                .andExpect(request().asyncNotStarted())
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString(name)));
+    }
+
+    @Test
+    void exportsGetTheirOwnTimeout() throws Exception {
+        Product product = productService.save(new Product(null, "Exported " + UUID.randomUUID(), "d", new BigDecimal("3.00"), 1, null));
+
+        MvcResult result = mockMvc.perform(get("/api/products/export")
+                        .header("Authorization", "Bearer " + jwtService.generateToken("admin", "ADMIN")))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        assertThat(result.getRequest().getAsyncContext().getTimeout()).isEqualTo(7_200_000L);
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString(product.getName())));
+    }
+
+    // The product cache lets stock lag; the body must move with the ETag, which follows the catalog snapshot
+    @Test
+    void aProductsBodyAndETagChangeTogetherWhenItsStockMoves() throws Exception {
+        while (!productService.isCatalogReady()) {
+            Thread.sleep(20);
+        }
+        Product product = productService.save(new Product(null, "Single " + UUID.randomUUID(), "d", new BigDecimal("3.00"), 5, null));
+        String before = mockMvc.perform(get("/api/products/" + product.getId()))
+                .andExpect(jsonPath("$.stock").value(5))
+                .andReturn().getResponse().getHeader("ETag");
+
+        reservationService.reserve("buyer", Collections.singletonList(new ItemQuantity(product.getId(), 2)));
+
+        String after = mockMvc.perform(get("/api/products/" + product.getId()).header("If-None-Match", before))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.stock").value(3))
+                .andReturn().getResponse().getHeader("ETag");
+        assertThat(after).isNotEqualTo(before);
+    }
+}
@@ -0,0 +1,175 @@
+package com.ecommerce.datasource;
+
+import com.ecommerce.config.DataSourceConfig;
+import com.ecommerce.model.Product;
+import com.ecommerce.model.User;
+import com.ecommerce.repository.ProductRepository;
+import com.ecommerce.service.ProductService;
+import com.ecommerce.service.UserService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// The replica is a second in-memory database, copied from the primary before each test and then
+// made distinguishable; its lag is whatever the test writes into replication_lag
+@SpringBootTest
+@ActiveProfiles("test")
+class ReplicaTest {
+    private static final String REPLICA_URL = "jdbc:h2:mem:replica-" + UUID.randomUUID()
+            + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private DataSourceConfig dataSourceConfig;
+    @Autowired
+    private ReadYourWrites readYourWrites;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private ProductService productService;
+
+    private final JdbcTemplate replica = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", ""));
+    private Product product;
+
+    @DynamicPropertySource
+    static void replicas(DynamicPropertyRegistry registry) {
+        registry.add("datasource.replicas.urls", () -> REPLICA_URL);
+        registry.add("datasource.replicas.lag-query", () -> "select seconds_behind from replication_lag");
+        registry.add("datasource.replicas.max-lag", () -> "5s");
+        registry.add("datasource.replicas.check-interval-ms", () -> "3600000");
+        registry.add("datasource.replicas.sticky-window", () -> "1s");
+    }
+
+    @BeforeEach
+    void copyPrimaryToReplica() {
+        product = productRepository.save(new Product(null, "On the primary", "d", new BigDecimal("4.00"), 1, null));
+        replica.execute("drop all objects");
+        for (String statement : jdbcTemplate.queryForList("script", String.class)) {
+            replica.execute(statement);
+        }
+        replica.execute("create table replication_lag (seconds_behind bigint)");
+        replica.update("insert into replication_lag values (0)");
+        replica.update("update products set name = 'On the replica' where id = ?", product.getId());
+        dataSourceConfig.checkReplicas();
+    }
+
+    @AfterEach
+    void clearAuthentication() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void onlyReadOnlyTransactionsGoToTheReplica() {
+        assertThat(readOnlyName()).isEqualTo("On the replica");
+        assertThat(writableName()).isEqualTo("On the primary");
+        // Outside a transaction, and Spring Data's own read-only wrapper around a repository call
+        assertThat(name()).isEqualTo("On the primary");
+        assertThat(productRepository.findById(product.getId())).get().extracting(Product::getName).isEqualTo("On the primary");
+    }
+
+    @Test
+    void lagBeyondTheLimitFallsBackToThePrimaryUntilTheReplicaCatchesUp() {
+        setLag(60L);
+        assertThat(readOnlyName()).isEqualTo("On the primary");
+
+        setLag(null);
+        assertThat(readOnlyName()).isEqualTo("On the primary");
+
+        setLag(2L);
+        assertThat(readOnlyName()).isEqualTo("On the replica");
+
+        replica.execute("drop table replication_lag");
+        dataSourceConfig.checkReplicas();
+        assertThat(readOnlyName()).isEqualTo("On the primary");
+    }
+
+    @Test
+    void aUserWhoJustWroteReadsFromThePrimaryForTheStickyWindow() throws InterruptedException {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("writer", null, Collections.emptyList()));
+        readYourWrites.markWritten("writer");
+        assertThat(readOnlyName()).isEqualTo("On the primary");
+
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("someone-else", null, Collections.emptyList()));
+        assertThat(readOnlyName()).isEqualTo("On the replica");
+
+        Thread.sleep(1100);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("writer", null, Collections.emptyList()));
+        assertThat(readOnlyName()).isEqualTo("On the replica");
+    }
+
+    // Not yet on the replica, and looked up by someone else (or nobody) right after registering
+    @Test
+    void aJustSavedUserIsFoundByUsernameUntilTheWindowEnds() throws InterruptedException {
+        User user = new User();
+        user.setUsername("registered-" + UUID.randomUUID());
+        user.setPassword("x");
+        user.setEmail("registered@example.com");
+        userService.save(user);
+
+        assertThat(userService.findByUsername(user.getUsername())).isPresent();
+
+        Thread.sleep(1100);
+        assertThat(userService.findByUsername(user.getUsername())).isEmpty();
+        assertThat(userService.findForAuthentication(user.getUsername())).isPresent();
+    }
+
+    // The cache is shared by every node; filling it from a replica that hasn't caught up would keep the old row
+    @Test
+    void cacheMissesRightAfterACatalogSaveReadThePrimary() throws InterruptedException {
+        product.setName("Saved");
+        productService.save(product);
+
+        assertThat(productService.findById(product.getId())).get().extracting(Product::getName).isEqualTo("Saved");
+
+        Thread.sleep(1100);
+        assertThat(productService.findByName("On the replica")).extracting(Product::getId).contains(product.getId());
+    }
+
+    private void setLag(Long seconds) {
+        replica.update("update replication_lag set seconds_behind = ?", seconds);
+        dataSourceConfig.checkReplicas();
+    }
+
+    private String readOnlyName() {
+        return transaction(true).execute(status -> name());
+    }
+
+    private String writableName() {
+        return transaction(false).execute(status -> name());
+    }
+
+    private String name() {
+        return jdbcTemplate.queryForObject("select name from products where id = ?", String.class, product.getId());
+    }
+
+    private TransactionTemplate transaction(boolean readOnly) {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setReadOnly(readOnly);
+        return template;
+    }
+}
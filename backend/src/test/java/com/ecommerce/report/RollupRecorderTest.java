@@ -0,0 +1,63 @@
+package com.ecommerce.report;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class RollupRecorderTest {
+    @Autowired
+    private RollupRecorder rollupRecorder;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void dimensionsAsLongAsAUsernameAreStored() {
+        String email = "a-very-long-oauth-address-" + "x".repeat(180) + "@example.com";
+        rollupRecorder.paymentEvent(email);
+        rollupRecorder.flush();
+
+        assertThat(count(email)).isEqualTo(1);
+    }
+
+    @Test
+    void aBucketTheDatabaseRejectsIsDroppedAndTheRestAreWritten() {
+        String ok = "ok-" + UUID.randomUUID();
+        String tooLong = "x".repeat(300);
+        rollupRecorder.paymentEvent(ok);
+        rollupRecorder.paymentEvent(tooLong);
+        rollupRecorder.flush();
+        assertThat(count(ok)).isEqualTo(1);
+
+        // Not retried: the next flush writes only what came in since
+        rollupRecorder.paymentEvent(ok);
+        rollupRecorder.flush();
+        assertThat(count(ok)).isEqualTo(2);
+        assertThat(jdbcTemplate.queryForObject("select count(*) from report_rollups where dimension like 'xxx%'", Long.class)).isZero();
+    }
+
+    @Test
+    void rebuildRecomputesTheOrderSeriesAndKeepsPayments() {
+        String event = "kept-" + UUID.randomUUID();
+        rollupRecorder.paymentEvent(event);
+        rollupRecorder.flush();
+
+        rollupRecorder.rebuild();
+        rollupRecorder.rebuild();
+
+        assertThat(count(event)).isEqualTo(1);
+    }
+
+    private long count(String dimension) {
+        Long count = jdbcTemplate.queryForObject("select sum(event_count) from report_rollups where series = ? and dimension = ?",
+                Long.class, RollupRecorder.PAYMENTS, dimension);
+        return count != null ? count : 0;
+    }
+}
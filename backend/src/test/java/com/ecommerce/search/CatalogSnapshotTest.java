@@ -0,0 +1,91 @@
+package com.ecommerce.search;
+
+import com.ecommerce.dto.ProductView;
+import com.ecommerce.model.Product;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CatalogSnapshotTest {
+    private static final String[] NAMES = {"apple", "Banana", "cherry", "Apple", "date", null};
+
+    @Test
+    void patchedSnapshotsMatchOnesBuiltFromScratch() {
+        Random random = new Random(42);
+        Map<Long, Product> products = new TreeMap<>();
+        CatalogSnapshot patched = CatalogSnapshot.EMPTY;
+        for (int step = 0; step < 2000; step++) {
+            long id = 1 + random.nextInt(40);
+            int operation = random.nextInt(10);
+            if (operation < 6) {
+                Product product = randomProduct(random, id);
+                products.put(id, product);
+                patched = patched.with(product);
+            } else if (operation < 8) {
+                int stock = random.nextInt(5);
+                if (products.containsKey(id)) {
+                    products.get(id).setStock(stock);
+                }
+                patched = patched.withStock(id, stock);
+            } else {
+                products.remove(id);
+                patched = patched.without(id);
+            }
+            assertSameCatalog(patched, CatalogSnapshot.build(new ArrayList<>(products.values())));
+        }
+    }
+
+    @Test
+    void changingOnlyStockSharesTheOrderings() {
+        CatalogSnapshot snapshot = CatalogSnapshot.build(Arrays.asList(
+                new Product(1L, "b", "d", new BigDecimal("2.00"), 1, null),
+                new Product(2L, "a", "d", new BigDecimal("1.00"), 1, null)));
+
+        CatalogSnapshot restocked = snapshot.with(new Product(1L, "b", "d", new BigDecimal("2.00"), 9, null));
+
+        assertThat(restocked.get(1L).getStock()).isEqualTo(9);
+        assertThat(restocked.fingerprint()).isNotEqualTo(snapshot.fingerprint());
+        assertThat(restocked.withStock(1L, 1).fingerprint()).isEqualTo(snapshot.fingerprint());
+        assertThat(snapshot.withStock(3L, 5)).isSameAs(snapshot);
+        assertThat(snapshot.withStock(1L, 1)).isSameAs(snapshot);
+    }
+
+    private static Product randomProduct(Random random, long id) {
+        String name = NAMES[random.nextInt(NAMES.length)];
+        BigDecimal price = BigDecimal.valueOf(random.nextInt(6) * 50, 2);
+        return new Product(id, name, "d" + random.nextInt(3), price, random.nextInt(5), random.nextBoolean() ? "/img/x.png" : null);
+    }
+
+    private static void assertSameCatalog(CatalogSnapshot actual, CatalogSnapshot expected) {
+        assertThat(actual.size()).isEqualTo(expected.size());
+        assertThat(actual.fingerprint()).isEqualTo(expected.fingerprint());
+        for (String property : new String[] {"id", "price", "name"}) {
+            for (boolean descending : new boolean[] {false, true}) {
+                assertThat(list(actual, null, null, null, property, descending))
+                        .isEqualTo(list(expected, null, null, null, property, descending));
+                assertThat(list(actual, "an", new BigDecimal("0.50"), new BigDecimal("2.00"), property, descending))
+                        .isEqualTo(list(expected, "an", new BigDecimal("0.50"), new BigDecimal("2.00"), property, descending));
+            }
+        }
+    }
+
+    private static List<String> list(CatalogSnapshot snapshot, String name, BigDecimal min, BigDecimal max,
+                                     String property, boolean descending) {
+        List<String> rows = new ArrayList<>();
+        snapshot.forEach(name, min, max, property, descending, view -> rows.add(describe(view)));
+        return rows;
+    }
+
+    private static String describe(ProductView view) {
+        return view.getId() + "|" + view.getName() + "|" + view.getDescription() + "|" + view.getPrice()
+                + "|" + view.getStock() + "|" + view.getImageUrl();
+    }
+}
@@ -0,0 +1,74 @@
+package com.ecommerce.search;
+
+import com.ecommerce.EmbeddedRedis;
+import com.ecommerce.dto.ItemQuantity;
+import com.ecommerce.dto.ProductView;
+import com.ecommerce.model.Product;
+import com.ecommerce.service.ProductService;
+import com.ecommerce.service.StockReservationService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class ProductCatalogTest {
+    @Autowired
+    private ProductCatalog productCatalog;
+    @Autowired
+    private CatalogIndexer catalogIndexer;
+    @Autowired
+    private ProductService productService;
+    @Autowired
+    private StockReservationService reservationService;
+
+    @DynamicPropertySource
+    static void redis(DynamicPropertyRegistry registry) {
+        registry.add("spring.redis.port", EmbeddedRedis::port);
+        registry.add("catalog.cache.l2.enabled", () -> "true");
+    }
+
+    @Test
+    void checkoutsUpdateTheCatalogStockThroughTheInvalidationChannel() throws InterruptedException {
+        awaitReady();
+        Product product = productService.save(new Product(null, "Stocked", "d", new BigDecimal("3.00"), 10, null));
+        assertThat(stock(product)).isEqualTo(10);
+        long fingerprint = productCatalog.fingerprint();
+
+        String reference = reservationService.reserve("buyer", Collections.singletonList(new ItemQuantity(product.getId(), 4)));
+        awaitStock(product, 6);
+        assertThat(productCatalog.fingerprint()).isNotEqualTo(fingerprint);
+
+        reservationService.release(reference, "buyer");
+        awaitStock(product, 10);
+        assertThat(productCatalog.fingerprint()).isEqualTo(fingerprint);
+    }
+
+    private void awaitReady() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!(catalogIndexer.isReady() && productCatalog.isReady()) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(productCatalog.isReady()).isTrue();
+    }
+
+    private void awaitStock(Product product, int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (stock(product) != expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(stock(product)).isEqualTo(expected);
+    }
+
+    private int stock(Product product) {
+        return productCatalog.get(product.getId()).map(ProductView::getStock).orElse(-1);
+    }
+}
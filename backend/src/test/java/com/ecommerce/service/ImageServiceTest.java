@@ -0,0 +1,81 @@
+package com.ecommerce.service;
+
+import com.ecommerce.service.ImageService.StoredImage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class ImageServiceTest {
+    @TempDir
+    static Path directory;
+
+    @Autowired
+    private ImageService imageService;
+
+    @DynamicPropertySource
+    static void images(DynamicPropertyRegistry registry) {
+        registry.add("images.dir", () -> directory.toString());
+    }
+
+    @Test
+    void aValidUploadIsServedWithItsVariants() throws IOException {
+        StoredImage stored = imageService.store("valid.png", new ByteArrayInputStream(png(800, 600)));
+
+        assertThat(Files.exists(directory.resolve("valid.png"))).isTrue();
+        assertThat(imageService.find("valid.png")).containsSame(stored);
+        assertThat(imageService.select(stored, 320, false).getPath()).isNotEqualTo(stored.getOriginal().getPath());
+        assertThat(uploadsLeftBehind()).isZero();
+    }
+
+    @Test
+    void contentThatDoesNotDecodeNeverReachesTheServedDirectory() throws IOException {
+        byte[] html = "<html><script>alert(1)</script></html>".getBytes(StandardCharsets.UTF_8);
+
+        assertThatThrownBy(() -> imageService.store("fake.png", new ByteArrayInputStream(html)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(Files.exists(directory.resolve("fake.png"))).isFalse();
+        assertThat(imageService.find("fake.png")).isEmpty();
+        assertThat(uploadsLeftBehind()).isZero();
+    }
+
+    @Test
+    void anImageNamedAsAnotherTypeIsRejected() throws IOException {
+        assertThatThrownBy(() -> imageService.store("mislabelled.jpg", new ByteArrayInputStream(png(10, 10))))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> imageService.store("page.html", new ByteArrayInputStream(png(10, 10))))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(Files.exists(directory.resolve("mislabelled.jpg"))).isFalse();
+        assertThat(uploadsLeftBehind()).isZero();
+    }
+
+    private static byte[] png(int width, int height) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB), "png", out);
+        return out.toByteArray();
+    }
+
+    private static long uploadsLeftBehind() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().startsWith(".upload")).count();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.ecommerce.service;
+
+import com.ecommerce.dto.ItemQuantity;
+import com.ecommerce.model.Order;
+import com.ecommerce.model.Product;
+import com.ecommerce.model.User;
+import com.ecommerce.repository.OrderRepository;
+import com.ecommerce.repository.ProductRepository;
+import com.ecommerce.repository.UserRepository;
+import com.stripe.model.Event;
+import com.stripe.net.ApiResource;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class PaymentWebhookTest {
+    @Autowired
+    private WebhookInboxService inbox;
+    @Autowired
+    private OrderService orderService;
+    @Autowired
+    private StockReservationService reservationService;
+    @Autowired
+    private OrderRepository orderRepository;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void aFailedAttemptKeepsTheStockForTheRetry() throws InterruptedException {
+        Product product = product(5);
+        Order order = checkout(product, 2);
+
+        deliver("payment_intent.payment_failed", order);
+        awaitStatus(order, "PAYMENT_FAILED");
+        assertThat(stock(product)).isEqualTo(3);
+
+        deliver("payment_intent.succeeded", order);
+        awaitStatus(order, "PAID");
+        assertThat(stock(product)).isEqualTo(3);
+    }
+
+    @Test
+    void cancellingReleasesTheStock() throws InterruptedException {
+        Product product = product(5);
+        Order order = checkout(product, 2);
+
+        deliver("payment_intent.canceled", order);
+        awaitStatus(order, "CANCELLED");
+        assertThat(stock(product)).isEqualTo(5);
+    }
+
+    @Test
+    void paymentForStockSoldAfterExpiryNeedsReview() throws InterruptedException {
+        Product product = product(2);
+        Order order = checkout(product, 2);
+        String owner = order.getUser().getUsername();
+        // The reservation lapses and someone else buys the stock before the payment lands
+        reservationService.release(order.getReservationReference(), owner);
+        reservationService.reserve("someone-else", Collections.singletonList(new ItemQuantity(product.getId(), 2)));
+
+        deliver("payment_intent.succeeded", order);
+        awaitStatus(order, "NEEDS_REVIEW");
+        assertThat(stock(product)).isZero();
+    }
+
+    private Order checkout(Product product, int quantity) {
+        User user = new User();
+        user.setUsername("payer-" + UUID.randomUUID());
+        user.setPassword("x");
+        user.setEmail("payer@example.com");
+        userRepository.save(user);
+        return orderService.checkout(user.getUsername(), Collections.singletonList(new ItemQuantity(product.getId(), quantity)));
+    }
+
+    // Only the order id is sent: the handlers must not trust a reservation named in metadata
+    private void deliver(String type, Order order) {
+        String payload = "{\"id\":\"evt_" + UUID.randomUUID() + "\",\"object\":\"event\",\"api_version\":\"2022-11-15\","
+                + "\"type\":\"" + type + "\",\"data\":{\"object\":{\"id\":\"pi_" + order.getId() + "\","
+                + "\"object\":\"payment_intent\",\"metadata\":{\"orderId\":\"" + order.getId() + "\"}}}}";
+        assertThat(inbox.accept(ApiResource.GSON.fromJson(payload, Event.class), payload)).isTrue();
+    }
+
+    private void awaitStatus(Order order, String status) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!status.equals(status(order)) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(status(order)).isEqualTo(status);
+    }
+
+    private String status(Order order) {
+        return orderRepository.findById(order.getId()).get().getStatus();
+    }
+
+    private Product product(int stock) {
+        return productRepository.save(new Product(null, "Paid for", "d", new BigDecimal("4.00"), stock, null));
+    }
+
+    private int stock(Product product) {
+        return productRepository.findById(product.getId()).get().getStock();
+    }
+}
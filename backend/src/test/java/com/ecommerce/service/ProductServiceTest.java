@@ -0,0 +1,35 @@
+package com.ecommerce.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class ProductServiceTest {
+    @Autowired
+    private ProductService productService;
+
+    @Test
+    void catalogETagsTellApartParametersWhoseHashCodesCollide() {
+        // "Aa" and "BB" have the same String.hashCode, so the lists hash alike too
+        assertThat(Arrays.hashCode(new Object[] {"list", "Aa"})).isEqualTo(Arrays.hashCode(new Object[] {"list", "BB"}));
+
+        assertThat(productService.catalogETag("list", "Aa")).isNotEqualTo(productService.catalogETag("list", "BB"));
+        assertThat(productService.catalogETag("list", "a", "b")).isNotEqualTo(productService.catalogETag("list", "a;b"));
+        assertThat(productService.catalogETag("list", null)).isNotEqualTo(productService.catalogETag("list", "null"));
+    }
+
+    @Test
+    void catalogETagsAreStableForEqualParameters() {
+        assertThat(productService.catalogETag("list", "shoe", new BigDecimal("5.0"), null))
+                .isEqualTo(productService.catalogETag("list", "shoe", new BigDecimal("5.00"), null))
+                .startsWith("W/\"");
+    }
+}
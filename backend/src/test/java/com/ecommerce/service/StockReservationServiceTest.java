@@ -0,0 +1,150 @@
+package com.ecommerce.service;
+
+import com.ecommerce.dto.ItemQuantity;
+import com.ecommerce.model.Product;
+import com.ecommerce.model.StockReservation;
+import com.ecommerce.repository.ProductRepository;
+import com.ecommerce.repository.StockReservationRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class StockReservationServiceTest {
+    @Autowired
+    private StockReservationService reservationService;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private StockReservationRepository reservationRepository;
+
+    @Test
+    void concurrentReservationsNeverOversell() throws Exception {
+        Product scarce = product(100);
+        Product plentiful = product(1000);
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        AtomicInteger reserved = new AtomicInteger();
+        AtomicInteger soldOut = new AtomicInteger();
+        List<Future<?>> attempts = new ArrayList<>();
+        try {
+            for (int i = 0; i < 500; i++) {
+                attempts.add(executor.submit(() -> {
+                    // A lost lock wait took nothing, so the buyer tries again; anything else fails the test
+                    while (true) {
+                        try {
+                            reservationService.reserve("buyer", Arrays.asList(
+                                    new ItemQuantity(plentiful.getId(), 1), new ItemQuantity(scarce.getId(), 1)));
+                            reserved.incrementAndGet();
+                            return;
+                        } catch (InsufficientStockException e) {
+                            soldOut.incrementAndGet();
+                            return;
+                        } catch (PessimisticLockingFailureException e) {
+                            // Lock timeout or deadlock victim
+                        }
+                    }
+                }));
+            }
+            for (Future<?> attempt : attempts) {
+                attempt.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat(reserved.get()).isEqualTo(100);
+        assertThat(soldOut.get()).isEqualTo(400);
+        assertThat(stock(scarce)).isZero();
+        // All-or-nothing: the plentiful line was only kept when the scarce one succeeded
+        assertThat(stock(plentiful)).isEqualTo(900);
+    }
+
+    @Test
+    void insufficientStockReservesNothing() {
+        Product first = product(5);
+        Product second = product(1);
+
+        assertThatThrownBy(() -> reservationService.reserve("buyer", Arrays.asList(
+                new ItemQuantity(first.getId(), 2), new ItemQuantity(second.getId(), 2))))
+                .isInstanceOf(InsufficientStockException.class);
+        assertThat(stock(first)).isEqualTo(5);
+        assertThat(stock(second)).isEqualTo(1);
+    }
+
+    @Test
+    void onlyTheOwnerCanConfirmOrRelease() {
+        Product product = product(10);
+        String reference = reservationService.reserve("alice", Collections.singletonList(new ItemQuantity(product.getId(), 3)));
+
+        assertThat(reservationService.isHeldBy(reference, "mallory")).isFalse();
+        assertThat(reservationService.expiresAt(reference, "mallory")).isNull();
+        assertThat(reservationService.release(reference, "mallory")).isZero();
+        assertThat(reservationService.confirm(reference, "mallory")).isFalse();
+        assertThat(stock(product)).isEqualTo(7);
+        assertThat(statuses(reference)).containsOnly(StockReservation.PENDING);
+
+        assertThat(reservationService.isHeldBy(reference, "alice")).isTrue();
+        assertThat(reservationService.release(reference, "alice")).isEqualTo(1);
+        assertThat(stock(product)).isEqualTo(10);
+    }
+
+    @Test
+    void confirmingALapsedReservationTakesTheStockAgain() {
+        Product product = product(10);
+        String reference = reservationService.reserve("alice", Collections.singletonList(new ItemQuantity(product.getId(), 3)));
+        // What the expiry sweep does
+        reservationService.release(reference, "alice");
+
+        assertThat(reservationService.confirm(reference, "alice")).isTrue();
+        assertThat(stock(product)).isEqualTo(7);
+        assertThat(statuses(reference)).containsOnly(StockReservation.CONFIRMED);
+        // A second delivery of the same payment changes nothing
+        assertThat(reservationService.confirm(reference, "alice")).isTrue();
+        assertThat(stock(product)).isEqualTo(7);
+    }
+
+    @Test
+    void confirmingALapsedReservationFailsOnceTheStockIsSold() {
+        Product kept = product(5);
+        Product soldOut = product(2);
+        String reference = reservationService.reserve("alice", Arrays.asList(
+                new ItemQuantity(kept.getId(), 1), new ItemQuantity(soldOut.getId(), 2)));
+        reservationService.release(reference, "alice");
+        reservationService.reserve("bob", Collections.singletonList(new ItemQuantity(soldOut.getId(), 2)));
+
+        assertThat(reservationService.confirm(reference, "alice")).isFalse();
+        assertThat(stock(kept)).isEqualTo(5);
+        assertThat(stock(soldOut)).isZero();
+        assertThat(statuses(reference)).containsOnly(StockReservation.RELEASED);
+    }
+
+    private Product product(int stock) {
+        return productRepository.save(new Product(null, "Reserved", "d", new BigDecimal("1.00"), stock, null));
+    }
+
+    private int stock(Product product) {
+        return productRepository.findById(product.getId()).get().getStock();
+    }
+
+    private List<String> statuses(String reference) {
+        List<String> statuses = new ArrayList<>();
+        reservationRepository.findByReference(reference).forEach(reservation -> statuses.add(reservation.getStatus()));
+        return statuses;
+    }
+}
@@ -0,0 +1,127 @@
+package com.ecommerce.service;
+
+import com.ecommerce.FakeStripe;
+import com.stripe.model.PaymentIntent;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(properties = {
+    "stripe.bulkhead.max-concurrent=2",
+    "stripe.bulkhead.max-wait=100ms"
+})
+@ActiveProfiles("test")
+class StripeServiceTest {
+    private static final Map<String, String> METADATA = Collections.singletonMap(StripeService.ORDER_METADATA_KEY, "1");
+
+    @Autowired
+    private StripeService stripeService;
+
+    @DynamicPropertySource
+    static void stripe(DynamicPropertyRegistry registry) {
+        registry.add("stripe.api-base", FakeStripe::url);
+    }
+
+    @Test
+    void concurrentRequestsWithOneKeyShareOneIntent() throws Exception {
+        FakeStripe.reset(Duration.ofMillis(300));
+        String key = UUID.randomUUID().toString();
+
+        List<PaymentIntent> intents = concurrently(10, () -> stripeService.createPaymentIntent(1000L, "usd", METADATA, key));
+
+        Set<String> ids = new HashSet<>();
+        intents.forEach(intent -> ids.add(intent.getId()));
+        assertThat(ids).hasSize(1);
+        assertThat(FakeStripe.requests()).isEqualTo(1);
+        // The key goes to Stripe too, so a retry after a lost response is deduplicated there
+        assertThat(FakeStripe.idempotencyKeys()).containsExactly(key);
+    }
+
+    @Test
+    void aRepeatedKeyReturnsTheSameIntentWithoutCallingStripe() throws Exception {
+        FakeStripe.reset(Duration.ZERO);
+        String key = UUID.randomUUID().toString();
+
+        PaymentIntent first = stripeService.createPaymentIntent(1000L, "usd", METADATA, key);
+        PaymentIntent again = stripeService.createPaymentIntent(1000L, "usd", METADATA, key);
+
+        assertThat(again.getId()).isEqualTo(first.getId());
+        assertThat(FakeStripe.requests()).isEqualTo(1);
+    }
+
+    @Test
+    void aKeyCannotBeReusedWithDifferentParameters() throws Exception {
+        FakeStripe.reset(Duration.ZERO);
+        String key = UUID.randomUUID().toString();
+        stripeService.createPaymentIntent(1000L, "usd", METADATA, key);
+
+        assertThatThrownBy(() -> stripeService.createPaymentIntent(2000L, "usd", METADATA, key))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(FakeStripe.requests()).isEqualTo(1);
+    }
+
+    @Test
+    void callsBeyondTheBulkheadAreRejectedInsteadOfQueued() throws Exception {
+        FakeStripe.reset(Duration.ofMillis(1000));
+        ExecutorService executor = Executors.newFixedThreadPool(5);
+        List<Future<PaymentIntent>> calls = new ArrayList<>();
+        try {
+            for (int i = 0; i < 5; i++) {
+                calls.add(executor.submit(() -> stripeService.createPaymentIntent(1000L, "usd", METADATA, null)));
+            }
+            int succeeded = 0;
+            int rejected = 0;
+            for (Future<PaymentIntent> call : calls) {
+                try {
+                    call.get();
+                    succeeded++;
+                } catch (ExecutionException e) {
+                    assertThat(e.getCause()).isInstanceOf(PaymentGatewayBusyException.class);
+                    rejected++;
+                }
+            }
+            assertThat(succeeded).isEqualTo(2);
+            assertThat(rejected).isEqualTo(3);
+            assertThat(FakeStripe.requests()).isEqualTo(2);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static <T> List<T> concurrently(int callers, Callable<T> call) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<T>> futures = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                futures.add(executor.submit(call));
+            }
+            List<T> results = new ArrayList<>();
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } finally {
+            executor.shutdown();
+        }
+    }
+}